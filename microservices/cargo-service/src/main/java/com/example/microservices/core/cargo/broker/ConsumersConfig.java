@@ -1,59 +1,136 @@
 package com.example.microservices.core.cargo.broker;
 
+import com.example.microservices.core.cargo.persistence.CargoEntity;
 import com.example.mutual.api.core.cargo.Cargo;
 import com.example.mutual.api.core.cargo.CargoService;
 import com.example.mutual.api.event.Event;
 import com.example.mutual.api.exceptions.EventProcessingException;
+import com.example.mutual.util.cache.ReadThroughCache;
+import com.example.mutual.util.event.KeyOrderedExecutor;
+import com.example.mutual.util.event.RecordPosition;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.stream.function.StreamBridge;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Slf4j
 @Configuration
 public class ConsumersConfig {
 
+    private static final String DEAD_LETTER_BINDING = "consumerCrudDlq-out-0";
+
     private final CargoService cargoService;
+    private final StreamBridge streamBridge;
+    private final ReadThroughCache<Integer, Cargo> cache;
+    private final KeyOrderedExecutor executor;
 
     @Autowired
-    public ConsumersConfig(CargoService cargoService) {
+    public ConsumersConfig(
+            CargoService cargoService,
+            StreamBridge streamBridge,
+            ReadThroughCache<Integer, Cargo> cache,
+            @Value("${app.consumer.concurrency:4}") int concurrency,
+            @Value("${app.consumer.max-in-flight:256}") int maxInFlight
+    ) {
         this.cargoService = cargoService;
+        this.streamBridge = streamBridge;
+        this.cache = cache;
+        this.executor = new KeyOrderedExecutor(concurrency, maxInFlight);
+    }
+
+    /**
+     * Events of one cargo id share a lane and are applied one after another, lanes run concurrently.
+     * A failed event goes to the dead letter topic, the stream itself keeps going. Offsets are
+     * acknowledged only up to the oldest event still in progress, so a restart never skips one.
+     */
+    @Bean
+    public Function<Flux<Message<Event<Integer, Cargo>>>, Mono<Void>> consumerCrud() {
+        return messages -> executor.execute(
+                messages,
+                message -> message.getPayload().getKey(),
+                ConsumersConfig::position,
+                message -> processCrud(message.getPayload())
+        );
+    }
+
+    // the acknowledgment header is present with ackMode MANUAL only
+    private static RecordPosition position(Message<?> message) {
+        MessageHeaders headers = message.getHeaders();
+        Acknowledgment acknowledgment = headers.get(KafkaHeaders.ACKNOWLEDGMENT, Acknowledgment.class);
+        if (acknowledgment == null) {
+            return null;
+        }
+        return new RecordPosition(
+                headers.get(KafkaHeaders.RECEIVED_PARTITION, Integer.class),
+                headers.get(KafkaHeaders.OFFSET, Long.class),
+                acknowledgment::acknowledge
+        );
+    }
+
+    private Mono<Void> processCrud(Event<Integer, Cargo> event) {
+        return Mono.defer(() -> applyCrud(event))
+                .doOnSuccess(result -> log.info("Message processing done!"))
+                .onErrorResume(error -> deadLetter(event, error))
+                .then();
+    }
+
+    private Mono<?> applyCrud(Event<Integer, Cargo> event) {
+        log.info("Process message {} created at {}...", event.getEventId(), event.getEventCreatedAt());
+        Cargo cargo;
+
+        switch (event.getEventType()) {
+
+            case CREATE:
+                cargo = event.getData();
+                log.info("Create cargo with ID: {}", cargo.getCargoId());
+                return cargoService.createCargo(cargo);
+
+            case UPDATE:
+                cargo = event.getData();
+                log.info("Update cargo with cargoID: {}", cargo.getCargoId());
+                return cargoService.updateCargo(cargo);
+
+            case DELETE:
+                log.info("Delete cargo with cargoID: {}", event.getKey());
+                return cargoService.deleteCargo(event.getKey());
+
+            default:
+                String errorMessage = "Incorrect event type: " + event.getEventType() + ", expected a CREATE or DELETE event";
+                log.warn(errorMessage);
+                throw new EventProcessingException(errorMessage);
+        }
+    }
+
+    private Mono<Void> deadLetter(Event<Integer, Cargo> event, Throwable error) {
+        log.error("Failed to process {} for cargoID: {}, sent to the dead letter topic: {}",
+                event.getEventType(), event.getKey(), error.getMessage());
+        streamBridge.send(DEAD_LETTER_BINDING, MessageBuilder.withPayload(event)
+                .setHeader("x-exception-message", String.valueOf(error.getMessage()))
+                .build());
+        return Mono.empty();
     }
 
+    /**
+     * Every instance receives the revise events of its own topic (no consumer group) and drops the cargo
+     * from its read cache, the writing instance has dropped it already after the commit.
+     */
     @Bean
-    public Consumer<Event<Integer, Cargo>> consumerCrud() {
+    public Consumer<Event<Integer, CargoEntity>> consumerRevise() {
         return event -> {
-            log.info("Process message created at {}...", event.getEventCreatedAt());
-            Cargo store;
-
-            switch (event.getEventType()) {
-
-                case CREATE:
-                    store = event.getData();
-                    log.info("Create store with ID: {}", store.getCargoId());
-                    cargoService.createCargo(store).block();
-                    break;
-
-                case UPDATE:
-                    store = event.getData();
-                    log.info("Update store with storeID: {}", store.getCargoId());
-                    cargoService.updateCargo(store).block();
-                    break;
-
-                case DELETE:
-                    log.info("Delete store with storeID: {}", event.getKey());
-                    cargoService.deleteCargo(event.getKey()).block();
-                    break;
-
-                default:
-                    String errorMessage = "Incorrect event type: " + event.getEventType() + ", expected a CREATE or DELETE event";
-                    log.warn(errorMessage);
-                    throw new EventProcessingException(errorMessage);
-            }
-
-            log.info("Message processing done!");
+            log.debug("Invalidate the cached cargo on revise {} for cargoID: {}", event.getEventType(), event.getKey());
+            cache.invalidate(event.getKey());
         };
     }
 }
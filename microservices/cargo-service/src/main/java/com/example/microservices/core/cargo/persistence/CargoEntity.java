@@ -1,15 +1,20 @@
 package com.example.microservices.core.cargo.persistence;
 
 import com.example.mutual.api.core.cargo.Cargo;
+import com.example.mutual.util.persistence.PooledSequenceGenerator;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
 
+import static org.hibernate.id.enhanced.SequenceStyleGenerator.SEQUENCE_PARAM;
+
 @NoArgsConstructor
 @Getter
 @Setter
@@ -17,12 +22,18 @@ import java.time.LocalDateTime;
 @Table(
         name = "cargoes",
         indexes = {
-                @Index(name = "cargo_unique_idx", unique = true, columnList = "cargoId")
+                @Index(name = "cargo_unique_idx", unique = true, columnList = "cargoId"),
+                @Index(name = "cargo_status_idx", columnList = "status, cargoId")
         }
 )
 public class CargoEntity {
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "cargo_entity_seq")
+    @GenericGenerator(
+            name = "cargo_entity_seq",
+            type = PooledSequenceGenerator.class,
+            parameters = @Parameter(name = SEQUENCE_PARAM, value = "cargo_entity_seq")
+    )
     private int id;
     @Version
     private int version;
@@ -1,11 +1,23 @@
 package com.example.microservices.core.cargo.persistence;
 
-import org.springframework.data.repository.CrudRepository;
+import com.example.mutual.api.core.cargo.Cargo;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
-public interface CargoRepository extends CrudRepository<CargoEntity, Integer> {
+public interface CargoRepository extends JpaRepository<CargoEntity, Integer> {
     @Transactional(readOnly = true)
     Optional<CargoEntity> findByCargoId(int cargoId);
+
+    List<CargoEntity> findByCargoIdIn(Collection<Integer> cargoIds);
+
+    @Transactional(readOnly = true)
+    List<CargoEntity> findByCargoIdGreaterThanOrderByCargoIdAsc(int cargoId, Limit limit);
+
+    @Transactional(readOnly = true)
+    List<CargoEntity> findByStatusAndCargoIdGreaterThanOrderByCargoIdAsc(Cargo.Status status, int cargoId, Limit limit);
 }
@@ -13,7 +13,8 @@ public interface CargoMapper {
 
     CargoEntity cloneCargoEntity(CargoEntity cargoEntity);
     @Mappings({
-            @Mapping(target = "serviceAddress", ignore = true)
+            @Mapping(target = "serviceAddress", ignore = true),
+            @Mapping(source = "id", target = "entityId")
     })
     Cargo entityToApi(CargoEntity entity);
 
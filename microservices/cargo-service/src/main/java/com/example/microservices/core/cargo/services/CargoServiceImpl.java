@@ -5,26 +5,42 @@ import com.example.microservices.core.cargo.invariant.RuleCargoDelete;
 import com.example.microservices.core.cargo.invariant.RuleCargoUpdate;
 import com.example.microservices.core.cargo.persistence.CargoEntity;
 import com.example.microservices.core.cargo.persistence.CargoRepository;
+import com.example.mutual.api.core.BulkItemResult;
 import com.example.mutual.api.core.cargo.Cargo;
 import com.example.mutual.api.core.cargo.CargoService;
 import com.example.mutual.api.exceptions.InvalidInputException;
 import com.example.mutual.api.exceptions.NotFoundException;
+import com.example.mutual.util.cache.ReadThroughCache;
+import com.example.mutual.util.http.ConditionalGet;
 import com.example.mutual.util.http.ServiceUtil;
 import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.retry.annotation.Backoff;
 import org.springframework.retry.annotation.Retryable;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Scheduler;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import static com.example.mutual.api.core.BulkItemResult.created;
+import static com.example.mutual.api.core.BulkItemResult.rejected;
+import static com.example.mutual.api.core.BulkItemResult.updated;
 import static java.util.logging.Level.FINE;
 
 @Slf4j
@@ -38,6 +54,10 @@ public class CargoServiceImpl implements CargoService {
     private final ProducerRevise producer;
     private final List<RuleCargoUpdate> rulesUpdate;
     private final List<RuleCargoDelete> rulesDelete;
+    private final TransactionTemplate transactionTemplate;
+    private final ReadThroughCache<Integer, Cargo> cache;
+    private final int bulkChunkSize;
+    private final int scanPageSize;
 
     @Autowired
     public CargoServiceImpl(
@@ -47,7 +67,11 @@ public class CargoServiceImpl implements CargoService {
             @Qualifier("jdbcScheduler") Scheduler jdbcScheduler,
             ProducerRevise producer,
             List<RuleCargoUpdate> rulesUpdate,
-            List<RuleCargoDelete> rulesDelete
+            List<RuleCargoDelete> rulesDelete,
+            TransactionTemplate transactionTemplate,
+            ReadThroughCache<Integer, Cargo> cache,
+            @Value("${app.bulk.chunk-size:1000}") int bulkChunkSize,
+            @Value("${app.scan.page-size:500}") int scanPageSize
     ) {
         this.repository = repository;
         this.mapper = mapper;
@@ -56,6 +80,10 @@ public class CargoServiceImpl implements CargoService {
         this.producer = producer;
         this.rulesUpdate = rulesUpdate;
         this.rulesDelete = rulesDelete;
+        this.transactionTemplate = transactionTemplate;
+        this.cache = cache;
+        this.bulkChunkSize = bulkChunkSize;
+        this.scanPageSize = scanPageSize;
     }
 
     @Override
@@ -64,10 +92,10 @@ public class CargoServiceImpl implements CargoService {
             throw new InvalidInputException("Invalid cargoId: " + cargoId);
         }
         log.info("Will get cargo with id={}", cargoId);
-        return Mono.fromCallable(() -> internalGetStore(cargoId))
+        return cache.get(cargoId, this::internalGetStore, jdbcScheduler)
                 .switchIfEmpty(Mono.error(new NotFoundException("No cargo found for cargoId: " + cargoId)))
-                .log(log.getName(), FINE)
-                .subscribeOn(jdbcScheduler);
+                .transform(ConditionalGet.byVersion(Cargo::getEntityId, Cargo::getVersion))
+                .log(log.getName(), FINE);
     }
 
     private Cargo internalGetStore(int cargoId) {
@@ -80,6 +108,65 @@ public class CargoServiceImpl implements CargoService {
                 .orElse(null);
     }
 
+    @Override
+    public Flux<Cargo> getCargoes(List<Integer> ids) {
+        List<Integer> cargoIds = ids.stream().distinct().toList();
+        for (Integer cargoId : cargoIds) {
+            if (cargoId == null || cargoId < 1) {
+                throw new InvalidInputException("Invalid cargoId: " + cargoId);
+            }
+        }
+        log.info("Will get {} cargoes in chunks of {}", cargoIds.size(), bulkChunkSize);
+        return Flux.range(0, (cargoIds.size() + bulkChunkSize - 1) / bulkChunkSize)
+                .map(chunk -> cargoIds.subList(chunk * bulkChunkSize, Math.min(cargoIds.size(), (chunk + 1) * bulkChunkSize)))
+                .concatMap(chunk -> Mono.fromCallable(() -> internalGetCargoes(chunk)).subscribeOn(jdbcScheduler))
+                .flatMapIterable(cargoes -> cargoes)
+                .log(log.getName(), FINE);
+    }
+
+    private List<Cargo> internalGetCargoes(List<Integer> cargoIds) {
+        String serviceAddress = serviceUtil.getServiceAddress();
+        return repository.findByCargoIdIn(cargoIds).stream()
+                .map(cargoEntity -> {
+                    Cargo cargo = mapper.entityToApi(cargoEntity);
+                    cargo.setServiceAddress(serviceAddress);
+                    return cargo;
+                })
+                .toList();
+    }
+
+    @Override
+    public Flux<Cargo> scanCargoes(Cargo.Status status, int afterId) {
+        if (afterId < 0) {
+            throw new InvalidInputException("Invalid afterId: " + afterId);
+        }
+        log.info("Will scan cargoes status={} after cargoId={} in pages of {}", status, afterId, scanPageSize);
+        // the next page is read when the previous one is consumed, prefetch 1 keeps a slow client from piling pages up
+        return Mono.fromCallable(() -> internalScanCargoes(status, afterId))
+                .subscribeOn(jdbcScheduler)
+                .expand(page -> page.size() < scanPageSize
+                        ? Mono.empty()
+                        : Mono.fromCallable(() -> internalScanCargoes(status, page.get(page.size() - 1).getCargoId()))
+                                .subscribeOn(jdbcScheduler))
+                .flatMapIterable(cargoes -> cargoes, 1)
+                .log(log.getName(), FINE);
+    }
+
+    private List<Cargo> internalScanCargoes(Cargo.Status status, int afterId) {
+        String serviceAddress = serviceUtil.getServiceAddress();
+        Limit limit = Limit.of(scanPageSize);
+        List<CargoEntity> page = status == null
+                ? repository.findByCargoIdGreaterThanOrderByCargoIdAsc(afterId, limit)
+                : repository.findByStatusAndCargoIdGreaterThanOrderByCargoIdAsc(status, afterId, limit);
+        return page.stream()
+                .map(cargoEntity -> {
+                    Cargo cargo = mapper.entityToApi(cargoEntity);
+                    cargo.setServiceAddress(serviceAddress);
+                    return cargo;
+                })
+                .toList();
+    }
+
     @Transactional
     @Override
     public Mono<Cargo> createCargo(Cargo body) {
@@ -92,9 +179,12 @@ public class CargoServiceImpl implements CargoService {
 
     private Cargo internalCreateCargo(Cargo body) {
         try {
-            CargoEntity entity = mapper.apiToEntity(body);
-            CargoEntity newEntity = repository.save(entity);
-            producer.cargoCreated(newEntity);
+            // the flush brings the ids and the timestamps into the event and a duplicate key up to here
+            CargoEntity newEntity = transactionTemplate.execute(status -> {
+                CargoEntity entity = repository.saveAndFlush(mapper.apiToEntity(body));
+                producer.cargoCreated(entity);
+                return entity;
+            });
             log.debug("createCargo: created a cargo entity: {}", body.getCargoId());
             return mapper.entityToApi(newEntity);
         } catch (DataIntegrityViolationException dive) {
@@ -113,8 +203,9 @@ public class CargoServiceImpl implements CargoService {
         if (body.getCargoId() < 1) {
             throw new InvalidInputException("Invalid cargoId: " + body.getCargoId());
         }
-        return Mono.fromCallable(()-> internalUpdateCargo(body))
-                .subscribeOn(jdbcScheduler);
+        return Mono.fromCallable(()-> transactionTemplate.execute(status -> internalUpdateCargo(body)))
+                .subscribeOn(jdbcScheduler)
+                .doFinally(signal -> cache.invalidate(body.getCargoId()));
     }
     private Cargo internalUpdateCargo(Cargo body) {
         Optional<CargoEntity> entityOpt = repository.findByCargoId(body.getCargoId());
@@ -145,7 +236,10 @@ public class CargoServiceImpl implements CargoService {
     )
     @Override
     public Mono<Void> deleteCargo(int cargoId) {
-        return Mono.fromRunnable(()->internalDeleteCargo(cargoId)).subscribeOn(jdbcScheduler).then();
+        return Mono.fromRunnable(() -> transactionTemplate.executeWithoutResult(status -> internalDeleteCargo(cargoId)))
+                .subscribeOn(jdbcScheduler)
+                .doFinally(signal -> cache.invalidate(cargoId))
+                .then();
     }
 
     private void internalDeleteCargo(int cargoId) {
@@ -164,4 +258,87 @@ public class CargoServiceImpl implements CargoService {
             }
         );
     }
+
+    @Override
+    public Flux<BulkItemResult> bulkCargoes(List<Cargo> body) {
+        log.info("Will load {} cargoes in chunks of {}", body.size(), bulkChunkSize);
+        return Flux.range(0, (body.size() + bulkChunkSize - 1) / bulkChunkSize)
+                .map(chunk -> body.subList(chunk * bulkChunkSize, Math.min(body.size(), (chunk + 1) * bulkChunkSize)))
+                .concatMap(chunk -> Mono.fromCallable(() -> internalBulkCargoes(chunk))
+                        .subscribeOn(jdbcScheduler)
+                        .doFinally(signal -> cache.invalidateAll(chunk.stream().map(Cargo::getCargoId).toList())))
+                .flatMapIterable(results -> results)
+                .log(log.getName(), FINE);
+    }
+
+    // one transaction and one JDBC batch per chunk, a chunk rejected by the database is retried cargo by cargo
+    private List<BulkItemResult> internalBulkCargoes(List<Cargo> chunk) {
+        BulkChunk<CargoEntity> applied;
+        try {
+            applied = transactionTemplate.execute(status -> applyBulkCargoes(chunk));
+        } catch (DataIntegrityViolationException | OptimisticLockingFailureException e) {
+            if (chunk.size() == 1) {
+                int cargoId = chunk.get(0).getCargoId();
+                return List.of(rejected(cargoId, e instanceof DataIntegrityViolationException
+                        ? "Duplicate key, Cargo Id: " + cargoId
+                        : e.getMessage()));
+            }
+            log.warn("bulkCargoes: a chunk of {} cargoes failed, loads them one by one: {}", chunk.size(), e.toString());
+            return chunk.stream()
+                    .flatMap(cargo -> internalBulkCargoes(List.of(cargo)).stream())
+                    .toList();
+        }
+        log.debug("bulkCargoes: created {}, updated {} of {} cargoes",
+                applied.created().size(), applied.updated().size(), chunk.size());
+        return applied.results();
+    }
+
+    private BulkChunk<CargoEntity> applyBulkCargoes(List<Cargo> chunk) {
+        Map<Integer, CargoEntity> existing = repository
+                .findByCargoIdIn(chunk.stream().map(Cargo::getCargoId).toList())
+                .stream()
+                .collect(Collectors.toMap(CargoEntity::getCargoId, Function.identity()));
+        BulkChunk<CargoEntity> applied = new BulkChunk<>(new ArrayList<>(chunk.size()), new ArrayList<>(), new ArrayList<>());
+        List<CargoEntity> changed = new ArrayList<>(chunk.size());
+        Set<Integer> cargoIds = new HashSet<>();
+        for (Cargo cargo : chunk) {
+            int cargoId = cargo.getCargoId();
+            if (cargoId < 1) {
+                applied.results().add(rejected(cargoId, "Invalid cargoId: " + cargoId));
+                continue;
+            }
+            if (!cargoIds.add(cargoId)) {
+                applied.results().add(rejected(cargoId, "Duplicate key, Cargo Id: " + cargoId));
+                continue;
+            }
+            CargoEntity entity = existing.get(cargoId);
+            if (entity == null) {
+                CargoEntity newEntity = mapper.apiToEntity(cargo);
+                changed.add(newEntity);
+                applied.created().add(newEntity);
+                applied.results().add(created(cargoId));
+                continue;
+            }
+            // rules change a copy, a rejected cargo must not be flushed with the rest
+            CargoEntity newEntity = mapper.cloneCargoEntity(entity);
+            boolean isBrokenRule = rulesUpdate.stream()
+                    .map(rule -> rule.apply(newEntity, mapper.apiToEntity(cargo)))
+                    .anyMatch(bool -> !bool);
+            if (isBrokenRule) {
+                applied.results().add(rejected(cargoId, "There is a broken Update Rule, Cargo Id: " + cargoId));
+                continue;
+            }
+            changed.add(newEntity);
+            applied.updated().add(mapper.cloneCargoEntity(entity));
+            applied.results().add(updated(cargoId));
+        }
+        repository.saveAll(changed);
+        repository.flush();
+        applied.created().forEach(producer::cargoCreated);
+        applied.updated().forEach(producer::cargoUpdated);
+        return applied;
+    }
+
+    private record BulkChunk<E>(List<BulkItemResult> results, List<E> created, List<E> updated) {
+    }
 }
@@ -7,7 +7,8 @@ import com.example.microservices.core.cargo.util.ContainersTestBase;
 import com.example.microservices.core.cargo.util.ReaderProducedMessages;
 import com.example.mutual.api.core.cargo.Cargo;
 import com.example.mutual.api.event.Event;
-import com.example.mutual.api.exceptions.InvalidInputException;
+import com.example.mutual.util.cache.ReadThroughCache;
+import com.example.mutual.util.outbox.OutboxRelay;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -18,14 +19,20 @@ import org.springframework.cloud.stream.binder.test.OutputDestination;
 import org.springframework.cloud.stream.binder.test.TestChannelBinderConfiguration;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpStatus;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.time.Duration;
 import java.util.Optional;
-import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static com.example.mutual.api.event.Event.Type.*;
 import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.matchesPattern;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
@@ -36,7 +43,7 @@ import static org.testcontainers.shaded.org.awaitility.Awaitility.await;
 @Slf4j
 @SpringBootTest(
         webEnvironment = RANDOM_PORT,
-        properties = {"spring.main.allow-bean-definition-overriding=true"})
+        properties = {"spring.main.allow-bean-definition-overriding=true", "app.scan.page-size=2"})
 @Import({TestChannelBinderConfiguration.class})
 class CargoServiceTest extends ContainersTestBase {
 
@@ -46,26 +53,36 @@ class CargoServiceTest extends ContainersTestBase {
     @Autowired
     private CargoRepository repository;
     private final ReaderProducedMessages readerCargoRevise;
+    private final ReaderProducedMessages readerDeadLetter;
+    private final OutputDestination target;
     private final CargoMapper mapper;
 
 
     @Autowired
     public CargoServiceTest(
             OutputDestination target,
+            OutboxRelay outboxRelay,
             CargoMapper mapper
     ) {
-        this.readerCargoRevise = new ReaderProducedMessages(target, "cargo-revise");
+        this.readerCargoRevise = new ReaderProducedMessages(target, "cargo-revise", outboxRelay::relay);
+        this.readerDeadLetter = new ReaderProducedMessages(target, "error.cargo-crud.cargoCrudGroup");
+        this.target = target;
         this.mapper = mapper;
     }
 
     @Autowired
     @Qualifier("consumerCrud")
-    private Consumer<Event<Integer, Cargo>> consumerCrud;
+    private Function<Flux<Message<Event<Integer, Cargo>>>, Mono<Void>> consumerCrud;
+
+    @Autowired
+    private ReadThroughCache<Integer, Cargo> cargoCache;
 
     @BeforeEach
     void setupDb() {
         repository.deleteAll();
+        cargoCache.invalidateAll();
         readerCargoRevise.purgeMessages();
+        readerDeadLetter.purgeMessages();
     }
 
     @Test
@@ -83,6 +100,61 @@ class CargoServiceTest extends ContainersTestBase {
                 .jsonPath("$.cargoId").isEqualTo(cargoId);
     }
 
+    @Test
+    void getCargoesByIds() {
+        sendCreateCargoEvent(1);
+        sendCreateCargoEvent(2);
+        sendCreateCargoEvent(3);
+
+        // id 4 отсутствует и пропускается, повторный id 1 читается один раз
+        client.get()
+                .uri("/cargoes?ids=1,3,4,1")
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[*].cargoId").value(containsInAnyOrder(1, 3));
+
+        client.get()
+                .uri("/cargoes?ids=1,-1")
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(UNPROCESSABLE_ENTITY);
+    }
+
+    @Test
+    void scanCargoes() {
+        for (int cargoId = 1; cargoId <= 5; cargoId++) {
+            sendCreateCargoEvent(cargoId);
+        }
+
+        // страницы по две записи, скан продолжается после cargoId 1
+        client.get()
+                .uri("/cargoes/scan?afterId=1")
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[*].cargoId").value(contains(2, 3, 4, 5));
+
+        client.get()
+                .uri("/cargoes/scan?status=STOCK")
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(5);
+
+        client.get()
+                .uri("/cargoes/scan?status=TRANSIT")
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(0);
+    }
+
     @Test
     void getCargoNotFound() {
         int cargoIdNotFound = 13;
@@ -113,12 +185,8 @@ class CargoServiceTest extends ContainersTestBase {
         sendCreateCargoEvent(cargoId);
         assertTrue(repository.findByCargoId(cargoId).isPresent());
 
-        InvalidInputException thrown = assertThrows(
-                InvalidInputException.class,
-                () -> sendCreateCargoEvent(cargoId),
-                "Expected an InvalidInputException here!"
-        );
-        assertEquals("Duplicate key, Cargo Id: " + cargoId, thrown.getMessage());
+        sendCreateCargoEvent(cargoId);
+        assertDeadLetter("Duplicate key, Cargo Id: " + cargoId);
     }
 
     @Test
@@ -157,12 +225,8 @@ class CargoServiceTest extends ContainersTestBase {
         CargoEntity entity = repository.findByCargoId(cargoId).get();
         entity.setWeight(501);
 
-        InvalidInputException thrown = assertThrows(
-                InvalidInputException.class,
-                () -> sendUpdateCargoEvent(mapper.entityToApi(entity)),     // 2. UPDATE Event is escaped
-                "Expected an InvalidInputException here!"
-        );
-        assertEquals("There is a broken Update Rule, Cargo Id: " + cargoId, thrown.getMessage());
+        sendUpdateCargoEvent(mapper.entityToApi(entity));               // 2. UPDATE Event is escaped
+        assertDeadLetter("There is a broken Update Rule, Cargo Id: " + cargoId);
 
         assertEquals(1, readerCargoRevise.getMessages().size());
     }
@@ -193,12 +257,8 @@ class CargoServiceTest extends ContainersTestBase {
         await().pollInterval(Duration.ofSeconds(3)).atMost(10, SECONDS).untilAsserted(() -> {
             assertTrue(repository.findByCargoId(cargoId).isPresent());
         });
-        InvalidInputException thrown = assertThrows(
-                InvalidInputException.class,
-                () -> sendDeleteCargoEvent(cargoId),                // 2. Delete Event is escaped
-                "Expected an InvalidInputException here!"
-        );
-        assertEquals("There is a broken Delete Rule, cargo Id: " + cargoId, thrown.getMessage());
+        sendDeleteCargoEvent(cargoId);                      // 2. Delete Event is escaped
+        assertDeadLetter("There is a broken Delete Rule, cargo Id: " + cargoId);
 
         assertEquals(1, readerCargoRevise.getMessages().size());
     }
@@ -220,21 +280,28 @@ class CargoServiceTest extends ContainersTestBase {
     private void sendCreateCargoEvent(int cargoId) {
         Cargo cargo = new Cargo(cargoId, "cookies", 10, Cargo.Status.STOCK, "SA");
         Event<Integer, Cargo> event = new Event<>(CREATE, cargoId, cargo);
-        consumerCrud.accept(event);
+        consumerCrud.apply(Flux.just(MessageBuilder.withPayload(event).build())).block();
     }
     private void sendCreateCargoEventForBad(int cargoId) {
         Cargo cargo = new Cargo(cargoId, "bad cookies", 10, Cargo.Status.TRANSIT, "SA");
         Event<Integer, Cargo> event = new Event<>(CREATE, cargoId, cargo);
-        consumerCrud.accept(event);
+        consumerCrud.apply(Flux.just(MessageBuilder.withPayload(event).build())).block();
     }
 
     private void sendUpdateCargoEvent(Cargo cargo) {
         Event<Integer, Cargo> event = new Event<>(UPDATE, cargo.getCargoId(), cargo);
-        consumerCrud.accept(event);
+        consumerCrud.apply(Flux.just(MessageBuilder.withPayload(event).build())).block();
     }
 
     private void sendDeleteCargoEvent(int cargoId) {
         Event<Integer, Cargo> event = new Event<>(DELETE, cargoId, null);
-        consumerCrud.accept(event);
+        consumerCrud.apply(Flux.just(MessageBuilder.withPayload(event).build())).block();
+    }
+
+    // ошибочное событие не роняет поток событий, а уходит в DLQ с текстом ошибки в заголовке
+    private void assertDeadLetter(String expectedMessage) {
+        Message<byte[]> message = target.receive(0, "error.cargo-crud.cargoCrudGroup");
+        assertNotNull(message, "Expected a dead letter here!");
+        assertEquals(expectedMessage, message.getHeaders().get("x-exception-message"));
     }
 }
@@ -11,10 +11,18 @@ import java.util.List;
 public class ReaderProducedMessages {
     private final OutputDestination target;
     private final String bindingName;
+    private final Runnable beforeRead;
 
     public ReaderProducedMessages(OutputDestination target, String bindingName) {
+        this(target, bindingName, () -> {
+        });
+    }
+
+    // beforeRead выполняется перед каждым чтением, например, выгрузка outbox в брокер
+    public ReaderProducedMessages(OutputDestination target, String bindingName, Runnable beforeRead) {
         this.target = target;
         this.bindingName = bindingName;
+        this.beforeRead = beforeRead;
     }
 
     public void purgeMessages() {
@@ -22,6 +30,7 @@ public class ReaderProducedMessages {
     }
 
     public List<String> getMessages() {
+        beforeRead.run();
         List<String> messages = new ArrayList<>();
         boolean anyMoreMessages = true;
 
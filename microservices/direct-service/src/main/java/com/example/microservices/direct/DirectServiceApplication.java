@@ -1,28 +1,28 @@
 package com.example.microservices.direct;
 
+import com.example.microservices.direct.util.DownstreamPools;
 import io.swagger.v3.oas.models.ExternalDocumentation;
 import io.swagger.v3.oas.models.OpenAPI;
 import io.swagger.v3.oas.models.info.Contact;
 import io.swagger.v3.oas.models.info.Info;
 import io.swagger.v3.oas.models.info.License;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.messaging.SubscribableChannel;
 import org.springframework.web.reactive.function.client.WebClient;
-import reactor.core.scheduler.Scheduler;
-import reactor.core.scheduler.Schedulers;
+import reactor.netty.resources.ConnectionProvider;
 
 @Slf4j
 @SpringBootApplication
 @ComponentScan("com.example")
 public class DirectServiceApplication {
 
-	private final Integer threadPoolSize;
-	private final Integer taskQueueSize;
 	public static void main(String[] args) {
 		SpringApplication.run(DirectServiceApplication.class, args);
 	}
@@ -63,24 +63,24 @@ public class DirectServiceApplication {
 	}
 
 
-	@Autowired
-	public DirectServiceApplication(
-			@Value("${app.threadPoolSize:10}") Integer threadPoolSize,
-			@Value("${app.taskQueueSize:100}") Integer taskQueueSize
-	) {
-		this.threadPoolSize = threadPoolSize;
-		this.taskQueueSize = taskQueueSize;
+	// broker acknowledgements of the crud events, see the recordMetadataChannel of the bindings
+	@Bean
+	public SubscribableChannel publishConfirms() {
+		return new DirectChannel();
 	}
 
-	@Bean
-	public Scheduler publishEventScheduler() {
-		log.info("Creates a messagingScheduler with connectionPoolSize = {}", threadPoolSize);
-		return Schedulers.newBoundedElastic(threadPoolSize, taskQueueSize, "publish-pool");
+	@Bean(destroyMethod = "dispose")
+	public ConnectionProvider downstreamConnections(DownstreamPools pools) {
+		return pools.connectionProvider();
 	}
 
 	@Bean
-	public WebClient webClient(WebClient.Builder builder) {
-		return builder.build();
+	public WebClient webClient(
+			WebClient.Builder builder, DownstreamPools pools, ConnectionProvider downstreamConnections
+	) {
+		return builder
+				.clientConnector(new ReactorClientHttpConnector(pools.httpClient(downstreamConnections)))
+				.build();
 	}
 
 }
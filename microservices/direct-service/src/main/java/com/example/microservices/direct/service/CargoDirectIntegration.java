@@ -1,20 +1,30 @@
 package com.example.microservices.direct.service;
 
 import com.example.microservices.direct.util.CustomExceptionResolver;
+import com.example.microservices.direct.util.DownstreamGuard;
+import com.example.microservices.direct.util.SingleFlight;
+import com.example.microservices.direct.util.SingleFlights;
 import com.example.microservices.direct.util.StreamMessageCook;
+import com.example.microservices.direct.util.ValidatorCache;
+import com.example.microservices.direct.util.ValidatorCaches;
+import com.example.mutual.api.core.BulkItemResult;
 import com.example.mutual.api.core.cargo.Cargo;
 import com.example.mutual.api.core.cargo.CargoService;
 import com.example.mutual.api.event.Event;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Scheduler;
 
 import java.net.URI;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
 
 import static com.example.mutual.api.event.Event.Type.*;
 import static java.util.logging.Level.FINE;
@@ -24,9 +34,12 @@ import static java.util.logging.Level.FINE;
 public class CargoDirectIntegration implements CargoService {
 
     private static final String CARGO_SERVICE_URL = "http://cargo";
+    private static final String SERVICE = "cargo";
     private final CustomExceptionResolver exceptionResolver;
     private final WebClient webClient;
-    private final Scheduler publishEventScheduler;
+    private final DownstreamGuard guard;
+    private final SingleFlight<Integer, Cargo> singleFlight;
+    private final ValidatorCache<Integer, Cargo> validators;
     private final StreamMessageCook messageCook;
     private final String bindingName="cargo-crud";
 
@@ -34,50 +47,116 @@ public class CargoDirectIntegration implements CargoService {
     public CargoDirectIntegration(
             CustomExceptionResolver exceptionResolver,
             WebClient webClient,
-            Scheduler publishEventScheduler,
+            DownstreamGuard guard,
+            SingleFlights singleFlights,
+            ValidatorCaches validatorCaches,
             StreamMessageCook messageCook
     ) {
         this.exceptionResolver = exceptionResolver;
         this.webClient = webClient;
-        this.publishEventScheduler = publishEventScheduler;
+        this.guard = guard;
+        this.singleFlight = singleFlights.create(SERVICE);
+        this.validators = validatorCaches.create(SERVICE, Cargo.class);
         this.messageCook = messageCook;
     }
+
+    // the callers of the same cargo at the same time share one call to the cargo service
     @Override
     public Mono<Cargo> getCargo(int cargoId) {
+        return singleFlight.get(cargoId, this::fetchCargo);
+    }
+
+    private Mono<Cargo> fetchCargo(int cargoId) {
         URI url = UriComponentsBuilder
                 .fromUriString(CARGO_SERVICE_URL + "/cargo/" + cargoId)
                 .build(cargoId);
         log.debug("Will call the getProduct API on URL: {}", url);
 
+        // an unchanged cargo is answered with 304 and taken from the validator cache
+        return validators.get(cargoId, webClient.get().uri(url))
+                .log(log.getName(), FINE)
+                .onErrorMap(WebClientResponseException.class, exceptionResolver::handleException)
+                .transform(guard.mono(SERVICE));
+    }
+
+    // one call for many ids, the cargo service streams the cargoes as it reads them
+    @Override
+    public Flux<Cargo> getCargoes(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Flux.empty();
+        }
+        URI url = UriComponentsBuilder
+                .fromUriString(CARGO_SERVICE_URL + "/cargoes")
+                .queryParam("ids", ids.stream().map(String::valueOf).collect(Collectors.joining(",")))
+                .build()
+                .toUri();
+        log.debug("Will call the getCargoes API for {} cargoes", ids.size());
+
+        return webClient
+                .get()
+                .uri(url)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .retrieve()
+                .bodyToFlux(Cargo.class)
+                .log(log.getName(), FINE)
+                .onErrorMap(WebClientResponseException.class, exceptionResolver::handleException)
+                .transform(guard.flux(SERVICE));
+    }
+
+    // the scan is streamed through, the cargoes are passed on one by one as the cargo service sends them
+    @Override
+    public Flux<Cargo> scanCargoes(Cargo.Status status, int afterId) {
+        URI url = UriComponentsBuilder
+                .fromUriString(CARGO_SERVICE_URL + "/cargoes/scan")
+                .queryParamIfPresent("status", Optional.ofNullable(status))
+                .queryParam("afterId", afterId)
+                .build()
+                .toUri();
+        log.debug("Will call the scanCargoes API on URL: {}", url);
+
         return webClient
                 .get()
                 .uri(url)
+                .accept(MediaType.APPLICATION_NDJSON)
                 .retrieve()
-                .bodyToMono(Cargo.class)
+                .bodyToFlux(Cargo.class)
                 .log(log.getName(), FINE)
-                .onErrorMap(WebClientResponseException.class, exceptionResolver::handleException);
+                .onErrorMap(WebClientResponseException.class, exceptionResolver::handleException)
+                .transform(guard.flux(SERVICE));
     }
 
     @Override
     public Mono<Cargo> createCargo(Cargo body) {
-        return Mono.fromCallable(() -> {
-            messageCook.sendMessage(bindingName, new Event<>(CREATE, body.getCargoId(), body));
-            return body;
-        }).subscribeOn(publishEventScheduler);
+        return messageCook.sendMessage(bindingName, new Event<>(CREATE, body.getCargoId(), body)).thenReturn(body);
     }
 
     @Override
     public Mono<Cargo> updateCargo(Cargo body) {
-        return Mono.fromCallable(() -> {
-            messageCook.sendMessage(bindingName, new Event<>(UPDATE, body.getCargoId(), body));
-            return body;
-        }).subscribeOn(publishEventScheduler);
+        return messageCook.sendMessage(bindingName, new Event<>(UPDATE, body.getCargoId(), body)).thenReturn(body);
     }
 
     @Override
     public Mono<Void> deleteCargo(int cargoId) {
-        return Mono.fromRunnable(
-                () -> messageCook.sendMessage(bindingName, new Event<>(DELETE, cargoId, null))
-        ).subscribeOn(publishEventScheduler).then();
+        return messageCook.sendMessage(bindingName, new Event<>(DELETE, cargoId, null));
+    }
+
+    // a bulk load is applied synchronously by the cargo service, its per item results are passed through
+    @Override
+    public Flux<BulkItemResult> bulkCargoes(List<Cargo> body) {
+        URI url = UriComponentsBuilder
+                .fromUriString(CARGO_SERVICE_URL + "/cargo/bulk")
+                .build()
+                .toUri();
+        log.debug("Will call the bulkCargoes API on URL: {}, cargoes: {}", url, body.size());
+
+        return webClient
+                .post()
+                .uri(url)
+                .bodyValue(body)
+                .retrieve()
+                .bodyToFlux(BulkItemResult.class)
+                .log(log.getName(), FINE)
+                .onErrorMap(WebClientResponseException.class, exceptionResolver::handleException)
+                .transform(guard.flux(SERVICE));
     }
 }
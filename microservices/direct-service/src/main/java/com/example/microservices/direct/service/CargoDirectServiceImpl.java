@@ -1,13 +1,18 @@
 package com.example.microservices.direct.service;
 
 import com.example.microservices.direct.util.AuthLog;
+import com.example.mutual.api.core.BulkItemResult;
 import com.example.mutual.api.core.cargo.Cargo;
 import com.example.mutual.api.direct.CargoDirectService;
+import com.example.mutual.util.http.ConditionalGet;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 import static java.util.logging.Level.FINE;
 
 @Slf4j
@@ -25,10 +30,27 @@ public class CargoDirectServiceImpl implements CargoDirectService {
     @Override
     public Mono<Cargo> getCargo(int cargoId) {
         return integration.getCargo(cargoId)
+                .transform(ConditionalGet.byVersion(Cargo::getEntityId, Cargo::getVersion))
                 .doOnError(ex -> log.warn("getCargo failed: {}", ex.toString()))
                 .log(log.getName(), FINE);
     }
 
+    @Override
+    public Flux<Cargo> getCargoes(List<Integer> ids) {
+        log.debug("get {} cargoes by ids", ids.size());
+        return integration.getCargoes(ids)
+                .doOnError(ex -> log.warn("getCargoes failed: {}", ex.toString()))
+                .log(log.getName(), FINE);
+    }
+
+    @Override
+    public Flux<Cargo> scanCargoes(Cargo.Status status, int afterId) {
+        log.debug("scan cargoes of status {} after cargoId {}", status, afterId);
+        return integration.scanCargoes(status, afterId)
+                .doOnError(ex -> log.warn("scanCargoes failed: {}", ex.toString()))
+                .log(log.getName(), FINE);
+    }
+
     @Override
     public Mono<Void> createCargo(Cargo body) {
         try {
@@ -70,4 +92,12 @@ public class CargoDirectServiceImpl implements CargoDirectService {
                         .then()
                 );
     }
+
+    @Override
+    public Flux<BulkItemResult> bulkCargoes(List<Cargo> body) {
+        log.debug("load {} cargoes in bulk", body.size());
+        return integration.bulkCargoes(body)
+                .doOnError(ex -> log.warn("bulkCargoes failed: {}", ex.toString()))
+                .log(log.getName(), FINE);
+    }
 }
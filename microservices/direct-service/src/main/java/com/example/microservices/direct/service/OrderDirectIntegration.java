@@ -1,20 +1,29 @@
 package com.example.microservices.direct.service;
 
 import com.example.microservices.direct.util.CustomExceptionResolver;
+import com.example.microservices.direct.util.DownstreamGuard;
+import com.example.microservices.direct.util.SingleFlight;
+import com.example.microservices.direct.util.SingleFlights;
 import com.example.microservices.direct.util.StreamMessageCook;
+import com.example.microservices.direct.util.ValidatorCache;
+import com.example.microservices.direct.util.ValidatorCaches;
 import com.example.mutual.api.core.order.Order;
 import com.example.mutual.api.core.order.OrderService;
 import com.example.mutual.api.event.Event;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Scheduler;
 
 import java.net.URI;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
 
 import static com.example.mutual.api.event.Event.Type.*;
 import static java.util.logging.Level.FINE;
@@ -24,9 +33,12 @@ import static java.util.logging.Level.FINE;
 public class OrderDirectIntegration implements OrderService {
 
     private static final String ORDER_SERVICE_URL = "http://order";
+    private static final String SERVICE = "order";
     private final CustomExceptionResolver exceptionResolver;
     private final WebClient webClient;
-    private final Scheduler publishEventScheduler;
+    private final DownstreamGuard guard;
+    private final SingleFlight<Integer, Order> singleFlight;
+    private final ValidatorCache<Integer, Order> validators;
     private final StreamMessageCook messageCook;
     private final String bindingName="order-crud";
 
@@ -34,50 +46,96 @@ public class OrderDirectIntegration implements OrderService {
     public OrderDirectIntegration(
             CustomExceptionResolver exceptionResolver,
             WebClient webClient,
-            Scheduler publishEventScheduler,
+            DownstreamGuard guard,
+            SingleFlights singleFlights,
+            ValidatorCaches validatorCaches,
             StreamMessageCook messageCook
     ) {
         this.exceptionResolver = exceptionResolver;
         this.webClient = webClient;
-        this.publishEventScheduler = publishEventScheduler;
+        this.guard = guard;
+        this.singleFlight = singleFlights.create(SERVICE);
+        this.validators = validatorCaches.create(SERVICE, Order.class);
         this.messageCook = messageCook;
     }
+
+    // the callers of the same order at the same time share one call to the order service
     @Override
     public Mono<Order> getOrder(int orderId) {
+        return singleFlight.get(orderId, this::fetchOrder);
+    }
+
+    private Mono<Order> fetchOrder(int orderId) {
         URI url = UriComponentsBuilder
                 .fromUriString(ORDER_SERVICE_URL + "/order/" + orderId)
                 .build(orderId);
         log.debug("Will call the getProduct API on URL: {}", url);
 
+        // an unchanged order is answered with 304 and taken from the validator cache
+        return validators.get(orderId, webClient.get().uri(url))
+                .log(log.getName(), FINE)
+                .onErrorMap(WebClientResponseException.class, exceptionResolver::handleException)
+                .transform(guard.mono(SERVICE));
+    }
+
+    // one call for many ids, the order service streams the orders as it reads them
+    @Override
+    public Flux<Order> getOrders(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Flux.empty();
+        }
+        URI url = UriComponentsBuilder
+                .fromUriString(ORDER_SERVICE_URL + "/orders")
+                .queryParam("ids", ids.stream().map(String::valueOf).collect(Collectors.joining(",")))
+                .build()
+                .toUri();
+        log.debug("Will call the getOrders API for {} orders", ids.size());
+
+        return webClient
+                .get()
+                .uri(url)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .retrieve()
+                .bodyToFlux(Order.class)
+                .log(log.getName(), FINE)
+                .onErrorMap(WebClientResponseException.class, exceptionResolver::handleException)
+                .transform(guard.flux(SERVICE));
+    }
+
+    // the scan is streamed through, the orders are passed on one by one as the order service sends them
+    @Override
+    public Flux<Order> scanOrders(Order.Status status, int afterId) {
+        URI url = UriComponentsBuilder
+                .fromUriString(ORDER_SERVICE_URL + "/orders/scan")
+                .queryParamIfPresent("status", Optional.ofNullable(status))
+                .queryParam("afterId", afterId)
+                .build()
+                .toUri();
+        log.debug("Will call the scanOrders API on URL: {}", url);
+
         return webClient
                 .get()
                 .uri(url)
+                .accept(MediaType.APPLICATION_NDJSON)
                 .retrieve()
-                .bodyToMono(Order.class)
+                .bodyToFlux(Order.class)
                 .log(log.getName(), FINE)
-                .onErrorMap(WebClientResponseException.class, exceptionResolver::handleException);
+                .onErrorMap(WebClientResponseException.class, exceptionResolver::handleException)
+                .transform(guard.flux(SERVICE));
     }
 
     @Override
     public Mono<Order> createOrder(Order body) {
-        return Mono.fromCallable(() -> {
-            messageCook.sendMessage(bindingName, new Event<>(CREATE, body.getOrderId(), body));
-            return body;
-        }).subscribeOn(publishEventScheduler);
+        return messageCook.sendMessage(bindingName, new Event<>(CREATE, body.getOrderId(), body)).thenReturn(body);
     }
 
     @Override
     public Mono<Order> updateOrder(Order body) {
-        return Mono.fromCallable(() -> {
-            messageCook.sendMessage(bindingName, new Event<>(UPDATE, body.getOrderId(), body));
-            return body;
-        }).subscribeOn(publishEventScheduler);
+        return messageCook.sendMessage(bindingName, new Event<>(UPDATE, body.getOrderId(), body)).thenReturn(body);
     }
 
     @Override
     public Mono<Void> deleteOrder(int orderId) {
-        return Mono.fromRunnable(
-                () -> messageCook.sendMessage(bindingName, new Event<>(DELETE, orderId, null))
-        ).subscribeOn(publishEventScheduler).then();
+        return messageCook.sendMessage(bindingName, new Event<>(DELETE, orderId, null));
     }
 }
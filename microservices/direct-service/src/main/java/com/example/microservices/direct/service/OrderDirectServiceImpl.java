@@ -2,12 +2,18 @@ package com.example.microservices.direct.service;
 
 import com.example.microservices.direct.util.AuthLog;
 import com.example.mutual.api.core.order.Order;
+import com.example.mutual.api.core.route.RouteRuleType;
 import com.example.mutual.api.direct.OrderDirectService;
+import com.example.mutual.api.direct.OrderView;
+import com.example.mutual.util.http.ConditionalGet;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 import static java.util.logging.Level.FINE;
 
 @Slf4j
@@ -15,20 +21,46 @@ import static java.util.logging.Level.FINE;
 public class OrderDirectServiceImpl implements OrderDirectService {
     private final AuthLog authLog;
     private final OrderDirectIntegration integration;
+    private final OrderViewComposer viewComposer;
 
     @Autowired
-    public OrderDirectServiceImpl(AuthLog authLog, OrderDirectIntegration integration) {
+    public OrderDirectServiceImpl(AuthLog authLog, OrderDirectIntegration integration, OrderViewComposer viewComposer) {
         this.authLog = authLog;
         this.integration = integration;
+        this.viewComposer = viewComposer;
     }
 
     @Override
     public Mono<Order> getOrder(int orderId) {
         return integration.getOrder(orderId)
+                .transform(ConditionalGet.byVersion(Order::getEntityId, Order::getVersion))
                 .doOnError(ex -> log.warn("getOrder failed: {}", ex.toString()))
                 .log(log.getName(), FINE);
     }
 
+    @Override
+    public Mono<OrderView> getOrderView(int orderId, RouteRuleType ruleType) {
+        return viewComposer.compose(orderId, ruleType)
+                .doOnError(ex -> log.warn("getOrderView failed: {}", ex.toString()))
+                .log(log.getName(), FINE);
+    }
+
+    @Override
+    public Flux<Order> getOrders(List<Integer> ids) {
+        log.debug("get {} orders by ids", ids.size());
+        return integration.getOrders(ids)
+                .doOnError(ex -> log.warn("getOrders failed: {}", ex.toString()))
+                .log(log.getName(), FINE);
+    }
+
+    @Override
+    public Flux<Order> scanOrders(Order.Status status, int afterId) {
+        log.debug("scan orders of status {} after orderId {}", status, afterId);
+        return integration.scanOrders(status, afterId)
+                .doOnError(ex -> log.warn("scanOrders failed: {}", ex.toString()))
+                .log(log.getName(), FINE);
+    }
+
     @Override
     public Mono<Void> createOrder(Order body) {
         try {
@@ -0,0 +1,85 @@
+package com.example.microservices.direct.service;
+
+import com.example.mutual.api.core.cargo.Cargo;
+import com.example.mutual.api.core.order.Order;
+import com.example.mutual.api.core.route.Route;
+import com.example.mutual.api.core.route.RouteRuleType;
+import com.example.mutual.api.core.store.Store;
+import com.example.mutual.api.direct.OrderView;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Reads an order and then its cargo, both stores and the route in parallel, so the view takes
+ * the order call plus the slowest part instead of the sum of all the calls. A failed or late part
+ * is left empty with the reason in {@link OrderView#getFailures()}, only a missing order fails the view.
+ */
+@Slf4j
+@Component
+public class OrderViewComposer {
+    private final OrderDirectIntegration orderIntegration;
+    private final CargoDirectIntegration cargoIntegration;
+    private final StoreDirectIntegration storeIntegration;
+    private final RouteDirectIntegration routeIntegration;
+    private final Duration partTimeout;
+
+    public OrderViewComposer(
+            OrderDirectIntegration orderIntegration,
+            CargoDirectIntegration cargoIntegration,
+            StoreDirectIntegration storeIntegration,
+            RouteDirectIntegration routeIntegration,
+            @Value("${app.order-view.part-timeout:2s}") Duration partTimeout
+    ) {
+        this.orderIntegration = orderIntegration;
+        this.cargoIntegration = cargoIntegration;
+        this.storeIntegration = storeIntegration;
+        this.routeIntegration = routeIntegration;
+        this.partTimeout = partTimeout;
+    }
+
+    public Mono<OrderView> compose(int orderId, RouteRuleType ruleType) {
+        return orderIntegration.getOrder(orderId)
+                .timeout(partTimeout)
+                .flatMap(order -> Mono.zip(
+                        part("cargo", cargoIntegration.getCargo(order.getCargoId())),
+                        part("fromStore", storeIntegration.getStore(order.getFromStoreId())),
+                        part("toStore", storeIntegration.getStore(order.getToStoreId())),
+                        part("route", routeIntegration.getRouteBetween(
+                                order.getFromStoreId(), order.getToStoreId(), ruleType))
+                ).map(parts -> view(order, parts.getT1(), parts.getT2(), parts.getT3(), parts.getT4())));
+    }
+
+    private <T> Mono<Part<T>> part(String name, Mono<T> call) {
+        return call
+                .timeout(partTimeout)
+                .map(value -> new Part<>(name, value, null))
+                .onErrorResume(e -> {
+                    log.warn("The {} of the order view is not read: {}", name, e.toString());
+                    String reason = e instanceof TimeoutException ? "No answer in " + partTimeout : e.getMessage();
+                    return Mono.just(new Part<>(name, null, reason));
+                })
+                .defaultIfEmpty(new Part<>(name, null, "Not found"));
+    }
+
+    private static OrderView view(
+            Order order, Part<Cargo> cargo, Part<Store> fromStore, Part<Store> toStore, Part<Route> route
+    ) {
+        Map<String, String> failures = new LinkedHashMap<>();
+        for (Part<?> part : new Part<?>[]{cargo, fromStore, toStore, route}) {
+            if (part.failure() != null) {
+                failures.put(part.name(), part.failure());
+            }
+        }
+        return new OrderView(order, cargo.value(), fromStore.value(), toStore.value(), route.value(), failures);
+    }
+
+    private record Part<T>(String name, T value, String failure) {
+    }
+}
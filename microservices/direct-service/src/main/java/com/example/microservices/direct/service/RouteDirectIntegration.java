@@ -1,6 +1,12 @@
 package com.example.microservices.direct.service;
 
+import com.example.microservices.direct.util.DownstreamGuard;
+import com.example.microservices.direct.util.SingleFlight;
+import com.example.microservices.direct.util.SingleFlights;
+import com.example.microservices.direct.util.StreamMessageCook;
+import com.example.mutual.api.core.BulkItemResult;
 import com.example.mutual.api.core.route.Route;
+import com.example.mutual.api.core.route.RouteRuleType;
 import com.example.mutual.api.core.route.RouteService;
 import com.example.mutual.api.event.Event;
 import com.example.mutual.api.exceptions.InvalidInputException;
@@ -9,20 +15,20 @@ import com.example.mutual.util.http.HttpErrorInfo;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cloud.stream.function.StreamBridge;
 import org.springframework.http.HttpStatus;
-import org.springframework.messaging.Message;
-import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Scheduler;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.List;
 import java.util.Objects;
+import java.util.stream.Collectors;
 
 import static com.example.mutual.api.event.Event.Type.*;
 import static java.util.logging.Level.FINE;
@@ -32,28 +38,37 @@ import static java.util.logging.Level.FINE;
 public class RouteDirectIntegration implements RouteService {
 
     private static final String STORE_SERVICE_URL = "http://route";
+    private static final String SERVICE = "route";
 
     private final ObjectMapper mapper;
     private final WebClient webClient;
-    private final Scheduler publishEventScheduler;
-    private final StreamBridge streamBridge;
+    private final DownstreamGuard guard;
+    private final SingleFlight<Integer, Route> singleFlight;
+    private final StreamMessageCook messageCook;
     private final String bindingName = "route-crud";
 
     @Autowired
     public RouteDirectIntegration(
             ObjectMapper mapper,
             WebClient webClient,
-            Scheduler publishEventScheduler,
-            StreamBridge streamBridge
+            DownstreamGuard guard,
+            SingleFlights singleFlights,
+            StreamMessageCook messageCook
     ) {
         this.mapper = mapper;
         this.webClient = webClient;
-        this.publishEventScheduler = publishEventScheduler;
-        this.streamBridge = streamBridge;
+        this.guard = guard;
+        this.singleFlight = singleFlights.create(SERVICE);
+        this.messageCook = messageCook;
     }
 
+    // the callers of the same route at the same time share one call to the route service
     @Override
     public Mono<Route> getRoute(int routeId) {
+        return singleFlight.get(routeId, this::fetchRoute);
+    }
+
+    private Mono<Route> fetchRoute(int routeId) {
         URI url = UriComponentsBuilder
                 .fromUriString(STORE_SERVICE_URL + "/route/" + routeId)
                 .build(routeId);
@@ -65,7 +80,74 @@ public class RouteDirectIntegration implements RouteService {
                 .retrieve()
                 .bodyToMono(Route.class)
                 .log(log.getName(), FINE)
-                .onErrorMap(WebClientResponseException.class, this::handleException);
+                .onErrorMap(WebClientResponseException.class, this::handleException)
+                .transform(guard.mono(SERVICE));
+    }
+
+    // one call for many ids, the route service streams the routes as it reads them
+    @Override
+    public Flux<Route> getRoutes(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Flux.empty();
+        }
+        URI url = UriComponentsBuilder
+                .fromUriString(STORE_SERVICE_URL + "/routes")
+                .queryParam("ids", ids.stream().map(String::valueOf).collect(Collectors.joining(",")))
+                .build()
+                .toUri();
+        log.debug("Will call the getRoutes API for {} routes", ids.size());
+
+        return webClient
+                .get()
+                .uri(url)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .retrieve()
+                .bodyToFlux(Route.class)
+                .log(log.getName(), FINE)
+                .onErrorMap(WebClientResponseException.class, this::handleException)
+                .transform(guard.flux(SERVICE));
+    }
+
+    // the scan is streamed through, the routes are passed on one by one as the route service sends them
+    @Override
+    public Flux<Route> scanRoutes(int afterId) {
+        URI url = UriComponentsBuilder
+                .fromUriString(STORE_SERVICE_URL + "/routes/scan")
+                .queryParam("afterId", afterId)
+                .build()
+                .toUri();
+        log.debug("Will call the scanRoutes API on URL: {}", url);
+
+        return webClient
+                .get()
+                .uri(url)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .retrieve()
+                .bodyToFlux(Route.class)
+                .log(log.getName(), FINE)
+                .onErrorMap(WebClientResponseException.class, this::handleException)
+                .transform(guard.flux(SERVICE));
+    }
+
+    @Override
+    public Mono<Route> getRouteBetween(int fromStoreId, int toStoreId, RouteRuleType ruleType) {
+        URI url = UriComponentsBuilder
+                .fromUriString(STORE_SERVICE_URL + "/route/between")
+                .queryParam("fromStoreId", fromStoreId)
+                .queryParam("toStoreId", toStoreId)
+                .queryParam("ruleType", ruleType)
+                .build()
+                .toUri();
+        log.debug("Will call the getRouteBetween API on URL: {}", url);
+
+        return webClient
+                .get()
+                .uri(url)
+                .retrieve()
+                .bodyToMono(Route.class)
+                .log(log.getName(), FINE)
+                .onErrorMap(WebClientResponseException.class, this::handleException)
+                .transform(guard.mono(SERVICE));
     }
 
     private Throwable handleException(Throwable ex) {
@@ -98,36 +180,36 @@ public class RouteDirectIntegration implements RouteService {
 
     @Override
     public Mono<Route> createRoute(Route body) {
-        return Mono.fromCallable(() -> {
-            sendMessage(bindingName, new Event<>(CREATE, body.getRouteId(), body));
-            return body;
-        }).subscribeOn(publishEventScheduler);
+        return messageCook.sendMessage(bindingName, new Event<>(CREATE, body.getRouteId(), body)).thenReturn(body);
     }
 
     @Override
     public Mono<Route> updateRoute(Route body) {
-        return Mono.fromCallable(() -> {
-            sendMessage(bindingName, new Event<>(UPDATE, body.getRouteId(), body));
-            return body;
-        }).subscribeOn(publishEventScheduler);
+        return messageCook.sendMessage(bindingName, new Event<>(UPDATE, body.getRouteId(), body)).thenReturn(body);
     }
 
     @Override
     public Mono<Void> deleteRoute(int routeId) {
-        return Mono.fromRunnable(
-                () -> sendMessage(bindingName, new Event<>(DELETE, routeId, null))
-        ).subscribeOn(publishEventScheduler).then();
+        return messageCook.sendMessage(bindingName, new Event<>(DELETE, routeId, null));
     }
 
-    private void sendMessage(String bindingName, Event event) {
-        log.debug("Sending a {} message to {}", event.getEventType(), bindingName);
-        Message message = MessageBuilder.withPayload(event)
-                .setHeader("partitionKey", event.getKey())
-                .build();
-        log.debug("Sent success: {}, Name: {}, Event: {}",
-                streamBridge.send(bindingName, message),
-                bindingName,
-                event.getEventType()
-        );
+    // a bulk load is applied synchronously by the route service, its per item results are passed through
+    @Override
+    public Flux<BulkItemResult> bulkRoutes(List<Route> body) {
+        URI url = UriComponentsBuilder
+                .fromUriString(STORE_SERVICE_URL + "/route/bulk")
+                .build()
+                .toUri();
+        log.debug("Will call the bulkRoutes API on URL: {}, routes: {}", url, body.size());
+
+        return webClient
+                .post()
+                .uri(url)
+                .bodyValue(body)
+                .retrieve()
+                .bodyToFlux(BulkItemResult.class)
+                .log(log.getName(), FINE)
+                .onErrorMap(WebClientResponseException.class, this::handleException)
+                .transform(guard.flux(SERVICE));
     }
 }
@@ -1,12 +1,17 @@
 package com.example.microservices.direct.service;
 
+import com.example.mutual.api.core.BulkItemResult;
 import com.example.mutual.api.core.route.Route;
 import com.example.mutual.api.direct.RouteDirectService;
+import com.example.mutual.util.http.ConditionalGet;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 import static java.util.logging.Level.FINE;
 
 @Slf4j
@@ -23,10 +28,27 @@ public class RouteDirectServiceImpl implements RouteDirectService {
     @Override
     public Mono<Route> getRoute(int routeId) {
         return integration.getRoute(routeId)
+                .transform(ConditionalGet.byVersion(Route::getEntityId, Route::getVersion))
                 .doOnError(ex -> log.warn("getRoute failed: {}", ex.toString()))
                 .log(log.getName(), FINE);
     }
 
+    @Override
+    public Flux<Route> getRoutes(List<Integer> ids) {
+        log.debug("get {} routes by ids", ids.size());
+        return integration.getRoutes(ids)
+                .doOnError(ex -> log.warn("getRoutes failed: {}", ex.toString()))
+                .log(log.getName(), FINE);
+    }
+
+    @Override
+    public Flux<Route> scanRoutes(int afterId) {
+        log.debug("scan routes after routeId {}", afterId);
+        return integration.scanRoutes(afterId)
+                .doOnError(ex -> log.warn("scanRoutes failed: {}", ex.toString()))
+                .log(log.getName(), FINE);
+    }
+
     @Override
     public Mono<Void> createRoute(Route body) {
         try {
@@ -85,4 +107,12 @@ public class RouteDirectServiceImpl implements RouteDirectService {
             throw re;
         }
     }
+
+    @Override
+    public Flux<BulkItemResult> bulkRoutes(List<Route> body) {
+        log.debug("load {} routes in bulk", body.size());
+        return integration.bulkRoutes(body)
+                .doOnError(ex -> log.warn("bulkRoutes failed: {}", ex.toString()))
+                .log(log.getName(), FINE);
+    }
 }
@@ -1,6 +1,12 @@
 package com.example.microservices.direct.service;
 
+import com.example.microservices.direct.util.DownstreamGuard;
+import com.example.microservices.direct.util.SingleFlight;
+import com.example.microservices.direct.util.SingleFlights;
+import com.example.microservices.direct.util.StreamMessageCook;
+import com.example.mutual.api.core.BulkItemResult;
 import com.example.mutual.api.core.store.Store;
+import com.example.mutual.api.core.store.StoreCapacity;
 import com.example.mutual.api.core.store.StoreService;
 import com.example.mutual.api.event.Event;
 import com.example.mutual.api.exceptions.InvalidInputException;
@@ -9,20 +15,20 @@ import com.example.mutual.util.http.HttpErrorInfo;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cloud.stream.function.StreamBridge;
 import org.springframework.http.HttpStatus;
-import org.springframework.messaging.Message;
-import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Scheduler;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.List;
 import java.util.Objects;
+import java.util.stream.Collectors;
 
 import static com.example.mutual.api.event.Event.Type.*;
 import static java.util.logging.Level.FINE;
@@ -32,27 +38,37 @@ import static java.util.logging.Level.FINE;
 public class StoreDirectIntegration implements StoreService {
 
     private static final String STORE_SERVICE_URL = "http://store";
+    private static final String SERVICE = "store";
 
     private final ObjectMapper mapper;
     private final WebClient webClient;
-    private final Scheduler publishEventScheduler;
-    private final StreamBridge streamBridge;
+    private final DownstreamGuard guard;
+    private final SingleFlight<Integer, Store> singleFlight;
+    private final StreamMessageCook messageCook;
     private final String bindingName="store-crud";
 
     @Autowired
     public StoreDirectIntegration(
             ObjectMapper mapper,
             WebClient webClient,
-            Scheduler publishEventScheduler,
-            StreamBridge streamBridge
+            DownstreamGuard guard,
+            SingleFlights singleFlights,
+            StreamMessageCook messageCook
     ) {
         this.mapper = mapper;
         this.webClient = webClient;
-        this.publishEventScheduler = publishEventScheduler;
-        this.streamBridge = streamBridge;
+        this.guard = guard;
+        this.singleFlight = singleFlights.create(SERVICE);
+        this.messageCook = messageCook;
     }
+
+    // the callers of the same store at the same time share one call to the store service
     @Override
     public Mono<Store> getStore(int storeId) {
+        return singleFlight.get(storeId, this::fetchStore);
+    }
+
+    private Mono<Store> fetchStore(int storeId) {
         URI url = UriComponentsBuilder
                 .fromUriString(STORE_SERVICE_URL + "/store/" + storeId)
                 .build(storeId);
@@ -64,7 +80,53 @@ public class StoreDirectIntegration implements StoreService {
                 .retrieve()
                 .bodyToMono(Store.class)
                 .log(log.getName(), FINE)
-                .onErrorMap(WebClientResponseException.class, this::handleException);
+                .onErrorMap(WebClientResponseException.class, this::handleException)
+                .transform(guard.mono(SERVICE));
+    }
+
+    // one call for many ids, the store service streams the stores as it reads them
+    @Override
+    public Flux<Store> getStores(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Flux.empty();
+        }
+        URI url = UriComponentsBuilder
+                .fromUriString(STORE_SERVICE_URL + "/stores")
+                .queryParam("ids", ids.stream().map(String::valueOf).collect(Collectors.joining(",")))
+                .build()
+                .toUri();
+        log.debug("Will call the getStores API for {} stores", ids.size());
+
+        return webClient
+                .get()
+                .uri(url)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .retrieve()
+                .bodyToFlux(Store.class)
+                .log(log.getName(), FINE)
+                .onErrorMap(WebClientResponseException.class, this::handleException)
+                .transform(guard.flux(SERVICE));
+    }
+
+    // the scan is streamed through, the stores are passed on one by one as the store service sends them
+    @Override
+    public Flux<Store> scanStores(int afterId) {
+        URI url = UriComponentsBuilder
+                .fromUriString(STORE_SERVICE_URL + "/stores/scan")
+                .queryParam("afterId", afterId)
+                .build()
+                .toUri();
+        log.debug("Will call the scanStores API on URL: {}", url);
+
+        return webClient
+                .get()
+                .uri(url)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .retrieve()
+                .bodyToFlux(Store.class)
+                .log(log.getName(), FINE)
+                .onErrorMap(WebClientResponseException.class, this::handleException)
+                .transform(guard.flux(SERVICE));
     }
 
     private Throwable handleException(Throwable ex) {
@@ -96,36 +158,63 @@ public class StoreDirectIntegration implements StoreService {
 
     @Override
     public Mono<Store> createStore(Store body) {
-        return Mono.fromCallable(() -> {
-            sendMessage(bindingName, new Event<>(CREATE, body.getStoreId(), body));
-            return body;
-        }).subscribeOn(publishEventScheduler);
+        return messageCook.sendMessage(bindingName, new Event<>(CREATE, body.getStoreId(), body)).thenReturn(body);
     }
 
     @Override
     public Mono<Store> updateStore(Store body) {
-        return Mono.fromCallable(() -> {
-            sendMessage(bindingName, new Event<>(UPDATE, body.getStoreId(), body));
-            return body;
-        }).subscribeOn(publishEventScheduler);
+        return messageCook.sendMessage(bindingName, new Event<>(UPDATE, body.getStoreId(), body)).thenReturn(body);
     }
 
     @Override
     public Mono<Void> deleteStore(int storeId) {
-        return Mono.fromRunnable(
-                () -> sendMessage(bindingName, new Event<>(DELETE, storeId, null))
-        ).subscribeOn(publishEventScheduler).then();
+        return messageCook.sendMessage(bindingName, new Event<>(DELETE, storeId, null));
+    }
+
+    // a bulk load is applied synchronously by the store service, its per item results are passed through
+    @Override
+    public Flux<BulkItemResult> bulkStores(List<Store> body) {
+        URI url = UriComponentsBuilder
+                .fromUriString(STORE_SERVICE_URL + "/store/bulk")
+                .build()
+                .toUri();
+        log.debug("Will call the bulkStores API on URL: {}, stores: {}", url, body.size());
+
+        return webClient
+                .post()
+                .uri(url)
+                .bodyValue(body)
+                .retrieve()
+                .bodyToFlux(BulkItemResult.class)
+                .log(log.getName(), FINE)
+                .onErrorMap(WebClientResponseException.class, this::handleException)
+                .transform(guard.flux(SERVICE));
+    }
+
+    // a reservation is answered by the store service, it is not an event
+    @Override
+    public Mono<StoreCapacity> reserveCapacity(int storeId, int units) {
+        return changeCapacity(storeId, "reserve", units);
+    }
+
+    @Override
+    public Mono<StoreCapacity> releaseCapacity(int storeId, int units) {
+        return changeCapacity(storeId, "release", units);
     }
 
-    private void sendMessage(String bindingName, Event event) {
-        log.debug("Sending a {} message to {}", event.getEventType(), bindingName);
-        Message message = MessageBuilder.withPayload(event)
-                .setHeader("partitionKey", event.getKey())
-                .build();
-        log.debug("Sent success: {}, Name: {}, Event: {}",
-                streamBridge.send(bindingName, message),
-                bindingName,
-                event.getEventType()
-        );
+    private Mono<StoreCapacity> changeCapacity(int storeId, String operation, int units) {
+        URI url = UriComponentsBuilder
+                .fromUriString(STORE_SERVICE_URL + "/store/{storeId}/" + operation + "?units={units}")
+                .build(storeId, units);
+        log.debug("Will call the {}Capacity API on URL: {}", operation, url);
+
+        return webClient
+                .post()
+                .uri(url)
+                .retrieve()
+                .bodyToMono(StoreCapacity.class)
+                .log(log.getName(), FINE)
+                .onErrorMap(WebClientResponseException.class, this::handleException)
+                .transform(guard.mono(SERVICE));
     }
 }
@@ -1,7 +1,10 @@
 package com.example.microservices.direct.service;
 
+import com.example.mutual.api.core.BulkItemResult;
 import com.example.mutual.api.core.store.Store;
+import com.example.mutual.api.core.store.StoreCapacity;
 import com.example.mutual.api.direct.StoreDirectService;
+import com.example.mutual.util.http.ConditionalGet;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.context.ReactiveSecurityContextHolder;
@@ -10,6 +13,7 @@ import org.springframework.security.core.context.SecurityContextImpl;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.net.URL;
@@ -31,10 +35,27 @@ public class StoreDirectServiceImpl implements StoreDirectService {
     @Override
     public Mono<Store> getStore(int storeId) {
         return integration.getStore(storeId)
+                .transform(ConditionalGet.byVersion(Store::getEntityId, Store::getVersion))
                 .doOnError(ex -> log.warn("getStore failed: {}", ex.toString()))
                 .log(log.getName(), FINE);
     }
 
+    @Override
+    public Flux<Store> getStores(List<Integer> ids) {
+        log.debug("get {} stores by ids", ids.size());
+        return integration.getStores(ids)
+                .doOnError(ex -> log.warn("getStores failed: {}", ex.toString()))
+                .log(log.getName(), FINE);
+    }
+
+    @Override
+    public Flux<Store> scanStores(int afterId) {
+        log.debug("scan stores after storeId {}", afterId);
+        return integration.scanStores(afterId)
+                .doOnError(ex -> log.warn("scanStores failed: {}", ex.toString()))
+                .log(log.getName(), FINE);
+    }
+
     @Override
     public Mono<Void> createStore(Store body) {
         try {
@@ -90,6 +111,28 @@ public class StoreDirectServiceImpl implements StoreDirectService {
                 );
     }
 
+    @Override
+    public Flux<BulkItemResult> bulkStores(List<Store> body) {
+        log.debug("load {} stores in bulk", body.size());
+        return integration.bulkStores(body)
+                .doOnError(ex -> log.warn("bulkStores failed: {}", ex.toString()))
+                .log(log.getName(), FINE);
+    }
+
+    @Override
+    public Mono<StoreCapacity> reserveCapacity(int storeId, int units) {
+        return integration.reserveCapacity(storeId, units)
+                .doOnError(ex -> log.warn("reserveCapacity failed: {}", ex.toString()))
+                .log(log.getName(), FINE);
+    }
+
+    @Override
+    public Mono<StoreCapacity> releaseCapacity(int storeId, int units) {
+        return integration.releaseCapacity(storeId, units)
+                .doOnError(ex -> log.warn("releaseCapacity failed: {}", ex.toString()))
+                .log(log.getName(), FINE);
+    }
+
 
     private Mono<SecurityContext> getLogAuthorizationInfoMono() {
         return getSecurityContextMono().doOnNext(this::logAuthorizationInfo);
@@ -0,0 +1,78 @@
+package com.example.microservices.direct.util;
+
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.github.resilience4j.reactor.timelimiter.TimeLimiterOperator;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import static org.springframework.http.HttpStatus.GATEWAY_TIMEOUT;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+
+/**
+ * Wraps the calls to a core service in its bulkhead, time limiter and circuit breaker, the instances
+ * are named by the service ({@code resilience4j.*.instances.<service>}). A slow or failing service
+ * is answered at once with 503 while its breaker is open instead of holding the callers.
+ */
+@Slf4j
+@Component
+public class DownstreamGuard {
+    private final CircuitBreakerRegistry circuitBreakers;
+    private final TimeLimiterRegistry timeLimiters;
+    private final BulkheadRegistry bulkheads;
+
+    public DownstreamGuard(
+            CircuitBreakerRegistry circuitBreakers,
+            TimeLimiterRegistry timeLimiters,
+            BulkheadRegistry bulkheads
+    ) {
+        this.circuitBreakers = circuitBreakers;
+        this.timeLimiters = timeLimiters;
+        this.bulkheads = bulkheads;
+    }
+
+    public <T> Function<Mono<T>, Mono<T>> mono(String service) {
+        BulkheadOperator<T> bulkhead = BulkheadOperator.of(bulkheads.bulkhead(service));
+        TimeLimiterOperator<T> timeLimiter = TimeLimiterOperator.of(timeLimiters.timeLimiter(service));
+        CircuitBreakerOperator<T> circuitBreaker = CircuitBreakerOperator.of(circuitBreakers.circuitBreaker(service));
+        return call -> call
+                .transformDeferred(bulkhead)
+                .transformDeferred(timeLimiter)
+                .transformDeferred(circuitBreaker)
+                .onErrorMap(e -> rejected(service, e));
+    }
+
+    // on a stream the time limit is the wait for the next element, not for the whole stream
+    public <T> Function<Flux<T>, Flux<T>> flux(String service) {
+        BulkheadOperator<T> bulkhead = BulkheadOperator.of(bulkheads.bulkhead(service));
+        TimeLimiterOperator<T> timeLimiter = TimeLimiterOperator.of(timeLimiters.timeLimiter(service));
+        CircuitBreakerOperator<T> circuitBreaker = CircuitBreakerOperator.of(circuitBreakers.circuitBreaker(service));
+        return call -> call
+                .transformDeferred(bulkhead)
+                .transformDeferred(timeLimiter)
+                .transformDeferred(circuitBreaker)
+                .onErrorMap(e -> rejected(service, e));
+    }
+
+    private static Throwable rejected(String service, Throwable e) {
+        if (e instanceof CallNotPermittedException || e instanceof BulkheadFullException) {
+            log.warn("A call to the {} service is rejected: {}", service, e.getMessage());
+            return new ResponseStatusException(SERVICE_UNAVAILABLE, "The " + service + " service is not available", e);
+        }
+        if (e instanceof TimeoutException) {
+            return new ResponseStatusException(GATEWAY_TIMEOUT, "The " + service + " service did not answer in time", e);
+        }
+        return e;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.microservices.direct.util;
+
+import io.netty.channel.ChannelOption;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Makes the connection pools of the WebClient to the core services, a pool per service. The settings
+ * of a pool are {@code app.downstream.<service>.*} with {@code app.downstream.*} as the defaults.
+ * The pools report their connections as the {@code reactor.netty.connection.provider.*} gauges.
+ */
+@Slf4j
+@Component
+public class DownstreamPools {
+    private static final String PREFIX = "app.downstream.";
+    private static final List<String> SERVICES = List.of("store", "route", "cargo", "order");
+
+    private final Environment environment;
+
+    public DownstreamPools(Environment environment) {
+        this.environment = environment;
+    }
+
+    public ConnectionProvider connectionProvider() {
+        ConnectionProvider.Builder builder = ConnectionProvider.builder("downstream").metrics(true);
+        configure(builder, null);
+        for (String service : SERVICES) {
+            int port = property(service, "port", Integer.class, 80);
+            builder.forRemoteHost(InetSocketAddress.createUnresolved(service, port), spec -> configure(spec, service));
+        }
+        return builder.build();
+    }
+
+    // with h2c the core services are spoken to in HTTP/2 without the upgrade, they need server.http2.enabled
+    public HttpClient httpClient(ConnectionProvider connectionProvider) {
+        boolean h2c = property(null, "h2c", Boolean.class, false);
+        Duration connectTimeout = property(null, "connect-timeout", Duration.class, Duration.ofSeconds(2));
+        return HttpClient.create(connectionProvider)
+                .protocol(h2c ? HttpProtocol.H2C : HttpProtocol.HTTP11)
+                .keepAlive(true)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis());
+    }
+
+    private void configure(ConnectionProvider.ConnectionPoolSpec<?> spec, String service) {
+        int maxConnections = property(service, "max-connections", Integer.class, 500);
+        int pendingAcquireMaxCount = property(service, "pending-acquire-max-count", Integer.class, 2000);
+        Duration pendingAcquireTimeout = property(service, "pending-acquire-timeout", Duration.class, Duration.ofSeconds(5));
+        Duration maxIdleTime = property(service, "max-idle-time", Duration.class, Duration.ofSeconds(30));
+        Duration maxLifeTime = property(service, "max-life-time", Duration.class, Duration.ofMinutes(5));
+        Duration evictInBackground = property(service, "evict-in-background", Duration.class, Duration.ofSeconds(30));
+        log.info("Connection pool of {}: max connections = {}, pending acquires = {}, max idle time = {}",
+                service == null ? "default" : service, maxConnections, pendingAcquireMaxCount, maxIdleTime);
+        // the last released connection is leased first, the rarely used ones idle out instead of churning
+        spec.maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .maxIdleTime(maxIdleTime)
+                .maxLifeTime(maxLifeTime)
+                .evictInBackground(evictInBackground)
+                .lifo();
+    }
+
+    private <T> T property(String service, String name, Class<T> type, T defaultValue) {
+        T value = environment.getProperty(PREFIX + name, type, defaultValue);
+        return service == null ? value : environment.getProperty(PREFIX + service + "." + name, type, value);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.microservices.direct.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Collapses the concurrent calls for the same key into one: the callers that come while a call is
+ * in flight get its answer. With a time to live the answer is also given to the callers of the next
+ * {@code timeToLive}, an error is never kept. The {@code single.flight.calls} counter tells the calls
+ * that went out ({@code outcome=call}) from the collapsed ones ({@code outcome=joined}).
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentHashMap<K, Mono<V>> inFlight = new ConcurrentHashMap<>();
+    private final Duration timeToLive;
+    private final Counter calls;
+    private final Counter joined;
+
+    public SingleFlight(String name, Duration timeToLive, MeterRegistry registry) {
+        this.timeToLive = timeToLive;
+        this.calls = Counter.builder("single.flight.calls").tags("name", name, "outcome", "call").register(registry);
+        this.joined = Counter.builder("single.flight.calls").tags("name", name, "outcome", "joined").register(registry);
+    }
+
+    public Mono<V> get(K key, Function<K, Mono<V>> call) {
+        return Mono.defer(() -> {
+            AtomicReference<Mono<V>> created = new AtomicReference<>();
+            Mono<V> shared = inFlight.computeIfAbsent(key, k -> {
+                created.set(share(k, call.apply(k)));
+                return created.get();
+            });
+            (shared == created.get() ? calls : joined).increment();
+            return shared;
+        });
+    }
+
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    private Mono<V> share(K key, Mono<V> call) {
+        AtomicReference<Mono<V>> self = new AtomicReference<>();
+        // cache() keeps the call running when its first caller cancels, the others still wait for it
+        Mono<V> shared = call
+                .doFinally(signal -> forget(key, self.get(), signal))
+                .cache();
+        self.set(shared);
+        return shared;
+    }
+
+    private void forget(K key, Mono<V> shared, SignalType signal) {
+        if (signal != SignalType.ON_COMPLETE || timeToLive.isZero()) {
+            inFlight.remove(key, shared);
+            return;
+        }
+        Schedulers.parallel().schedule(() -> inFlight.remove(key, shared), timeToLive.toMillis(), TimeUnit.MILLISECONDS);
+    }
+}
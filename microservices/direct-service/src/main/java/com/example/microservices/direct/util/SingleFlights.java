@@ -0,0 +1,34 @@
+package com.example.microservices.direct.util;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Makes the single flights of the direct integrations. The time to live of the answers of a flight
+ * is {@code app.single-flight.<name>.time-to-live}, {@code app.single-flight.time-to-live} is the
+ * default, zero shares only the calls in flight.
+ */
+@Slf4j
+@Component
+public class SingleFlights {
+    private static final String PREFIX = "app.single-flight.";
+
+    private final Environment environment;
+    private final MeterRegistry registry;
+
+    public SingleFlights(Environment environment, MeterRegistry registry) {
+        this.environment = environment;
+        this.registry = registry;
+    }
+
+    public <K, V> SingleFlight<K, V> create(String name) {
+        Duration timeToLive = environment.getProperty(PREFIX + name + ".time-to-live", Duration.class,
+                environment.getProperty(PREFIX + "time-to-live", Duration.class, Duration.ZERO));
+        log.info("Creates a single flight {}, time to live = {}", name, timeToLive);
+        return new SingleFlight<>(name, timeToLive, registry);
+    }
+}
@@ -1,30 +1,196 @@
 package com.example.microservices.direct.util;
 
 import com.example.mutual.api.event.Event;
+import com.example.mutual.util.event.EncodedEvent;
+import com.example.mutual.util.event.EventEncoder;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.stream.function.StreamBridge;
 import org.springframework.messaging.Message;
-import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.SubscribableChannel;
 import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+
+/**
+ * Non-blocking publisher of the crud events. A request only puts its event into a bounded ring buffer,
+ * one publisher thread drains the buffer in batches into StreamBridge, where the Kafka producer batches
+ * the records once more (linger.ms, batch.size). The Mono of an event completes when the broker acknowledges
+ * the record, reported through the {@code publishConfirms} record metadata channel of the binding, or, with
+ * {@code app.publisher.confirms: false}, as soon as the producer accepted it. A full buffer fails fast with 503.
+ */
 @Slf4j
 @Component
 public class StreamMessageCook {
+    static final String PUBLISH_ID = "publishId";
+
     private final StreamBridge streamBridge;
+    private final EventEncoder encoder;
+    private final MeterRegistry registry;
+    private final ArrayBlockingQueue<Pending> buffer;
+    private final int batchSize;
+    private final boolean confirms;
+    private final Duration confirmTimeout;
+    private final Scheduler publisher = Schedulers.newSingle("publisher");
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicLong nextId = new AtomicLong();
+    private final Map<Long, Pending> unconfirmed = new ConcurrentHashMap<>();
+    private final Map<String, BindingMeters> meters = new ConcurrentHashMap<>();
 
-    public StreamMessageCook(StreamBridge streamBridge) {
+    public StreamMessageCook(
+            StreamBridge streamBridge,
+            EventEncoder encoder,
+            @Qualifier("publishConfirms") SubscribableChannel publishConfirms,
+            @Qualifier("errorChannel") SubscribableChannel errorChannel,
+            MeterRegistry registry,
+            @Value("${app.publisher.buffer-size:16384}") int bufferSize,
+            @Value("${app.publisher.batch-size:256}") int batchSize,
+            @Value("${app.publisher.confirms:false}") boolean confirms,
+            @Value("${app.publisher.confirm-timeout:10s}") Duration confirmTimeout
+    ) {
         this.streamBridge = streamBridge;
+        this.encoder = encoder;
+        this.registry = registry;
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        this.batchSize = batchSize;
+        this.confirms = confirms;
+        this.confirmTimeout = confirmTimeout;
+        Gauge.builder("publisher.buffer.size", buffer, ArrayBlockingQueue::size).register(registry);
+        publishConfirms.subscribe(message -> confirm(message, null));
+        errorChannel.subscribe(message -> {
+            if (message.getPayload() instanceof MessagingException e && e.getFailedMessage() != null) {
+                confirm(e.getFailedMessage(), e);
+            }
+        });
+        log.info("Creates a publisher with buffer size = {}, batch size = {}, confirms = {}",
+                bufferSize, batchSize, confirms);
+    }
+
+    public Mono<Void> sendMessage(String bindingName, Event<?, ?> event) {
+        return Mono.defer(() -> {
+            // encoded by the caller, the publisher thread only hands the bytes over
+            Pending pending = new Pending(nextId.incrementAndGet(), bindingName, event.getKey(),
+                    encoder.encode(bindingName, event), new CompletableFuture<>(), System.nanoTime());
+            if (!buffer.offer(pending)) {
+                log.warn("The publish buffer is full, rejects a {} message to {}", event.getEventType(), bindingName);
+                return Mono.error(new ResponseStatusException(SERVICE_UNAVAILABLE, "The publish buffer is full"));
+            }
+            BindingMeters bindingMeters = meters(bindingName);
+            bindingMeters.inFlight().incrementAndGet();
+            pending.confirm()
+                    .orTimeout(confirmTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                    .whenComplete((ignored, error) -> {
+                        unconfirmed.remove(pending.id());
+                        bindingMeters.inFlight().decrementAndGet();
+                        (error == null ? bindingMeters.confirmed() : bindingMeters.failed())
+                                .record(System.nanoTime() - pending.startNanos(), TimeUnit.NANOSECONDS);
+                    });
+            if (wip.getAndIncrement() == 0) {
+                publisher.schedule(this::drain);
+            }
+            return Mono.fromFuture(pending.confirm());
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        publisher.dispose();
+    }
+
+    private void drain() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        int missed = 1;
+        do {
+            while (buffer.drainTo(batch, batchSize) > 0) {
+                batch.forEach(this::send);
+                batch.clear();
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
     }
 
-    public void sendMessage(String bindingName, Event event) {
-        log.debug("Sending a {} message to {}", event.getEventType(), bindingName);
-        Message message = MessageBuilder.withPayload(event)
-                .setHeader("partitionKey", event.getKey())
+    private void send(Pending pending) {
+        if (log.isDebugEnabled()) {
+            log.debug("Sending a message to {}: {}", pending.bindingName(), pending.event());
+        }
+        Message<byte[]> message = pending.event().message(pending.key())
+                .setHeader(PUBLISH_ID, pending.id())
                 .build();
-        log.debug("Sent success: {}, Name: {}, Event: {}",
-                streamBridge.send(bindingName, message),
-                bindingName,
-                event.getEventType()
-        );
+        if (confirms) {
+            unconfirmed.put(pending.id(), pending);
+        }
+        try {
+            if (!streamBridge.send(pending.bindingName(), message)) {
+                pending.confirm().completeExceptionally(
+                        new IllegalStateException("The message is not accepted by " + pending.bindingName()));
+            } else if (!confirms) {
+                pending.confirm().complete(null);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to send a message to {}: {}", pending.bindingName(), e.toString());
+            pending.confirm().completeExceptionally(e);
+        }
+    }
+
+    private void confirm(Message<?> message, Throwable error) {
+        if (!(message.getHeaders().get(PUBLISH_ID) instanceof Number id)) {
+            return;
+        }
+        Pending pending = unconfirmed.remove(id.longValue());
+        if (pending == null) {
+            return;
+        }
+        if (error == null) {
+            pending.confirm().complete(null);
+        } else {
+            log.warn("The broker rejected a message to {}: {}", pending.bindingName(), error.toString());
+            pending.confirm().completeExceptionally(error);
+        }
+    }
+
+    private BindingMeters meters(String bindingName) {
+        return meters.computeIfAbsent(bindingName, binding -> {
+            AtomicInteger inFlight = new AtomicInteger();
+            Gauge.builder("publisher.in.flight", inFlight, AtomicInteger::get)
+                    .tag("binding", binding)
+                    .register(registry);
+            return new BindingMeters(
+                    inFlight,
+                    Timer.builder("publisher.latency").tags("binding", binding, "outcome", "confirmed")
+                            .register(registry),
+                    Timer.builder("publisher.latency").tags("binding", binding, "outcome", "failed")
+                            .register(registry)
+            );
+        });
+    }
+
+    private record Pending(
+            long id, String bindingName, Object key, EncodedEvent event, CompletableFuture<Void> confirm,
+            long startNanos
+    ) {
+    }
+
+    private record BindingMeters(AtomicInteger inFlight, Timer confirmed, Timer failed) {
     }
 }
@@ -0,0 +1,82 @@
+package com.example.microservices.direct.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Keeps the last answer of a core service GET with its ETag and asks the service again with
+ * If-None-Match: an unchanged entity comes back as 304 without a body and the kept answer is used.
+ * The {@code validator.cache.gets} counter tells the 304 ({@code outcome=not-modified}) from the
+ * full answers ({@code outcome=read}).
+ */
+public class ValidatorCache<K, V> {
+    private final Cache<K, Tagged<V>> cache;
+    private final Class<V> type;
+    private final Counter notModified;
+    private final Counter read;
+
+    public ValidatorCache(
+            String name, Class<V> type, long maximumSize, Duration expireAfterAccess, MeterRegistry registry
+    ) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(expireAfterAccess)
+                .build();
+        this.type = type;
+        this.notModified = Counter.builder("validator.cache.gets").tags("name", name, "outcome", "not-modified")
+                .register(registry);
+        this.read = Counter.builder("validator.cache.gets").tags("name", name, "outcome", "read")
+                .register(registry);
+    }
+
+    public Mono<V> get(K key, WebClient.RequestHeadersSpec<?> request) {
+        return Mono.defer(() -> {
+            Tagged<V> kept = cache.getIfPresent(key);
+            request.headers(headers -> {
+                if (kept != null) {
+                    headers.setIfNoneMatch(kept.etag());
+                } else {
+                    headers.remove(HttpHeaders.IF_NONE_MATCH);
+                }
+            });
+            return exchange(key, kept, request);
+        });
+    }
+
+    private Mono<V> exchange(K key, Tagged<V> kept, WebClient.RequestHeadersSpec<?> request) {
+        return request.exchangeToMono(response -> {
+            if (kept != null && response.statusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+                notModified.increment();
+                return response.releaseBody().thenReturn(kept.value());
+            }
+            if (!response.statusCode().is2xxSuccessful()) {
+                cache.invalidate(key);
+                return response.createError();
+            }
+            read.increment();
+            String etag = response.headers().asHttpHeaders().getETag();
+            return response.bodyToMono(type).doOnNext(value -> {
+                if (etag != null) {
+                    cache.put(key, new Tagged<>(etag, value));
+                } else {
+                    cache.invalidate(key);
+                }
+            });
+        });
+    }
+
+    public void invalidate(K key) {
+        cache.invalidate(key);
+    }
+
+    private record Tagged<V>(String etag, V value) {
+    }
+}
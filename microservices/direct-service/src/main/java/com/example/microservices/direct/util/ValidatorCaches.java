@@ -0,0 +1,37 @@
+package com.example.microservices.direct.util;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Makes the validator caches of the direct integrations. The settings of a cache are
+ * {@code app.validator-cache.<name>.maximum-size} and {@code app.validator-cache.<name>.expire-after-access},
+ * with {@code app.validator-cache.maximum-size} and {@code app.validator-cache.expire-after-access} as the defaults.
+ */
+@Slf4j
+@Component
+public class ValidatorCaches {
+    private static final String PREFIX = "app.validator-cache.";
+
+    private final Environment environment;
+    private final MeterRegistry registry;
+
+    public ValidatorCaches(Environment environment, MeterRegistry registry) {
+        this.environment = environment;
+        this.registry = registry;
+    }
+
+    public <K, V> ValidatorCache<K, V> create(String name, Class<V> type) {
+        long maximumSize = environment.getProperty(PREFIX + name + ".maximum-size", Long.class,
+                environment.getProperty(PREFIX + "maximum-size", Long.class, 10000L));
+        Duration expireAfterAccess = environment.getProperty(PREFIX + name + ".expire-after-access", Duration.class,
+                environment.getProperty(PREFIX + "expire-after-access", Duration.class, Duration.ofMinutes(10)));
+        log.info("Creates a validator cache {}, maximum size = {}, expire after access = {}",
+                name, maximumSize, expireAfterAccess);
+        return new ValidatorCache<>(name, type, maximumSize, expireAfterAccess, registry);
+    }
+}
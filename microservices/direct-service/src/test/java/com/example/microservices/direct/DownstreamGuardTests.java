@@ -0,0 +1,93 @@
+package com.example.microservices.direct;
+
+import com.example.microservices.direct.util.DownstreamGuard;
+import com.example.mutual.api.exceptions.NotFoundException;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.http.HttpStatus.GATEWAY_TIMEOUT;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+
+class DownstreamGuardTests {
+
+    private final CircuitBreakerRegistry circuitBreakers = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+            .slidingWindowSize(4)
+            .minimumNumberOfCalls(4)
+            .failureRateThreshold(50)
+            .waitDurationInOpenState(Duration.ofMinutes(1))
+            .ignoreExceptions(NotFoundException.class)
+            .build());
+    private final DownstreamGuard guard = new DownstreamGuard(
+            circuitBreakers,
+            TimeLimiterRegistry.of(TimeLimiterConfig.custom().timeoutDuration(Duration.ofMillis(200)).build()),
+            BulkheadRegistry.of(BulkheadConfig.custom().maxConcurrentCalls(1).maxWaitDuration(Duration.ZERO).build())
+    );
+
+    @Test
+    void openBreakerAnswersWithoutCall() {
+        AtomicInteger calls = new AtomicInteger();
+        Mono<String> failing = Mono.<String>error(new IllegalStateException("down"))
+                .doOnSubscribe(s -> calls.incrementAndGet());
+
+        for (int i = 0; i < 4; i++) {
+            StepVerifier.create(failing.transform(guard.mono("store")))
+                    .expectError(IllegalStateException.class)
+                    .verify();
+        }
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreakers.circuitBreaker("store").getState());
+
+        StepVerifier.create(failing.transform(guard.mono("store")))
+                .expectErrorMatches(e -> isStatus(e, SERVICE_UNAVAILABLE))
+                .verify();
+        assertEquals(4, calls.get());
+        // у других сервисов свой автомат
+        StepVerifier.create(Mono.just("cargo").transform(guard.mono("cargo")))
+                .expectNext("cargo")
+                .verifyComplete();
+    }
+
+    @Test
+    void notFoundIsNotFailure() {
+        for (int i = 0; i < 10; i++) {
+            StepVerifier.create(Mono.<String>error(new NotFoundException("No store")).transform(guard.mono("store")))
+                    .expectError(NotFoundException.class)
+                    .verify();
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreakers.circuitBreaker("store").getState());
+    }
+
+    @Test
+    void slowCallTimesOut() {
+        StepVerifier.create(Mono.never().transform(guard.mono("route")))
+                .expectErrorMatches(e -> isStatus(e, GATEWAY_TIMEOUT))
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void fullBulkheadRejects() {
+        // первый поток держит единственное место
+        StepVerifier.create(Flux.<String>never().transform(guard.flux("order"))
+                        .mergeWith(Flux.<String>never().transform(guard.flux("order"))))
+                .expectErrorMatches(e -> isStatus(e, SERVICE_UNAVAILABLE))
+                .verify(Duration.ofSeconds(5));
+    }
+
+    private static boolean isStatus(Throwable e, HttpStatus status) {
+        return e instanceof ResponseStatusException rse && rse.getStatusCode() == status;
+    }
+}
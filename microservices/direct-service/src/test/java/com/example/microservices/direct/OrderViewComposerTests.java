@@ -0,0 +1,91 @@
+package com.example.microservices.direct;
+
+import com.example.microservices.direct.service.CargoDirectIntegration;
+import com.example.microservices.direct.service.OrderDirectIntegration;
+import com.example.microservices.direct.service.OrderViewComposer;
+import com.example.microservices.direct.service.RouteDirectIntegration;
+import com.example.microservices.direct.service.StoreDirectIntegration;
+import com.example.mutual.api.core.cargo.Cargo;
+import com.example.mutual.api.core.order.Order;
+import com.example.mutual.api.core.route.Route;
+import com.example.mutual.api.core.store.Store;
+import com.example.mutual.api.direct.OrderView;
+import com.example.mutual.api.exceptions.NotFoundException;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static com.example.mutual.api.core.route.RouteRuleType.MINIMAL_DISTANCE;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class OrderViewComposerTests {
+
+    private final OrderDirectIntegration orderIntegration = mock(OrderDirectIntegration.class);
+    private final CargoDirectIntegration cargoIntegration = mock(CargoDirectIntegration.class);
+    private final StoreDirectIntegration storeIntegration = mock(StoreDirectIntegration.class);
+    private final RouteDirectIntegration routeIntegration = mock(RouteDirectIntegration.class);
+    private final OrderViewComposer composer = new OrderViewComposer(
+            orderIntegration, cargoIntegration, storeIntegration, routeIntegration, Duration.ofMillis(500)
+    );
+
+    @Test
+    void partsAreReadInParallel() {
+        when(orderIntegration.getOrder(1)).thenReturn(Mono.just(new Order(1, 5, 10, 11, Order.Status.NEW, null)));
+        // каждая часть отвечает через 300 мс, последовательно это было бы больше секунды
+        when(cargoIntegration.getCargo(5)).thenReturn(delayed(new Cargo(5, "cookies", 10, Cargo.Status.STOCK, null)));
+        when(storeIntegration.getStore(10)).thenReturn(delayed(new Store(10, "from", 100, 0, null)));
+        when(storeIntegration.getStore(11)).thenReturn(delayed(new Store(11, "to", 100, 0, null)));
+        when(routeIntegration.getRouteBetween(10, 11, MINIMAL_DISTANCE))
+                .thenReturn(delayed(new Route(7, 10, 11, "10 -> 11", 100, 10)));
+
+        long start = System.nanoTime();
+        OrderView view = composer.compose(1, MINIMAL_DISTANCE).block();
+        Duration took = Duration.ofNanos(System.nanoTime() - start);
+
+        assertNotNull(view);
+        assertEquals(5, view.getCargo().getCargoId());
+        assertEquals("from", view.getFromStore().getLocation());
+        assertEquals("to", view.getToStore().getLocation());
+        assertEquals(7, view.getRoute().getRouteId());
+        assertTrue(view.getFailures().isEmpty());
+        assertTrue(took.compareTo(Duration.ofMillis(1000)) < 0, "took " + took);
+    }
+
+    @Test
+    void failedPartsAreLeftOut() {
+        when(orderIntegration.getOrder(1)).thenReturn(Mono.just(new Order(1, 5, 10, 11, Order.Status.NEW, null)));
+        when(cargoIntegration.getCargo(5)).thenReturn(Mono.just(new Cargo(5, "cookies", 10, Cargo.Status.STOCK, null)));
+        when(storeIntegration.getStore(10)).thenReturn(Mono.error(new NotFoundException("No store found for storeId: 10")));
+        when(storeIntegration.getStore(11)).thenReturn(Mono.never());
+        when(routeIntegration.getRouteBetween(10, 11, MINIMAL_DISTANCE)).thenReturn(Mono.empty());
+
+        OrderView view = composer.compose(1, MINIMAL_DISTANCE).block();
+
+        assertNotNull(view);
+        assertEquals(5, view.getCargo().getCargoId());
+        assertNull(view.getFromStore());
+        assertNull(view.getToStore());
+        assertNull(view.getRoute());
+        assertEquals("No store found for storeId: 10", view.getFailures().get("fromStore"));
+        assertTrue(view.getFailures().get("toStore").startsWith("No answer"));
+        assertEquals("Not found", view.getFailures().get("route"));
+        assertFalse(view.getFailures().containsKey("cargo"));
+    }
+
+    @Test
+    void missingOrderFailsTheView() {
+        when(orderIntegration.getOrder(13)).thenReturn(Mono.error(new NotFoundException("No order found for orderId: 13")));
+
+        StepVerifier.create(composer.compose(13, MINIMAL_DISTANCE))
+                .expectError(NotFoundException.class)
+                .verify();
+        verifyNoInteractions(cargoIntegration, storeIntegration, routeIntegration);
+    }
+
+    private static <T> Mono<T> delayed(T value) {
+        return Mono.just(value).delayElement(Duration.ofMillis(300));
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.microservices.direct;
+
+import com.example.microservices.direct.util.SingleFlight;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SingleFlightTests {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Test
+    void concurrentCallersShareOneCall() {
+        SingleFlight<Integer, String> flight = new SingleFlight<>("cargo", Duration.ZERO, registry);
+        Sinks.One<String> answer = Sinks.one();
+
+        Mono<List<String>> callers = Flux.range(0, 10)
+                .flatMap(i -> flight.get(1, id -> call(answer.asMono())))
+                .collectList();
+
+        StepVerifier.create(callers)
+                .then(() -> answer.tryEmitValue("cargo 1"))
+                .assertNext(values -> assertEquals(10, values.size()))
+                .verifyComplete();
+        assertEquals(1, calls.get());
+        assertEquals(1.0, registry.get("single.flight.calls").tag("outcome", "call").counter().count());
+        assertEquals(9.0, registry.get("single.flight.calls").tag("outcome", "joined").counter().count());
+        assertEquals(0, flight.inFlight());
+
+        // вызов завершён, следующий идёт заново
+        StepVerifier.create(flight.get(1, id -> call(Mono.just("cargo 1"))))
+                .expectNext("cargo 1")
+                .verifyComplete();
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void answerIsKeptForTimeToLive() throws InterruptedException {
+        SingleFlight<Integer, String> flight = new SingleFlight<>("route", Duration.ofMillis(300), registry);
+
+        assertEquals("route 1", flight.get(1, id -> call(Mono.just("route 1"))).block());
+        assertEquals("route 1", flight.get(1, id -> call(Mono.just("route 1"))).block());
+        assertEquals(1, calls.get());
+
+        Thread.sleep(600);
+        assertEquals("route 1", flight.get(1, id -> call(Mono.just("route 1"))).block());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void errorIsNotKept() {
+        SingleFlight<Integer, String> flight = new SingleFlight<>("order", Duration.ofMinutes(1), registry);
+
+        StepVerifier.create(flight.get(1, id -> call(Mono.error(new IllegalStateException("down")))))
+                .expectError(IllegalStateException.class)
+                .verify();
+        StepVerifier.create(flight.get(1, id -> call(Mono.just("order 1"))))
+                .expectNext("order 1")
+                .verifyComplete();
+        assertEquals(2, calls.get());
+    }
+
+    private Mono<String> call(Mono<String> answer) {
+        return Mono.defer(() -> {
+            calls.incrementAndGet();
+            return answer;
+        });
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.microservices.direct;
+
+import com.example.microservices.direct.util.StreamMessageCook;
+import com.example.mutual.api.core.store.Store;
+import com.example.mutual.api.event.Event;
+import com.example.mutual.util.event.EventEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.channel.PublishSubscribeChannel;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.mutual.api.event.Event.Type.CREATE;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class StreamMessageCookTests {
+
+    private final StreamBridge streamBridge = mock(StreamBridge.class);
+    private final DirectChannel publishConfirms = new DirectChannel();
+    private final PublishSubscribeChannel errorChannel = new PublishSubscribeChannel();
+    private final List<Message<?>> sent = new CopyOnWriteArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private StreamMessageCook messageCook;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        messageCook.close();
+    }
+
+    @Test
+    void completesOnBrokerConfirm() {
+        // Mono завершается только после подтверждения брокера
+        messageCook = messageCook(16, true);
+        when(streamBridge.send(eq("store-crud"), any())).thenAnswer(invocation -> sent.add(invocation.getArgument(1)));
+
+        CompletableFuture<Void> confirmed = messageCook.sendMessage("store-crud", event(1)).toFuture();
+        verify(streamBridge, timeout(5000)).send(eq("store-crud"), any());
+        assertFalse(confirmed.isDone());
+
+        publishConfirms.send(sent.get(0));
+        assertTrue(confirmed.isDone());
+        assertFalse(confirmed.isCompletedExceptionally());
+    }
+
+    @Test
+    void failsOnBrokerError() {
+        messageCook = messageCook(16, true);
+        when(streamBridge.send(eq("store-crud"), any())).thenAnswer(invocation -> sent.add(invocation.getArgument(1)));
+
+        CompletableFuture<Void> confirmed = messageCook.sendMessage("store-crud", event(1)).toFuture();
+        verify(streamBridge, timeout(5000)).send(eq("store-crud"), any());
+
+        errorChannel.send(new ErrorMessage(new MessagingException(sent.get(0), "The broker is not available")));
+        ExecutionException e = assertThrows(ExecutionException.class, confirmed::get);
+        assertInstanceOf(MessagingException.class, e.getCause());
+    }
+
+    @Test
+    void rejectsWhenBufferIsFull() throws Exception {
+        // издатель занят первым событием, второе ждет в буфере, третье не помещается
+        messageCook = messageCook(1, false);
+        when(streamBridge.send(eq("store-crud"), any())).thenAnswer(invocation -> {
+            sent.add(invocation.getArgument(1));
+            return release.await(5, TimeUnit.SECONDS);
+        });
+
+        CompletableFuture<Void> first = messageCook.sendMessage("store-crud", event(1)).toFuture();
+        verify(streamBridge, timeout(5000)).send(eq("store-crud"), any());
+        CompletableFuture<Void> second = messageCook.sendMessage("store-crud", event(2)).toFuture();
+        CompletableFuture<Void> third = messageCook.sendMessage("store-crud", event(3)).toFuture();
+
+        ExecutionException e = assertThrows(ExecutionException.class, third::get);
+        assertInstanceOf(ResponseStatusException.class, e.getCause());
+
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        assertEquals(2, sent.size());
+    }
+
+    private StreamMessageCook messageCook(int bufferSize, boolean confirms) {
+        return new StreamMessageCook(
+                streamBridge, new EventEncoder(new ObjectMapper()), publishConfirms, errorChannel,
+                new SimpleMeterRegistry(), bufferSize, 16, confirms, Duration.ofSeconds(5)
+        );
+    }
+
+    private static Event<Integer, Store> event(int storeId) {
+        return new Event<>(CREATE, storeId, new Store(storeId, "location", 10, 1, null));
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.microservices.direct;
+
+import com.example.microservices.direct.util.ValidatorCache;
+import com.example.mutual.api.core.cargo.Cargo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ValidatorCacheTests {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ValidatorCache<Integer, Cargo> validators =
+            new ValidatorCache<>("cargo", Cargo.class, 100, Duration.ofMinutes(1), registry);
+    private final List<ClientRequest> requests = new CopyOnWriteArrayList<>();
+    private final AtomicInteger version = new AtomicInteger(1);
+    private final WebClient webClient = WebClient.builder()
+            .exchangeFunction(request -> {
+                requests.add(request);
+                String etag = "W/\"" + version.get() + "\"";
+                if (etag.equals(request.headers().getFirst(HttpHeaders.IF_NONE_MATCH))) {
+                    return Mono.just(ClientResponse.create(HttpStatus.NOT_MODIFIED).header(HttpHeaders.ETAG, etag).build());
+                }
+                return Mono.just(ClientResponse.create(HttpStatus.OK)
+                        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .header(HttpHeaders.ETAG, etag)
+                        .body("{\"cargoId\":1,\"name\":\"cookies\",\"version\":" + version.get() + "}")
+                        .build());
+            })
+            .build();
+
+    @Test
+    void unchangedCargoIsNotReadAgain() {
+        Cargo first = validators.get(1, webClient.get().uri("http://cargo/cargo/1")).block();
+        Cargo second = validators.get(1, webClient.get().uri("http://cargo/cargo/1")).block();
+
+        assertNull(requests.get(0).headers().getFirst(HttpHeaders.IF_NONE_MATCH));
+        assertEquals("W/\"1\"", requests.get(1).headers().getFirst(HttpHeaders.IF_NONE_MATCH));
+        assertEquals(first, second);
+        assertEquals(1.0, registry.get("validator.cache.gets").tag("outcome", "not-modified").counter().count());
+
+        // новая версия приходит целиком
+        version.set(2);
+        Cargo third = validators.get(1, webClient.get().uri("http://cargo/cargo/1")).block();
+        assertEquals(2, third.getVersion());
+        assertEquals(2.0, registry.get("validator.cache.gets").tag("outcome", "read").counter().count());
+    }
+
+    @Test
+    void errorIsPassedOn() {
+        WebClient notFound = WebClient.builder()
+                .exchangeFunction(request -> Mono.just(ClientResponse.create(HttpStatus.NOT_FOUND).build()))
+                .build();
+
+        StepVerifier.create(validators.get(13, notFound.get().uri("http://cargo/cargo/13")))
+                .expectError(WebClientResponseException.NotFound.class)
+                .verify();
+    }
+}
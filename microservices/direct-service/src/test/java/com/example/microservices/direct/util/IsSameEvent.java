@@ -30,6 +30,7 @@ public class IsSameEvent extends TypeSafeMatcher<String> {
         LOG.trace("Convert the following json string to a map: {}", eventAsJson);
         Map mapEvent = convertJsonStringToMap(eventAsJson);
         mapEvent.remove("eventCreatedAt");
+        mapEvent.remove("eventId");
 
         Map mapExpectedEvent = getMapWithoutCreatedAt(expectedEvent);
 
@@ -56,6 +57,7 @@ public class IsSameEvent extends TypeSafeMatcher<String> {
     private Map getMapWithoutCreatedAt(Event event) {
         Map mapEvent = convertObjectToMap(event);
         mapEvent.remove("eventCreatedAt");
+        mapEvent.remove("eventId");
         return mapEvent;
     }
     private Map convertObjectToMap(Object object) {
@@ -1,59 +1,136 @@
 package com.example.microservices.core.order.broker;
 
+import com.example.microservices.core.order.persistence.OrderEntity;
 import com.example.mutual.api.core.order.Order;
 import com.example.mutual.api.core.order.OrderService;
 import com.example.mutual.api.event.Event;
 import com.example.mutual.api.exceptions.EventProcessingException;
+import com.example.mutual.util.cache.ReadThroughCache;
+import com.example.mutual.util.event.KeyOrderedExecutor;
+import com.example.mutual.util.event.RecordPosition;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.stream.function.StreamBridge;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Slf4j
 @Configuration
 public class ConsumersConfig {
 
+    private static final String DEAD_LETTER_BINDING = "consumerCrudDlq-out-0";
+
     private final OrderService orderService;
+    private final StreamBridge streamBridge;
+    private final ReadThroughCache<Integer, Order> cache;
+    private final KeyOrderedExecutor executor;
 
     @Autowired
-    public ConsumersConfig(OrderService orderService) {
+    public ConsumersConfig(
+            OrderService orderService,
+            StreamBridge streamBridge,
+            ReadThroughCache<Integer, Order> cache,
+            @Value("${app.consumer.concurrency:4}") int concurrency,
+            @Value("${app.consumer.max-in-flight:256}") int maxInFlight
+    ) {
         this.orderService = orderService;
+        this.streamBridge = streamBridge;
+        this.cache = cache;
+        this.executor = new KeyOrderedExecutor(concurrency, maxInFlight);
+    }
+
+    /**
+     * Events of one order id share a lane and are applied one after another, lanes run concurrently.
+     * A failed event goes to the dead letter topic, the stream itself keeps going. Offsets are
+     * acknowledged only up to the oldest event still in progress, so a restart never skips one.
+     */
+    @Bean
+    public Function<Flux<Message<Event<Integer, Order>>>, Mono<Void>> consumerCrud() {
+        return messages -> executor.execute(
+                messages,
+                message -> message.getPayload().getKey(),
+                ConsumersConfig::position,
+                message -> processCrud(message.getPayload())
+        );
+    }
+
+    // the acknowledgment header is present with ackMode MANUAL only
+    private static RecordPosition position(Message<?> message) {
+        MessageHeaders headers = message.getHeaders();
+        Acknowledgment acknowledgment = headers.get(KafkaHeaders.ACKNOWLEDGMENT, Acknowledgment.class);
+        if (acknowledgment == null) {
+            return null;
+        }
+        return new RecordPosition(
+                headers.get(KafkaHeaders.RECEIVED_PARTITION, Integer.class),
+                headers.get(KafkaHeaders.OFFSET, Long.class),
+                acknowledgment::acknowledge
+        );
+    }
+
+    private Mono<Void> processCrud(Event<Integer, Order> event) {
+        return Mono.defer(() -> applyCrud(event))
+                .doOnSuccess(result -> log.info("Message processing done!"))
+                .onErrorResume(error -> deadLetter(event, error))
+                .then();
+    }
+
+    private Mono<?> applyCrud(Event<Integer, Order> event) {
+        log.info("Process message {} created at {}...", event.getEventId(), event.getEventCreatedAt());
+        Order order;
+
+        switch (event.getEventType()) {
+
+            case CREATE:
+                order = event.getData();
+                log.info("Create order with ID: {}", order.getOrderId());
+                return orderService.createOrder(order);
+
+            case UPDATE:
+                order = event.getData();
+                log.info("Update order with orderID: {}", order.getOrderId());
+                return orderService.updateOrder(order);
+
+            case DELETE:
+                log.info("Delete order with orderID: {}", event.getKey());
+                return orderService.deleteOrder(event.getKey());
+
+            default:
+                String errorMessage = "Incorrect event type: " + event.getEventType() + ", expected a CREATE or DELETE event";
+                log.warn(errorMessage);
+                throw new EventProcessingException(errorMessage);
+        }
+    }
+
+    private Mono<Void> deadLetter(Event<Integer, Order> event, Throwable error) {
+        log.error("Failed to process {} for orderID: {}, sent to the dead letter topic: {}",
+                event.getEventType(), event.getKey(), error.getMessage());
+        streamBridge.send(DEAD_LETTER_BINDING, MessageBuilder.withPayload(event)
+                .setHeader("x-exception-message", String.valueOf(error.getMessage()))
+                .build());
+        return Mono.empty();
     }
 
+    /**
+     * Every instance receives the revise events of its own topic (no consumer group) and drops the order
+     * from its read cache, the writing instance has dropped it already after the commit.
+     */
     @Bean
-    public Consumer<Event<Integer, Order>> consumerCrud() {
+    public Consumer<Event<Integer, OrderEntity>> consumerRevise() {
         return event -> {
-            log.info("Process message created at {}...", event.getEventCreatedAt());
-            Order store;
-
-            switch (event.getEventType()) {
-
-                case CREATE:
-                    store = event.getData();
-                    log.info("Create store with ID: {}", store.getOrderId());
-                    orderService.createOrder(store).block();
-                    break;
-
-                case UPDATE:
-                    store = event.getData();
-                    log.info("Update store with storeID: {}", store.getOrderId());
-                    orderService.updateOrder(store).block();
-                    break;
-
-                case DELETE:
-                    log.info("Delete store with storeID: {}", event.getKey());
-                    orderService.deleteOrder(event.getKey()).block();
-                    break;
-
-                default:
-                    String errorMessage = "Incorrect event type: " + event.getEventType() + ", expected a CREATE or DELETE event";
-                    log.warn(errorMessage);
-                    throw new EventProcessingException(errorMessage);
-            }
-
-            log.info("Message processing done!");
+            log.debug("Invalidate the cached order on revise {} for orderID: {}", event.getEventType(), event.getKey());
+            cache.invalidate(event.getKey());
         };
     }
 }
@@ -3,11 +3,11 @@ package com.example.microservices.core.order.broker;
 
 import com.example.microservices.core.order.persistence.OrderEntity;
 import com.example.mutual.api.event.Event;
+import com.example.mutual.util.event.EncodedEvent;
+import com.example.mutual.util.event.EventEncoder;
+import com.example.mutual.util.outbox.Outbox;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cloud.stream.function.StreamBridge;
-import org.springframework.messaging.Message;
-import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Component;
 
 import static com.example.mutual.api.event.Event.Type.*;
@@ -16,12 +16,14 @@ import static com.example.mutual.api.event.Event.Type.*;
 @Component
 public class ProducerRevise {
 
-    private final StreamBridge streamBridge;
+    private final Outbox outbox;
+    private final EventEncoder encoder;
     private final String bindingName = "order-revise-out-0";
 
     @Autowired
-    public ProducerRevise(StreamBridge streamBridge) {
-        this.streamBridge = streamBridge;
+    public ProducerRevise(Outbox outbox, EventEncoder encoder) {
+        this.outbox = outbox;
+        this.encoder = encoder;
     }
 
     public void orderCreated(OrderEntity orderEntity) {
@@ -36,15 +38,12 @@ public class ProducerRevise {
         sendMessage(bindingName, new Event<>(DELETE, orderEntity.getOrderId(), orderEntity));
     }
 
+    // joins the transaction of the change, OutboxRelay publishes the event after the commit
     private void sendMessage(String bindingName, Event event) {
-        log.debug("Sending a {} message to {}", event.getEventType(), bindingName);
-        Message message = MessageBuilder.withPayload(event)
-                .setHeader("partitionKey", event.getKey())
-                .build();
-        log.debug("Sent success: {}, Name: {}, Event: {}",
-                streamBridge.send(bindingName, message),
-                bindingName,
-                event.getEventType()
-        );
+        EncodedEvent payload = encoder.encode(bindingName, event);
+        if (log.isDebugEnabled()) {
+            log.debug("Storing a message to {} in the outbox: {}", bindingName, payload);
+        }
+        outbox.add(bindingName, event.getKey(), payload);
     }
 }
@@ -1,15 +1,20 @@
 package com.example.microservices.core.order.persistence;
 
 import com.example.mutual.api.core.order.Order;
+import com.example.mutual.util.persistence.PooledSequenceGenerator;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
 
+import static org.hibernate.id.enhanced.SequenceStyleGenerator.SEQUENCE_PARAM;
+
 @NoArgsConstructor
 @Getter
 @Setter
@@ -17,12 +22,18 @@ import java.time.LocalDateTime;
 @Table(
         name = "orders",
         indexes = {
-                @Index(name = "order_unique_idx", unique = true, columnList = "orderId")
+                @Index(name = "order_unique_idx", unique = true, columnList = "orderId"),
+                @Index(name = "order_status_idx", columnList = "status, orderId")
         }
 )
 public class OrderEntity {
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "order_entity_seq")
+    @GenericGenerator(
+            name = "order_entity_seq",
+            type = PooledSequenceGenerator.class,
+            parameters = @Parameter(name = SEQUENCE_PARAM, value = "order_entity_seq")
+    )
     private int id;
     @Version
     private int version;
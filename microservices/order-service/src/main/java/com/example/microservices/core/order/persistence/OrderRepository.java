@@ -1,11 +1,23 @@
 package com.example.microservices.core.order.persistence;
 
-import org.springframework.data.repository.CrudRepository;
+import com.example.mutual.api.core.order.Order;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
-public interface OrderRepository extends CrudRepository<OrderEntity, Integer> {
+public interface OrderRepository extends JpaRepository<OrderEntity, Integer> {
     @Transactional(readOnly = true)
     Optional<OrderEntity> findByOrderId(int orderId);
+
+    List<OrderEntity> findByOrderIdIn(Collection<Integer> orderIds);
+
+    @Transactional(readOnly = true)
+    List<OrderEntity> findByOrderIdGreaterThanOrderByOrderIdAsc(int orderId, Limit limit);
+
+    @Transactional(readOnly = true)
+    List<OrderEntity> findByStatusAndOrderIdGreaterThanOrderByOrderIdAsc(Order.Status status, int orderId, Limit limit);
 }
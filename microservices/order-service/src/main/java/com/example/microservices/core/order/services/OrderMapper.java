@@ -13,7 +13,8 @@ public interface OrderMapper {
 
     OrderEntity cloneOrderEntity(OrderEntity orderEntity);
     @Mappings({
-            @Mapping(target = "serviceAddress", ignore = true)
+            @Mapping(target = "serviceAddress", ignore = true),
+            @Mapping(source = "id", target = "entityId")
     })
     Order entityToApi(OrderEntity entity);
 
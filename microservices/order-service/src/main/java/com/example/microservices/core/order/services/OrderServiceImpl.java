@@ -9,16 +9,22 @@ import com.example.mutual.api.core.order.Order;
 import com.example.mutual.api.core.order.OrderService;
 import com.example.mutual.api.exceptions.InvalidInputException;
 import com.example.mutual.api.exceptions.NotFoundException;
+import com.example.mutual.util.cache.ReadThroughCache;
+import com.example.mutual.util.http.ConditionalGet;
 import com.example.mutual.util.http.ServiceUtil;
 import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.retry.annotation.Backoff;
 import org.springframework.retry.annotation.Retryable;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Scheduler;
 
@@ -38,6 +44,10 @@ public class OrderServiceImpl implements OrderService {
     private final ProducerRevise producer;
     private final List<RuleOrderUpdate> rulesUpdate;
     private final List<RuleOrderDelete> rulesDelete;
+    private final TransactionTemplate transactionTemplate;
+    private final ReadThroughCache<Integer, Order> cache;
+    private final int bulkChunkSize;
+    private final int scanPageSize;
 
     @Autowired
     public OrderServiceImpl(
@@ -47,7 +57,11 @@ public class OrderServiceImpl implements OrderService {
             @Qualifier("jdbcScheduler") Scheduler jdbcScheduler,
             ProducerRevise producer,
             List<RuleOrderUpdate> rulesUpdate,
-            List<RuleOrderDelete> rulesDelete
+            List<RuleOrderDelete> rulesDelete,
+            TransactionTemplate transactionTemplate,
+            ReadThroughCache<Integer, Order> cache,
+            @Value("${app.bulk.chunk-size:1000}") int bulkChunkSize,
+            @Value("${app.scan.page-size:500}") int scanPageSize
     ) {
         this.repository = repository;
         this.mapper = mapper;
@@ -56,6 +70,10 @@ public class OrderServiceImpl implements OrderService {
         this.producer = producer;
         this.rulesUpdate = rulesUpdate;
         this.rulesDelete = rulesDelete;
+        this.transactionTemplate = transactionTemplate;
+        this.cache = cache;
+        this.bulkChunkSize = bulkChunkSize;
+        this.scanPageSize = scanPageSize;
     }
 
     @Override
@@ -64,10 +82,10 @@ public class OrderServiceImpl implements OrderService {
             throw new InvalidInputException("Invalid orderId: " + orderId);
         }
         log.info("Will get order with id={}", orderId);
-        return Mono.fromCallable(() -> internalGetStore(orderId))
+        return cache.get(orderId, this::internalGetStore, jdbcScheduler)
                 .switchIfEmpty(Mono.error(new NotFoundException("No order found for orderId: " + orderId)))
-                .log(log.getName(), FINE)
-                .subscribeOn(jdbcScheduler);
+                .transform(ConditionalGet.byVersion(Order::getEntityId, Order::getVersion))
+                .log(log.getName(), FINE);
     }
 
     private Order internalGetStore(int orderId) {
@@ -80,6 +98,65 @@ public class OrderServiceImpl implements OrderService {
                 .orElse(null);
     }
 
+    @Override
+    public Flux<Order> getOrders(List<Integer> ids) {
+        List<Integer> orderIds = ids.stream().distinct().toList();
+        for (Integer orderId : orderIds) {
+            if (orderId == null || orderId < 1) {
+                throw new InvalidInputException("Invalid orderId: " + orderId);
+            }
+        }
+        log.info("Will get {} orders in chunks of {}", orderIds.size(), bulkChunkSize);
+        return Flux.range(0, (orderIds.size() + bulkChunkSize - 1) / bulkChunkSize)
+                .map(chunk -> orderIds.subList(chunk * bulkChunkSize, Math.min(orderIds.size(), (chunk + 1) * bulkChunkSize)))
+                .concatMap(chunk -> Mono.fromCallable(() -> internalGetOrders(chunk)).subscribeOn(jdbcScheduler))
+                .flatMapIterable(orders -> orders)
+                .log(log.getName(), FINE);
+    }
+
+    private List<Order> internalGetOrders(List<Integer> orderIds) {
+        String serviceAddress = serviceUtil.getServiceAddress();
+        return repository.findByOrderIdIn(orderIds).stream()
+                .map(orderEntity -> {
+                    Order order = mapper.entityToApi(orderEntity);
+                    order.setServiceAddress(serviceAddress);
+                    return order;
+                })
+                .toList();
+    }
+
+    @Override
+    public Flux<Order> scanOrders(Order.Status status, int afterId) {
+        if (afterId < 0) {
+            throw new InvalidInputException("Invalid afterId: " + afterId);
+        }
+        log.info("Will scan orders status={} after orderId={} in pages of {}", status, afterId, scanPageSize);
+        // the next page is read when the previous one is consumed, prefetch 1 keeps a slow client from piling pages up
+        return Mono.fromCallable(() -> internalScanOrders(status, afterId))
+                .subscribeOn(jdbcScheduler)
+                .expand(page -> page.size() < scanPageSize
+                        ? Mono.empty()
+                        : Mono.fromCallable(() -> internalScanOrders(status, page.get(page.size() - 1).getOrderId()))
+                                .subscribeOn(jdbcScheduler))
+                .flatMapIterable(orders -> orders, 1)
+                .log(log.getName(), FINE);
+    }
+
+    private List<Order> internalScanOrders(Order.Status status, int afterId) {
+        String serviceAddress = serviceUtil.getServiceAddress();
+        Limit limit = Limit.of(scanPageSize);
+        List<OrderEntity> page = status == null
+                ? repository.findByOrderIdGreaterThanOrderByOrderIdAsc(afterId, limit)
+                : repository.findByStatusAndOrderIdGreaterThanOrderByOrderIdAsc(status, afterId, limit);
+        return page.stream()
+                .map(orderEntity -> {
+                    Order order = mapper.entityToApi(orderEntity);
+                    order.setServiceAddress(serviceAddress);
+                    return order;
+                })
+                .toList();
+    }
+
     @Transactional
     @Override
     public Mono<Order> createOrder(Order body) {
@@ -92,9 +169,12 @@ public class OrderServiceImpl implements OrderService {
 
     private Order internalCreateOrder(Order body) {
         try {
-            OrderEntity entity = mapper.apiToEntity(body);
-            OrderEntity newEntity = repository.save(entity);
-            producer.orderCreated(newEntity);
+            // the flush brings the ids and the timestamps into the event and a duplicate key up to here
+            OrderEntity newEntity = transactionTemplate.execute(status -> {
+                OrderEntity entity = repository.saveAndFlush(mapper.apiToEntity(body));
+                producer.orderCreated(entity);
+                return entity;
+            });
             log.debug("createOrder: created a order entity: {}", body.getOrderId());
             return mapper.entityToApi(newEntity);
         } catch (DataIntegrityViolationException dive) {
@@ -113,8 +193,9 @@ public class OrderServiceImpl implements OrderService {
         if (body.getOrderId() < 1) {
             throw new InvalidInputException("Invalid orderId: " + body.getOrderId());
         }
-        return Mono.fromCallable(()-> internalUpdateOrder(body))
-                .subscribeOn(jdbcScheduler);
+        return Mono.fromCallable(()-> transactionTemplate.execute(status -> internalUpdateOrder(body)))
+                .subscribeOn(jdbcScheduler)
+                .doFinally(signal -> cache.invalidate(body.getOrderId()));
     }
     private Order internalUpdateOrder(Order body) {
         Optional<OrderEntity> entityOpt = repository.findByOrderId(body.getOrderId());
@@ -145,7 +226,10 @@ public class OrderServiceImpl implements OrderService {
     )
     @Override
     public Mono<Void> deleteOrder(int orderId) {
-        return Mono.fromRunnable(()->internalDeleteOrder(orderId)).subscribeOn(jdbcScheduler).then();
+        return Mono.fromRunnable(() -> transactionTemplate.executeWithoutResult(status -> internalDeleteOrder(orderId)))
+                .subscribeOn(jdbcScheduler)
+                .doFinally(signal -> cache.invalidate(orderId))
+                .then();
     }
 
     private void internalDeleteOrder(int orderId) {
@@ -7,7 +7,8 @@ import com.example.microservices.core.order.util.ContainersTestBase;
 import com.example.microservices.core.order.util.ReaderProducedMessages;
 import com.example.mutual.api.core.order.Order;
 import com.example.mutual.api.event.Event;
-import com.example.mutual.api.exceptions.InvalidInputException;
+import com.example.mutual.util.cache.ReadThroughCache;
+import com.example.mutual.util.outbox.OutboxRelay;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -18,14 +19,20 @@ import org.springframework.cloud.stream.binder.test.OutputDestination;
 import org.springframework.cloud.stream.binder.test.TestChannelBinderConfiguration;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpStatus;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.time.Duration;
 import java.util.Optional;
-import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static com.example.mutual.api.event.Event.Type.*;
 import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.matchesPattern;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
@@ -36,7 +43,7 @@ import static org.testcontainers.shaded.org.awaitility.Awaitility.await;
 @Slf4j
 @SpringBootTest(
         webEnvironment = RANDOM_PORT,
-        properties = {"spring.main.allow-bean-definition-overriding=true"})
+        properties = {"spring.main.allow-bean-definition-overriding=true", "app.scan.page-size=2"})
 @Import({TestChannelBinderConfiguration.class})
 class OrderServiceTest extends ContainersTestBase {
 
@@ -46,26 +53,36 @@ class OrderServiceTest extends ContainersTestBase {
     @Autowired
     private OrderRepository repository;
     private final ReaderProducedMessages readerOrderRevise;
+    private final ReaderProducedMessages readerDeadLetter;
+    private final OutputDestination target;
     private final OrderMapper mapper;
 
 
     @Autowired
     public OrderServiceTest(
             OutputDestination target,
+            OutboxRelay outboxRelay,
             OrderMapper mapper
     ) {
-        this.readerOrderRevise = new ReaderProducedMessages(target, "order-revise");
+        this.readerOrderRevise = new ReaderProducedMessages(target, "order-revise", outboxRelay::relay);
+        this.readerDeadLetter = new ReaderProducedMessages(target, "error.order-crud.orderCrudGroup");
+        this.target = target;
         this.mapper = mapper;
     }
 
     @Autowired
     @Qualifier("consumerCrud")
-    private Consumer<Event<Integer, Order>> consumerCrud;
+    private Function<Flux<Message<Event<Integer, Order>>>, Mono<Void>> consumerCrud;
+
+    @Autowired
+    private ReadThroughCache<Integer, Order> orderCache;
 
     @BeforeEach
     void setupDb() {
         repository.deleteAll();
+        orderCache.invalidateAll();
         readerOrderRevise.purgeMessages();
+        readerDeadLetter.purgeMessages();
     }
 
     @Test
@@ -83,6 +100,61 @@ class OrderServiceTest extends ContainersTestBase {
                 .jsonPath("$.orderId").isEqualTo(orderId);
     }
 
+    @Test
+    void getOrdersByIds() {
+        sendCreateOrderEvent(1);
+        sendCreateOrderEvent(2);
+        sendCreateOrderEvent(3);
+
+        // id 4 отсутствует и пропускается, повторный id 1 читается один раз
+        client.get()
+                .uri("/orders?ids=1,3,4,1")
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[*].orderId").value(containsInAnyOrder(1, 3));
+
+        client.get()
+                .uri("/orders?ids=1,-1")
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(UNPROCESSABLE_ENTITY);
+    }
+
+    @Test
+    void scanOrders() {
+        for (int orderId = 1; orderId <= 5; orderId++) {
+            sendCreateOrderEvent(orderId);
+        }
+
+        // страницы по две записи, скан продолжается после orderId 1
+        client.get()
+                .uri("/orders/scan?afterId=1")
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[*].orderId").value(contains(2, 3, 4, 5));
+
+        client.get()
+                .uri("/orders/scan?status=NEW")
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(5);
+
+        client.get()
+                .uri("/orders/scan?status=TRANSIT")
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(0);
+    }
+
     @Test
     void getOrderNotFound() {
         int orderIdNotFound = 13;
@@ -113,12 +185,8 @@ class OrderServiceTest extends ContainersTestBase {
         sendCreateOrderEvent(orderId);
         assertTrue(repository.findByOrderId(orderId).isPresent());
 
-        InvalidInputException thrown = assertThrows(
-                InvalidInputException.class,
-                () -> sendCreateOrderEvent(orderId),
-                "Expected an InvalidInputException here!"
-        );
-        assertEquals("Duplicate key, Order Id: " + orderId, thrown.getMessage());
+        sendCreateOrderEvent(orderId);
+        assertDeadLetter("Duplicate key, Order Id: " + orderId);
     }
 
     @Test
@@ -156,12 +224,8 @@ class OrderServiceTest extends ContainersTestBase {
         OrderEntity entity = repository.findByOrderId(orderId).get();
         entity.setFromStoreId(501);                                         // ids change is forbidden
 
-        InvalidInputException thrown = assertThrows(
-                InvalidInputException.class,
-                () -> sendUpdateOrderEvent(mapper.entityToApi(entity)),     // 2. UPDATE Event is escaped
-                "Expected an InvalidInputException here!"
-        );
-        assertEquals("There is a broken Update Rule, Order Id: " + orderId, thrown.getMessage());
+        sendUpdateOrderEvent(mapper.entityToApi(entity));               // 2. UPDATE Event is escaped
+        assertDeadLetter("There is a broken Update Rule, Order Id: " + orderId);
 
         assertEquals(1, readerOrderRevise.getMessages().size());
     }
@@ -192,12 +256,9 @@ class OrderServiceTest extends ContainersTestBase {
         await().pollInterval(Duration.ofSeconds(3)).atMost(10, SECONDS).untilAsserted(() -> {
             assertTrue(repository.findByOrderId(orderId).isPresent());
         });
-        InvalidInputException thrown = assertThrows(                // deleting while in TRANSIT is forbidden
-                InvalidInputException.class,
-                () -> sendDeleteOrderEvent(orderId),                // 2. Delete Event is escaped
-                "Expected an InvalidInputException here!"
-        );
-        assertEquals("There is a broken Delete Rule, order Id: " + orderId, thrown.getMessage());
+        // deleting while in TRANSIT is forbidden
+        sendDeleteOrderEvent(orderId);                              // 2. Delete Event is escaped
+        assertDeadLetter("There is a broken Delete Rule, order Id: " + orderId);
 
         assertEquals(1, readerOrderRevise.getMessages().size());
     }
@@ -219,21 +280,28 @@ class OrderServiceTest extends ContainersTestBase {
     private void sendCreateOrderEvent(int orderId) {
         Order order = new Order(orderId, 1, 1, 2, Order.Status.NEW, "SA");
         Event<Integer, Order> event = new Event<>(CREATE, orderId, order);
-        consumerCrud.accept(event);
+        consumerCrud.apply(Flux.just(MessageBuilder.withPayload(event).build())).block();
     }
     private void sendCreateOrderEventForBad(int orderId) {
         Order order = new Order(orderId, 1, 1, 2, Order.Status.TRANSIT, "SA");
         Event<Integer, Order> event = new Event<>(CREATE, orderId, order);
-        consumerCrud.accept(event);
+        consumerCrud.apply(Flux.just(MessageBuilder.withPayload(event).build())).block();
     }
 
     private void sendUpdateOrderEvent(Order order) {
         Event<Integer, Order> event = new Event<>(UPDATE, order.getOrderId(), order);
-        consumerCrud.accept(event);
+        consumerCrud.apply(Flux.just(MessageBuilder.withPayload(event).build())).block();
     }
 
     private void sendDeleteOrderEvent(int orderId) {
         Event<Integer, Order> event = new Event<>(DELETE, orderId, null);
-        consumerCrud.accept(event);
+        consumerCrud.apply(Flux.just(MessageBuilder.withPayload(event).build())).block();
+    }
+
+    // ошибочное событие не роняет поток событий, а уходит в DLQ с текстом ошибки в заголовке
+    private void assertDeadLetter(String expectedMessage) {
+        Message<byte[]> message = target.receive(0, "error.order-crud.orderCrudGroup");
+        assertNotNull(message, "Expected a dead letter here!");
+        assertEquals(expectedMessage, message.getHeaders().get("x-exception-message"));
     }
 }
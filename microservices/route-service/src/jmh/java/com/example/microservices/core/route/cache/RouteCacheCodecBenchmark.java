@@ -0,0 +1,97 @@
+package com.example.microservices.core.route.cache;
+
+import com.example.microservices.core.route.persistence.RouteEntity;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Route cache values encoded by the binary codec, JDK serialization and JSON.
+ * Encoded sizes, i.e. the Redis memory per value, are printed once per trial.
+ * Run: ./gradlew :microservices:route-service:jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RouteCacheCodecBenchmark {
+    private static final TypeReference<List<RouteEntity>> ROUTE_LIST = new TypeReference<>() {
+    };
+
+    @Param({"1", "20"})
+    private int routes;
+
+    private final RouteEntityCodec binary = new RouteEntityCodec();
+    private final RedisSerializer<Object> jdk = RedisSerializer.java();
+    private final ObjectMapper json = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private List<RouteEntity> value;
+    private byte[] binaryBytes;
+    private byte[] jdkBytes;
+    private byte[] jsonBytes;
+
+    @Setup
+    public void setup() throws Exception {
+        value = new ArrayList<>(routes);
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < routes; i++) {
+            RouteEntity entity = new RouteEntity(i + 1, 10, 15);
+            entity.setId(1000 + i);
+            entity.setVersion(i % 3);
+            entity.setPathFromTo("route " + (i + 1) + " via the ring road");
+            entity.setDistanceFromTo(150 + i * 10);
+            entity.setMinutesFromTo(20 + i);
+            entity.setCreatedOn(now.minusDays(i));
+            entity.setUpdatedOn(now);
+            value.add(entity);
+        }
+        binaryBytes = binary.serialize(value);
+        jdkBytes = jdk.serialize(value);
+        jsonBytes = json.writeValueAsBytes(value);
+        System.out.printf("%n%d routes, bytes: binary=%d jdk=%d json=%d%n",
+                routes, binaryBytes.length, jdkBytes.length, jsonBytes.length);
+    }
+
+    @Benchmark
+    public byte[] binarySerialize() {
+        return binary.serialize(value);
+    }
+
+    @Benchmark
+    public Object binaryDeserialize() {
+        return binary.deserialize(binaryBytes);
+    }
+
+    @Benchmark
+    public byte[] jdkSerialize() {
+        return jdk.serialize(value);
+    }
+
+    @Benchmark
+    public Object jdkDeserialize() {
+        return jdk.deserialize(jdkBytes);
+    }
+
+    @Benchmark
+    public byte[] jsonSerialize() throws Exception {
+        return json.writeValueAsBytes(value);
+    }
+
+    @Benchmark
+    public Object jsonDeserialize() throws Exception {
+        return json.readValue(jsonBytes, ROUTE_LIST);
+    }
+}
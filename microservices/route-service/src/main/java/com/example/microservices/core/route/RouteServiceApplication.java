@@ -1,41 +1,31 @@
 package com.example.microservices.core.route;
 
+import com.example.mutual.util.persistence.JdbcSchedulers;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import reactor.core.scheduler.Scheduler;
-import reactor.core.scheduler.Schedulers;
 
 @Slf4j
 @SpringBootApplication
 @ComponentScan("com.example")
 @EnableCaching
+@EnableScheduling
 public class RouteServiceApplication {
-    private final Integer threadPoolSize;
-    private final Integer taskQueueSize;
-
-    public RouteServiceApplication(
-            @Value("${app.threadPoolSize:10}") Integer threadPoolSize,
-            @Value("${app.taskQueueSize:100}") Integer taskQueueSize
-    ) {
-        this.threadPoolSize = threadPoolSize;
-        this.taskQueueSize = taskQueueSize;
-    }
-
     public static void main(String[] args) {
         ConfigurableApplicationContext ctx = SpringApplication.run(RouteServiceApplication.class, args);
         String postgresqlUri = ctx.getEnvironment().getProperty("spring.datasource.url");
         log.info("Connected to PostgreSQL: {}", postgresqlUri);
     }
 
+    // app.jdbc.scheduler-mode picks the threads of the blocking JDBC calls, see JdbcSchedulers
     @Bean
-    public Scheduler jdbcScheduler() {
-        log.info("Creates a jdbcScheduler with thread pool size = {}", threadPoolSize);
-        return Schedulers.newBoundedElastic(threadPoolSize, taskQueueSize, "jdbc-pool");
+    public Scheduler jdbcScheduler(JdbcSchedulers schedulers) {
+        return schedulers.create();
     }
 }
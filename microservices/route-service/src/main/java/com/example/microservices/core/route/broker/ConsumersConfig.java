@@ -1,5 +1,8 @@
 package com.example.microservices.core.route.broker;
 
+import com.example.microservices.core.route.graph.RouteNetwork;
+import com.example.microservices.core.route.persistence.RouteEntity;
+import com.example.microservices.core.route.services.RouteServiceCacheable;
 import com.example.mutual.api.core.route.Route;
 import com.example.mutual.api.core.route.RouteService;
 import com.example.mutual.api.core.route.RouteTaskService;
@@ -7,81 +10,187 @@ import com.example.mutual.api.core.route.RouteTaskPayload;
 import com.example.mutual.api.event.Event;
 import com.example.mutual.api.event.EventTask;
 import com.example.mutual.api.exceptions.EventProcessingException;
+import com.example.mutual.util.event.KeyOrderedExecutor;
+import com.example.mutual.util.event.RecordPosition;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.stream.function.StreamBridge;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Slf4j
 @Configuration
 public class ConsumersConfig {
 
+    private static final String DEAD_LETTER_BINDING = "consumerCrudDlq-out-0";
+
     private final RouteService routeService;
     private final RouteTaskService routeTaskService;
+    private final RouteNetwork routeNetwork;
+    private final RouteServiceCacheable serviceRepoCacheable;
+    private final StreamBridge streamBridge;
+    private final KeyOrderedExecutor executor;
 
     @Autowired
-    public ConsumersConfig(RouteService routeService, RouteTaskService routeTaskService) {
+    public ConsumersConfig(
+            RouteService routeService, RouteTaskService routeTaskService,
+            RouteNetwork routeNetwork, RouteServiceCacheable serviceRepoCacheable,
+            StreamBridge streamBridge,
+            @Value("${app.consumer.concurrency:4}") int concurrency,
+            @Value("${app.consumer.max-in-flight:256}") int maxInFlight
+    ) {
         this.routeService = routeService;
         this.routeTaskService = routeTaskService;
+        this.routeNetwork = routeNetwork;
+        this.serviceRepoCacheable = serviceRepoCacheable;
+        this.streamBridge = streamBridge;
+        this.executor = new KeyOrderedExecutor(concurrency, maxInFlight);
     }
 
+    /**
+     * Events of one route id share a lane and are applied one after another, lanes run concurrently.
+     * A failed event goes to the dead letter topic, the stream itself keeps going. Offsets are
+     * acknowledged only up to the oldest event still in progress, so a restart never skips one.
+     */
     @Bean
-    public Consumer<Event<Integer, Route>> consumerCrud() {
-        return event -> {
-            log.info("Process message created at {}...", event.getEventCreatedAt());
-            Route route;
+    public Function<Flux<Message<Event<Integer, Route>>>, Mono<Void>> consumerCrud() {
+        return messages -> executor.execute(
+                messages,
+                message -> message.getPayload().getKey(),
+                ConsumersConfig::position,
+                message -> processCrud(message.getPayload())
+        );
+    }
 
-            switch (event.getEventType()) {
+    // the acknowledgment header is present with ackMode MANUAL only
+    private static RecordPosition position(Message<?> message) {
+        MessageHeaders headers = message.getHeaders();
+        Acknowledgment acknowledgment = headers.get(KafkaHeaders.ACKNOWLEDGMENT, Acknowledgment.class);
+        if (acknowledgment == null) {
+            return null;
+        }
+        return new RecordPosition(
+                headers.get(KafkaHeaders.RECEIVED_PARTITION, Integer.class),
+                headers.get(KafkaHeaders.OFFSET, Long.class),
+                acknowledgment::acknowledge
+        );
+    }
 
-                case CREATE:
-                    route = event.getData();
-                    log.info("Create route with ID: {}", route.getRouteId());
-                    routeService.createRoute(route).block();
-                    break;
+    private Mono<Void> processCrud(Event<Integer, Route> event) {
+        return Mono.defer(() -> applyCrud(event))
+                .doOnSuccess(result -> log.info("Message processing done!"))
+                .onErrorResume(error -> deadLetter(event, error))
+                .then();
+    }
 
-                case UPDATE:
-                    route = event.getData();
-                    log.info("Update route with routeID: {}", route.getRouteId());
-                    routeService.updateRoute(route).block();
-                    break;
+    private Mono<?> applyCrud(Event<Integer, Route> event) {
+        log.info("Process message {} created at {}...", event.getEventId(), event.getEventCreatedAt());
+        Route route;
 
-                case DELETE:
-                    log.info("Delete route with routeID: {}", event.getKey());
-                    routeService.deleteRoute(event.getKey()).block();
-                    break;
+        switch (event.getEventType()) {
 
-                default:
-                    String errorMessage = "Incorrect event type: " + event.getEventType() + ", expected a CREATE or DELETE event";
-                    log.warn(errorMessage);
-                    throw new EventProcessingException(errorMessage);
+            case CREATE:
+                route = event.getData();
+                log.info("Create route with ID: {}", route.getRouteId());
+                return routeService.createRoute(route);
+
+            case UPDATE:
+                route = event.getData();
+                log.info("Update route with routeID: {}", route.getRouteId());
+                return routeService.updateRoute(route);
+
+            case DELETE:
+                log.info("Delete route with routeID: {}", event.getKey());
+                return routeService.deleteRoute(event.getKey());
+
+            default:
+                String errorMessage = "Incorrect event type: " + event.getEventType() + ", expected a CREATE or DELETE event";
+                log.warn(errorMessage);
+                throw new EventProcessingException(errorMessage);
+        }
+    }
+
+    private Mono<Void> deadLetter(Event<Integer, Route> event, Throwable error) {
+        log.error("Failed to process {} for routeID: {}, sent to the dead letter topic: {}",
+                event.getEventType(), event.getKey(), error.getMessage());
+        streamBridge.send(DEAD_LETTER_BINDING, MessageBuilder.withPayload(event)
+                .setHeader("x-exception-message", String.valueOf(error.getMessage()))
+                .build());
+        return Mono.empty();
+    }
+
+    @Bean
+    public Consumer<List<EventTask<Integer, RouteTaskPayload>>> consumerTask() {
+        return events -> {
+            log.info("Process a batch of {} task messages...", events.size());
+            List<RouteTaskPayload> payloads = new ArrayList<>(events.size());
+
+            for (EventTask<Integer, RouteTaskPayload> event : events) {
+                switch (event.getEventType()) {
+
+                    case FIND_ROUTE:
+                        log.debug("Find route for order ID: {}", event.getData().getOrderId());
+                        payloads.add(event.getData());
+                        break;
+
+                    default:
+                        // one bad event must not send the whole batch back for redelivery
+                        log.warn("Incorrect event type: {}, expected a FIND_ROUTE event, skipped", event.getEventType());
+                }
             }
 
+            if (!payloads.isEmpty()) {
+                routeTaskService.findRoutes(payloads).then().block();
+            }
             log.info("Message processing done!");
         };
     }
+
     @Bean
-    public Consumer<EventTask<Integer, RouteTaskPayload>> consumerTask() {
+    public Consumer<Event<Integer, RouteEntity>> consumerRevise() {
         return event -> {
-            log.info("Process message created at {}...", event.getEventCreatedAt());
-            RouteTaskPayload routeTaskPayload;
+            log.debug("Apply route revise {} for routeID: {}", event.getEventType(), event.getKey());
 
             switch (event.getEventType()) {
 
-                case FIND_ROUTE:
-                    routeTaskPayload = event.getData();
-                    log.info("Find route fore order ID: {}", routeTaskPayload.getOrderId());
-                    routeTaskService.findRoute(routeTaskPayload).block();
+                case CREATE:
+                    serviceRepoCacheable.evictLocal(event.getData());
+                    routeNetwork.putRoute(event.getData());
+                    break;
+
+                case UPDATE:
+                    // UPDATE carries the state before the change, the current one is read by routeId
+                    serviceRepoCacheable.evictLocal(event.getData());
+                    serviceRepoCacheable.findByRouteId(event.getKey()).ifPresentOrElse(
+                            route -> {
+                                serviceRepoCacheable.evictLocal(route);
+                                routeNetwork.putRoute(route);
+                            },
+                            () -> routeNetwork.removeRoute(event.getKey())
+                    );
+                    break;
+
+                case DELETE:
+                    serviceRepoCacheable.evictLocal(event.getData());
+                    routeNetwork.removeRoute(event.getKey());
                     break;
 
                 default:
-                    String errorMessage = "Incorrect event type: " + event.getEventType() + ", expected a CREATE or DELETE event";
-                    log.warn(errorMessage);
-                    throw new EventProcessingException(errorMessage);
+                    log.warn("Incorrect revise event type: {}", event.getEventType());
             }
-
-            log.info("Message processing done!");
         };
     }
 }
@@ -3,34 +3,55 @@ package com.example.microservices.core.route.broker;
 
 import com.example.mutual.api.core.route.RouteTaskPayload;
 import com.example.mutual.api.event.EventTask;
+import com.example.mutual.util.event.EncodedEvent;
+import com.example.mutual.util.event.EventEncoder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cloud.stream.function.StreamBridge;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.Message;
-import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.List;
 
 @Slf4j
 @Configuration
 public class ProducerTask {
 
     private final StreamBridge streamBridge;
+    private final EventEncoder encoder;
     private final String bindingName = "routeFind-out-0";
 
     @Autowired
-    public ProducerTask(StreamBridge streamBridge) {
+    public ProducerTask(StreamBridge streamBridge, EventEncoder encoder) {
         this.streamBridge = streamBridge;
+        this.encoder = encoder;
     }
 
     public void routeFound(RouteTaskPayload payload) {
         sendMessage(bindingName, new EventTask<>(EventTask.Type.ROUTE_FOUND, payload.getOrderId(), payload));
     }
 
+    public void routeNotFound(RouteTaskPayload payload) {
+        sendMessage(bindingName, new EventTask<>(EventTask.Type.ROUTE_NOT_FOUND, payload.getOrderId(), payload));
+    }
+
+    // the sends are not awaited one by one, the Kafka producer batches them by linger.ms/batch.size
+    public void routesFound(List<RouteTaskPayload> payloads) {
+        log.debug("Sending a batch of {} found routes to {}", payloads.size(), bindingName);
+        payloads.forEach(this::routeFound);
+    }
+
+    public void routesNotFound(List<RouteTaskPayload> payloads) {
+        log.debug("Sending a batch of {} tasks without a route to {}", payloads.size(), bindingName);
+        payloads.forEach(this::routeNotFound);
+    }
+
     private void sendMessage(String bindingName, EventTask<Integer, RouteTaskPayload> event) {
-        log.debug("Sending a {} message to {}", event.getEventType(), bindingName);
-        Message<EventTask<Integer, RouteTaskPayload>> message = MessageBuilder.withPayload(event)
-                .setHeader("partitionKey", event.getKey())
-                .build();
+        EncodedEvent payload = encoder.encode(bindingName, event);
+        if (log.isDebugEnabled()) {
+            log.debug("Sending a message to {}: {}", bindingName, payload);
+        }
+        Message<byte[]> message = payload.message(event.getKey()).build();
         log.debug("Sent success: {}, Name: {}, Event: {}",
                 streamBridge.send(bindingName, message),
                 bindingName,
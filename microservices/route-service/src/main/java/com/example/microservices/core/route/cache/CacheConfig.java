@@ -0,0 +1,45 @@
+package com.example.microservices.core.route.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.serializer.RedisSerializationContext.SerializationPair;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.time.Duration;
+
+@Slf4j
+@Configuration
+public class CacheConfig {
+
+    @Bean
+    public TwoLevelCacheManager cacheManager(
+            RedisConnectionFactory connectionFactory,
+            MeterRegistry registry,
+            @Value("${app.cache.local.maximum-size:10000}") long maximumSize,
+            @Value("${app.cache.local.time-to-live:60s}") Duration timeToLive,
+            @Value("${app.cache.codec:binary}") String codec
+    ) {
+        log.info("Creates a two level cache, local maximum size = {}, time to live = {}, codec = {}",
+                maximumSize, timeToLive, codec);
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(connectionFactory)
+                .cacheDefaults(RedisCacheConfiguration.defaultCacheConfig(getClass().getClassLoader())
+                        .serializeValuesWith(SerializationPair.fromSerializer(valueSerializer(codec))))
+                .build();
+        redisCacheManager.afterPropertiesSet();
+        return new TwoLevelCacheManager(redisCacheManager, maximumSize, timeToLive, registry);
+    }
+
+    private RedisSerializer<Object> valueSerializer(String codec) {
+        return switch (codec) {
+            case "binary" -> new RouteEntityCodec();
+            case "jdk" -> RedisSerializer.java(getClass().getClassLoader());
+            default -> throw new IllegalArgumentException("Unknown cache codec: " + codec);
+        };
+    }
+}
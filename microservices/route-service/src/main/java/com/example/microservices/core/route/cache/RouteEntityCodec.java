@@ -0,0 +1,185 @@
+package com.example.microservices.core.route.cache;
+
+import com.example.microservices.core.route.persistence.RouteEntity;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary value codec of the route caches: {@code RouteEntity} and {@code List<RouteEntity>}.
+ * Layout: format version, value kind, entity count, then one column per field with zigzag varints,
+ * so the small, similar numbers of a from/to list stay one or two bytes each. A value written by an
+ * unknown format version is read as a cache miss and reloaded, which keeps rolling upgrades safe.
+ */
+public class RouteEntityCodec implements RedisSerializer<Object> {
+    static final byte FORMAT_VERSION = 1;
+    private static final byte ENTITY = 1;
+    private static final byte LIST = 2;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public byte[] serialize(Object value) throws SerializationException {
+        List<?> entities;
+        byte kind;
+        if (value instanceof RouteEntity) {
+            entities = List.of(value);
+            kind = ENTITY;
+        } else if (value instanceof List<?> list) {
+            entities = list;
+            kind = LIST;
+        } else {
+            throw new SerializationException("Unsupported route cache value: " + value);
+        }
+        Writer out = new Writer(16 + entities.size() * 48);
+        out.bytes.write(FORMAT_VERSION);
+        out.bytes.write(kind);
+        out.varint(entities.size());
+        for (Object entity : entities) {
+            if (!(entity instanceof RouteEntity)) {
+                throw new SerializationException("Unsupported route cache list element: " + entity);
+            }
+        }
+        List<RouteEntity> routes = (List<RouteEntity>) entities;
+        routes.forEach(route -> out.varint(route.getId()));
+        routes.forEach(route -> out.varint(route.getVersion()));
+        routes.forEach(route -> out.varint(route.getRouteId()));
+        routes.forEach(route -> out.varint(route.getFromStoreId()));
+        routes.forEach(route -> out.varint(route.getToStoreId()));
+        routes.forEach(route -> out.varint(route.getDistanceFromTo()));
+        routes.forEach(route -> out.varint(route.getMinutesFromTo()));
+        routes.forEach(route -> out.time(route.getCreatedOn()));
+        routes.forEach(route -> out.time(route.getUpdatedOn()));
+        routes.forEach(route -> out.string(route.getPathFromTo()));
+        return out.bytes.toByteArray();
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0 || bytes[0] != FORMAT_VERSION) {
+            return null;
+        }
+        try {
+            Reader in = new Reader(bytes, 1);
+            byte kind = bytes[in.position++];
+            int count = in.varint();
+            if (count < 0 || count > bytes.length) {
+                throw new SerializationException("Corrupted route cache value, count: " + count);
+            }
+            List<RouteEntity> routes = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                routes.add(new RouteEntity());
+            }
+            routes.forEach(route -> route.setId(in.varint()));
+            routes.forEach(route -> route.setVersion(in.varint()));
+            routes.forEach(route -> route.setRouteId(in.varint()));
+            routes.forEach(route -> route.setFromStoreId(in.varint()));
+            routes.forEach(route -> route.setToStoreId(in.varint()));
+            routes.forEach(route -> route.setDistanceFromTo(in.varint()));
+            routes.forEach(route -> route.setMinutesFromTo(in.varint()));
+            routes.forEach(route -> route.setCreatedOn(in.time()));
+            routes.forEach(route -> route.setUpdatedOn(in.time()));
+            routes.forEach(route -> route.setPathFromTo(in.string()));
+            if (kind == ENTITY && count == 1) {
+                return routes.get(0);
+            }
+            if (kind == LIST) {
+                return routes;
+            }
+            throw new SerializationException("Unknown route cache value kind: " + kind);
+        } catch (IndexOutOfBoundsException e) {
+            throw new SerializationException("Truncated route cache value", e);
+        }
+    }
+
+    private static final class Writer {
+        private final ByteArrayOutputStream bytes;
+
+        Writer(int size) {
+            bytes = new ByteArrayOutputStream(size);
+        }
+
+        void varint(int value) {
+            varlong(value);
+        }
+
+        void varlong(long value) {
+            long zigzag = (value << 1) ^ (value >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                bytes.write((int) ((zigzag & 0x7F) | 0x80));
+                zigzag >>>= 7;
+            }
+            bytes.write((int) zigzag);
+        }
+
+        // nano + 1, zero is null
+        void time(LocalDateTime time) {
+            if (time == null) {
+                varlong(0);
+                return;
+            }
+            varlong(time.getNano() + 1L);
+            varlong(time.toEpochSecond(ZoneOffset.UTC));
+        }
+
+        // length + 1, zero is null
+        void string(String value) {
+            if (value == null) {
+                varint(0);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            varint(utf8.length + 1);
+            bytes.write(utf8, 0, utf8.length);
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] bytes;
+        private int position;
+
+        Reader(byte[] bytes, int position) {
+            this.bytes = bytes;
+            this.position = position;
+        }
+
+        int varint() {
+            return (int) varlong();
+        }
+
+        long varlong() {
+            long zigzag = 0;
+            int shift = 0;
+            byte next;
+            do {
+                next = bytes[position++];
+                zigzag |= (long) (next & 0x7F) << shift;
+                shift += 7;
+            } while (next < 0);
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+
+        LocalDateTime time() {
+            long nano = varlong();
+            if (nano == 0) {
+                return null;
+            }
+            return LocalDateTime.ofEpochSecond(varlong(), (int) (nano - 1), ZoneOffset.UTC);
+        }
+
+        String string() {
+            int length = varint() - 1;
+            if (length < 0) {
+                return null;
+            }
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
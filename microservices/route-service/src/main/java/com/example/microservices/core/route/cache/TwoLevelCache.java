@@ -0,0 +1,146 @@
+package com.example.microservices.core.route.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+/**
+ * Near cache: a bounded in-process Caffeine level (L1) in front of the shared Redis level (L2).
+ * Writes go through both levels; L1 of the other instances is dropped by {@link #evictLocal(Object)}
+ * when they receive the route-revise event, the write TTL bounds staleness if an event is lost.
+ * L1 hands out the cached instance itself, callers must not modify it.
+ */
+public class TwoLevelCache implements Cache {
+    private final String name;
+    private final com.github.benmanes.caffeine.cache.Cache<Object, ValueWrapper> local;
+    private final Cache remote;
+    private final Counter localHits;
+    private final Counter localMisses;
+    private final Counter localEvictions;
+    private final Counter remoteHits;
+    private final Counter remoteMisses;
+    private final Counter remoteEvictions;
+
+    TwoLevelCache(String name, Cache remote, long maximumSize, Duration timeToLive, MeterRegistry registry) {
+        this.name = name;
+        this.remote = remote;
+        this.localHits = counter(registry, "route.cache.gets", "l1", "hit");
+        this.localMisses = counter(registry, "route.cache.gets", "l1", "miss");
+        this.localEvictions = counter(registry, "route.cache.evictions", "l1", null);
+        this.remoteHits = counter(registry, "route.cache.gets", "l2", "hit");
+        this.remoteMisses = counter(registry, "route.cache.gets", "l2", "miss");
+        this.remoteEvictions = counter(registry, "route.cache.evictions", "l2", null);
+        this.local = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive)
+                .<Object, ValueWrapper>removalListener((key, value, cause) -> {
+                    if (cause.wasEvicted()) {
+                        localEvictions.increment();
+                    }
+                })
+                .build();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return local;
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        ValueWrapper value = local.getIfPresent(key);
+        if (value != null) {
+            localHits.increment();
+            return value;
+        }
+        localMisses.increment();
+        value = remote.get(key);
+        if (value == null) {
+            remoteMisses.increment();
+            return null;
+        }
+        remoteHits.increment();
+        local.put(key, value);
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper == null ? null : wrapper.get();
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException(
+                    "Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+        T value = remote.get(key, valueLoader);
+        local.put(key, new SimpleValueWrapper(value));
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        remote.put(key, value);
+        local.put(key, new SimpleValueWrapper(value));
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = remote.putIfAbsent(key, value);
+        local.put(key, existing != null ? existing : new SimpleValueWrapper(value));
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        remote.evict(key);
+        remoteEvictions.increment();
+        local.invalidate(key);
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        remoteEvictions.increment();
+        local.invalidateAll();
+    }
+
+    /**
+     * Drops the key from L1 only, L2 was already updated by the instance that made the change.
+     */
+    public void evictLocal(Object key) {
+        if (local.asMap().remove(key) != null) {
+            localEvictions.increment();
+        }
+    }
+
+    private Counter counter(MeterRegistry registry, String meter, String level, String result) {
+        Counter.Builder builder = Counter.builder(meter)
+                .tag("cache", name)
+                .tag("level", level);
+        if (result != null) {
+            builder.tag("result", result);
+        }
+        return builder.register(registry);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.microservices.core.route.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class TwoLevelCacheManager implements CacheManager {
+    private final CacheManager remoteCacheManager;
+    private final long maximumSize;
+    private final Duration timeToLive;
+    private final MeterRegistry registry;
+    private final Map<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+
+    public TwoLevelCacheManager(
+            CacheManager remoteCacheManager, long maximumSize, Duration timeToLive, MeterRegistry registry
+    ) {
+        this.remoteCacheManager = remoteCacheManager;
+        this.maximumSize = maximumSize;
+        this.timeToLive = timeToLive;
+        this.registry = registry;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, cacheName -> {
+            Cache remote = remoteCacheManager.getCache(cacheName);
+            return remote == null ? null : new TwoLevelCache(cacheName, remote, maximumSize, timeToLive, registry);
+        });
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return remoteCacheManager.getCacheNames();
+    }
+
+    public void evictLocal(String name, Object key) {
+        TwoLevelCache cache = caches.get(name);
+        if (cache != null) {
+            cache.evictLocal(key);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.microservices.core.route.graph;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+public class HotPairRefresher {
+    private final RouteNetwork routeNetwork;
+    private final int topPairs;
+    private final Timer refreshTimer;
+
+    public HotPairRefresher(
+            RouteNetwork routeNetwork,
+            MeterRegistry registry,
+            @Value("${app.route-graph.hot-pairs.top:500}") int topPairs
+    ) {
+        this.routeNetwork = routeNetwork;
+        this.topPairs = topPairs;
+        this.refreshTimer = Timer.builder("route.graph.hot-pairs.refresh")
+                .description("Time to recompute the hot store pairs table")
+                .register(registry);
+        Gauge.builder("route.graph.hot-pairs.memory", routeNetwork, RouteNetwork::hotPairBytes)
+                .description("Memory taken by the hot store pairs table")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    @Scheduled(
+            initialDelayString = "${app.route-graph.hot-pairs.refresh-ms:60000}",
+            fixedDelayString = "${app.route-graph.hot-pairs.refresh-ms:60000}"
+    )
+    public void refresh() {
+        refreshTimer.record(() -> routeNetwork.refreshHotPairs(topPairs));
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.microservices.core.route.graph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import static com.example.microservices.core.route.graph.RouteGraph.UNREACHABLE;
+
+/**
+ * Precomputed shortest paths for a hot sources x hot targets matrix of one rule. The store ids of the rows
+ * and the columns are sorted and found by binary search, a lookup returns the path built by the refresh
+ * and allocates nothing. Costs and hops are flat primitive columns for the scans of the route deltas,
+ * hops of all cells share one route id array. Cells hit by a route delta are marked stale and are not
+ * served until the next refresh.
+ */
+final class HotPairTable {
+    static final HotPairTable EMPTY = new HotPairTable(new int[0], new int[0]);
+
+    private final int[] sourceStoreIds;
+    private final int[] targetStoreIds;
+    private final long[] costs;
+    private final RoutePath[] paths;
+    private final int[] pathOffsets;
+    private int[] pathRouteIds;
+    private final BitSet stale;
+    private long maxCost = 0;
+    private long pathBytes = 0;
+
+    private HotPairTable(int[] sourceStoreIds, int[] targetStoreIds) {
+        this.sourceStoreIds = sourceStoreIds;
+        this.targetStoreIds = targetStoreIds;
+        int cells = sourceStoreIds.length * targetStoreIds.length;
+        costs = new long[cells];
+        paths = new RoutePath[cells];
+        pathOffsets = new int[cells + 1];
+        pathRouteIds = new int[cells];
+        stale = new BitSet(cells);
+    }
+
+    static HotPairTable build(int[] sourceStoreIds, int[] targetStoreIds, RouteGraph graph, RouteGraph.EdgeCost edgeCost) {
+        int[] sources = sourceStoreIds.clone();
+        int[] targets = targetStoreIds.clone();
+        Arrays.sort(sources);
+        Arrays.sort(targets);
+        HotPairTable table = new HotPairTable(sources, targets);
+        int cell = 0;
+        int hops = 0;
+        for (int source : sources) {
+            RoutePath[] row = graph.shortestPaths(source, targets, edgeCost);
+            for (RoutePath path : row) {
+                table.pathOffsets[cell] = hops;
+                if (path == null) {
+                    table.costs[cell] = UNREACHABLE;
+                } else {
+                    table.costs[cell] = path.getCost();
+                    table.paths[cell] = path;
+                    // object header and fields, two arrays of hops and hops + 1 ints
+                    table.pathBytes += 32 + 2 * 16 + (2L * path.hops() + 1) * Integer.BYTES;
+                    table.maxCost = Math.max(table.maxCost, path.getCost());
+                    if (hops + path.hops() > table.pathRouteIds.length) {
+                        table.pathRouteIds = Arrays.copyOf(
+                                table.pathRouteIds, Math.max(hops + path.hops(), table.pathRouteIds.length * 2));
+                    }
+                    System.arraycopy(path.getRouteIds(), 0, table.pathRouteIds, hops, path.hops());
+                    hops += path.hops();
+                }
+                cell++;
+            }
+        }
+        table.pathOffsets[cell] = hops;
+        table.pathRouteIds = Arrays.copyOf(table.pathRouteIds, hops);
+        return table;
+    }
+
+    /**
+     * @return the precomputed path or null when the pair is not in the table, is stale or has no path
+     */
+    RoutePath lookup(int fromStoreId, int toStoreId) {
+        int row = Arrays.binarySearch(sourceStoreIds, fromStoreId);
+        int column = Arrays.binarySearch(targetStoreIds, toStoreId);
+        if (row < 0 || column < 0) {
+            return null;
+        }
+        int cell = row * targetStoreIds.length + column;
+        if (stale.get(cell)) {
+            return null;
+        }
+        return paths[cell];
+    }
+
+    long maxCost() {
+        return maxCost;
+    }
+
+    int[] sourceStoreIds() {
+        return sourceStoreIds;
+    }
+
+    int[] targetStoreIds() {
+        return targetStoreIds;
+    }
+
+    int cells() {
+        return costs.length;
+    }
+
+    long bytes() {
+        return (long) costs.length * Long.BYTES
+                + (long) paths.length * Integer.BYTES + pathBytes
+                + (long) (pathOffsets.length + pathRouteIds.length) * Integer.BYTES
+                + (long) (sourceStoreIds.length + targetStoreIds.length) * Integer.BYTES
+                + stale.size() / Byte.SIZE;
+    }
+
+    void markUsing(int routeId) {
+        for (int cell = 0; cell < costs.length; cell++) {
+            for (int hop = pathOffsets[cell]; hop < pathOffsets[cell + 1]; hop++) {
+                if (pathRouteIds[hop] == routeId) {
+                    stale.set(cell);
+                    break;
+                }
+            }
+        }
+    }
+
+    void markImprovable(long[] toEdge, long[] fromEdge, int weight, RouteGraph graph) {
+        for (int row = 0; row < sourceStoreIds.length; row++) {
+            long toEdgeCost = toEdge[graph.node(sourceStoreIds[row])];
+            if (toEdgeCost == UNREACHABLE) {
+                continue;
+            }
+            for (int column = 0; column < targetStoreIds.length; column++) {
+                long fromEdgeCost = fromEdge[graph.node(targetStoreIds[column])];
+                int cell = row * targetStoreIds.length + column;
+                if (fromEdgeCost != UNREACHABLE && costs[cell] != UNREACHABLE
+                        && toEdgeCost + weight + fromEdgeCost < costs[cell]) {
+                    stale.set(cell);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package com.example.microservices.core.route.graph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Mutable store-to-store graph. Stores are dense node indexes, routes are directed edges kept in
+ * primitive columns with per-node in/out edge lists, so the search never touches entity objects.
+ * Not thread-safe, {@link RouteNetwork} guards it.
+ */
+public final class RouteGraph {
+
+    @FunctionalInterface
+    public interface EdgeCost {
+        int cost(int distanceFromTo, int minutesFromTo);
+    }
+
+    public static final long UNREACHABLE = Long.MAX_VALUE;
+
+    private final Map<Integer, Integer> nodeByStoreId = new HashMap<>();
+    private final Map<Integer, Integer> edgeByRouteId = new HashMap<>();
+
+    private int nodeCount;
+    private int[] nodeStoreIds = new int[16];
+    private int[][] outEdges = new int[16][];
+    private int[] outDegree = new int[16];
+    private int[][] inEdges = new int[16][];
+    private int[] inDegree = new int[16];
+
+    private int edgeSlots;
+    private int[] edgeFrom = new int[16];
+    private int[] edgeTo = new int[16];
+    private int[] edgeDistance = new int[16];
+    private int[] edgeMinutes = new int[16];
+    private int[] edgeRouteId = new int[16];
+    private int[] freeEdges = new int[16];
+    private int freeCount;
+
+    public int storeCount() {
+        return nodeCount;
+    }
+
+    public int routeCount() {
+        return edgeByRouteId.size();
+    }
+
+    /**
+     * @return {fromStoreId, toStoreId, distanceFromTo, minutesFromTo} of the route or null
+     */
+    public int[] route(int routeId) {
+        Integer edge = edgeByRouteId.get(routeId);
+        if (edge == null) {
+            return null;
+        }
+        return new int[]{nodeStoreIds[edgeFrom[edge]], nodeStoreIds[edgeTo[edge]], edgeDistance[edge], edgeMinutes[edge]};
+    }
+
+    public void put(int routeId, int fromStoreId, int toStoreId, int distanceFromTo, int minutesFromTo) {
+        int from = nodeOrCreate(fromStoreId);
+        int to = nodeOrCreate(toStoreId);
+        Integer existing = edgeByRouteId.get(routeId);
+        if (existing != null && edgeFrom[existing] == from && edgeTo[existing] == to) {
+            edgeDistance[existing] = distanceFromTo;
+            edgeMinutes[existing] = minutesFromTo;
+            return;
+        }
+        if (existing != null) {
+            remove(routeId);
+        }
+        int edge = allocateEdge();
+        edgeFrom[edge] = from;
+        edgeTo[edge] = to;
+        edgeDistance[edge] = distanceFromTo;
+        edgeMinutes[edge] = minutesFromTo;
+        edgeRouteId[edge] = routeId;
+        edgeByRouteId.put(routeId, edge);
+        outEdges[from] = append(outEdges[from], outDegree[from]++, edge);
+        inEdges[to] = append(inEdges[to], inDegree[to]++, edge);
+    }
+
+    public boolean remove(int routeId) {
+        Integer edge = edgeByRouteId.remove(routeId);
+        if (edge == null) {
+            return false;
+        }
+        int from = edgeFrom[edge];
+        int to = edgeTo[edge];
+        outDegree[from] = unlink(outEdges[from], outDegree[from], edge);
+        inDegree[to] = unlink(inEdges[to], inDegree[to], edge);
+        if (freeCount == freeEdges.length) {
+            freeEdges = Arrays.copyOf(freeEdges, freeCount * 2);
+        }
+        freeEdges[freeCount++] = edge;
+        return true;
+    }
+
+    /**
+     * Dijkstra over the edge cost given by the caller. Stores carry no coordinates, so there is no
+     * admissible heuristic for A*; the search stops as soon as the target node is settled.
+     */
+    public Optional<RoutePath> shortestPath(int fromStoreId, int toStoreId, EdgeCost edgeCost) {
+        Integer source = nodeByStoreId.get(fromStoreId);
+        Integer target = nodeByStoreId.get(toStoreId);
+        if (source == null || target == null || source.equals(target)) {
+            return Optional.empty();
+        }
+        Search search = new Search(nodeCount);
+        long cost = search.run(source, target, false, edgeCost, UNREACHABLE);
+        if (cost == UNREACHABLE) {
+            return Optional.empty();
+        }
+        return Optional.of(buildPath(source, target, search, cost));
+    }
+
+    /**
+     * One full Dijkstra from the store, paths to the given stores; null where there is no path.
+     */
+    public RoutePath[] shortestPaths(int fromStoreId, int[] toStoreIds, EdgeCost edgeCost) {
+        RoutePath[] paths = new RoutePath[toStoreIds.length];
+        Integer source = nodeByStoreId.get(fromStoreId);
+        if (source == null) {
+            return paths;
+        }
+        Search search = new Search(nodeCount);
+        search.run(source, -1, false, edgeCost, UNREACHABLE);
+        for (int i = 0; i < toStoreIds.length; i++) {
+            Integer target = nodeByStoreId.get(toStoreIds[i]);
+            if (target != null && !target.equals(source) && search.cost[target] != UNREACHABLE) {
+                paths[i] = buildPath(source, target, search, search.cost[target]);
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Costs from the store to every store (or from every store to it, when reversed) up to the bound.
+     * The result is indexed by {@link #node(int)}, {@link #UNREACHABLE} where the bound was not met.
+     */
+    public long[] costs(int storeId, boolean reverse, EdgeCost edgeCost, long bound) {
+        Search search = new Search(nodeCount);
+        Integer source = nodeByStoreId.get(storeId);
+        if (source != null) {
+            search.run(source, -1, reverse, edgeCost, bound);
+        }
+        return search.cost;
+    }
+
+    public int node(int storeId) {
+        Integer node = nodeByStoreId.get(storeId);
+        return node == null ? -1 : node;
+    }
+
+    private RoutePath buildPath(int source, int target, Search search, long totalCost) {
+        int hops = 0;
+        for (int node = target; node != source; node = edgeFrom[search.viaEdge[node]]) {
+            hops++;
+        }
+        int[] pathRouteIds = new int[hops];
+        int[] pathStoreIds = new int[hops + 1];
+        int distance = 0;
+        int minutes = 0;
+        int node = target;
+        for (int hop = hops - 1; hop >= 0; hop--) {
+            int edge = search.viaEdge[node];
+            pathRouteIds[hop] = edgeRouteId[edge];
+            pathStoreIds[hop + 1] = nodeStoreIds[node];
+            distance += edgeDistance[edge];
+            minutes += edgeMinutes[edge];
+            node = edgeFrom[edge];
+        }
+        pathStoreIds[0] = nodeStoreIds[source];
+        return new RoutePath(totalCost, distance, minutes, pathRouteIds, pathStoreIds);
+    }
+
+    private int nodeOrCreate(int storeId) {
+        Integer node = nodeByStoreId.get(storeId);
+        if (node != null) {
+            return node;
+        }
+        if (nodeCount == nodeStoreIds.length) {
+            int capacity = nodeCount * 2;
+            nodeStoreIds = Arrays.copyOf(nodeStoreIds, capacity);
+            outEdges = Arrays.copyOf(outEdges, capacity);
+            outDegree = Arrays.copyOf(outDegree, capacity);
+            inEdges = Arrays.copyOf(inEdges, capacity);
+            inDegree = Arrays.copyOf(inDegree, capacity);
+        }
+        nodeStoreIds[nodeCount] = storeId;
+        outEdges[nodeCount] = new int[2];
+        inEdges[nodeCount] = new int[2];
+        nodeByStoreId.put(storeId, nodeCount);
+        return nodeCount++;
+    }
+
+    private int allocateEdge() {
+        if (freeCount > 0) {
+            return freeEdges[--freeCount];
+        }
+        if (edgeSlots == edgeFrom.length) {
+            int capacity = edgeSlots * 2;
+            edgeFrom = Arrays.copyOf(edgeFrom, capacity);
+            edgeTo = Arrays.copyOf(edgeTo, capacity);
+            edgeDistance = Arrays.copyOf(edgeDistance, capacity);
+            edgeMinutes = Arrays.copyOf(edgeMinutes, capacity);
+            edgeRouteId = Arrays.copyOf(edgeRouteId, capacity);
+        }
+        return edgeSlots++;
+    }
+
+    private static int[] append(int[] edges, int size, int edge) {
+        if (size == edges.length) {
+            edges = Arrays.copyOf(edges, size * 2);
+        }
+        edges[size] = edge;
+        return edges;
+    }
+
+    private static int unlink(int[] edges, int size, int edge) {
+        for (int i = 0; i < size; i++) {
+            if (edges[i] == edge) {
+                edges[i] = edges[--size];
+                return size;
+            }
+        }
+        return size;
+    }
+
+    private final class Search {
+        private final long[] cost;
+        private final int[] viaEdge;
+
+        Search(int nodes) {
+            cost = new long[nodes];
+            viaEdge = new int[nodes];
+            Arrays.fill(cost, UNREACHABLE);
+        }
+
+        long run(int source, int target, boolean reverse, EdgeCost edgeCost, long bound) {
+            int[][] adjacency = reverse ? inEdges : outEdges;
+            int[] degree = reverse ? inDegree : outDegree;
+            int[] next = reverse ? edgeFrom : edgeTo;
+            cost[source] = 0;
+            NodeHeap heap = new NodeHeap(Math.max(16, nodeCount));
+            heap.push(0, source);
+            while (!heap.isEmpty()) {
+                long nodeCost = heap.peekCost();
+                int node = heap.pop();
+                if (nodeCost > cost[node]) {
+                    continue;
+                }
+                if (node == target) {
+                    return nodeCost;
+                }
+                int[] edges = adjacency[node];
+                for (int i = 0; i < degree[node]; i++) {
+                    int edge = edges[i];
+                    long nextCost = nodeCost + edgeCost.cost(edgeDistance[edge], edgeMinutes[edge]);
+                    int nextNode = next[edge];
+                    if (nextCost < cost[nextNode] && nextCost <= bound) {
+                        cost[nextNode] = nextCost;
+                        viaEdge[nextNode] = edge;
+                        heap.push(nextCost, nextNode);
+                    }
+                }
+            }
+            return UNREACHABLE;
+        }
+    }
+
+    private static final class NodeHeap {
+        private long[] costs;
+        private int[] nodes;
+        private int size;
+
+        NodeHeap(int capacity) {
+            costs = new long[capacity];
+            nodes = new int[capacity];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        long peekCost() {
+            return costs[0];
+        }
+
+        void push(long cost, int node) {
+            if (size == costs.length) {
+                costs = Arrays.copyOf(costs, size * 2);
+                nodes = Arrays.copyOf(nodes, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (costs[parent] <= cost) {
+                    break;
+                }
+                costs[i] = costs[parent];
+                nodes[i] = nodes[parent];
+                i = parent;
+            }
+            costs[i] = cost;
+            nodes[i] = node;
+        }
+
+        int pop() {
+            int top = nodes[0];
+            long lastCost = costs[--size];
+            int lastNode = nodes[size];
+            int i = 0;
+            int half = size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && costs[child + 1] < costs[child]) {
+                    child++;
+                }
+                if (lastCost <= costs[child]) {
+                    break;
+                }
+                costs[i] = costs[child];
+                nodes[i] = nodes[child];
+                i = child;
+            }
+            costs[i] = lastCost;
+            nodes[i] = lastNode;
+            return top;
+        }
+    }
+}
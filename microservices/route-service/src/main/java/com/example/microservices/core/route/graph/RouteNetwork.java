@@ -0,0 +1,242 @@
+package com.example.microservices.core.route.graph;
+
+import com.example.microservices.core.route.persistence.RouteEntity;
+import com.example.microservices.core.route.persistence.RouteRepository;
+import com.example.mutual.api.core.route.RouteRuleType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.example.microservices.core.route.graph.RouteGraph.UNREACHABLE;
+
+/**
+ * Live route graph plus shortest paths per rule: a precomputed table of the hottest store pairs and
+ * memoized paths for the rest. The routes table is read once, afterwards the graph follows route deltas
+ * and evicts only the store pairs the delta can affect.
+ */
+@Slf4j
+@Component
+public class RouteNetwork {
+    private final RouteRepository repository;
+    private final int pathCacheSize;
+    private final RouteGraph graph = new RouteGraph();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<RouteRuleType, PathCache> pathCaches = new ConcurrentHashMap<>();
+    private volatile boolean loaded = false;
+
+    public RouteNetwork(
+            RouteRepository repository,
+            @Value("${app.route-graph.path-cache-size:10000}") int pathCacheSize
+    ) {
+        this.repository = repository;
+        this.pathCacheSize = pathCacheSize;
+    }
+
+    public Optional<RoutePath> shortestPath(
+            int fromStoreId, int toStoreId, RouteRuleType ruleType, RouteGraph.EdgeCost edgeCost
+    ) {
+        ensureLoaded();
+        PathCache cache = pathCaches.computeIfAbsent(ruleType, type -> new PathCache(edgeCost));
+        long pair = pair(fromStoreId, toStoreId);
+        cache.countDemand(pair);
+        lock.readLock().lock();
+        try {
+            RoutePath path = cache.table.lookup(fromStoreId, toStoreId);
+            if (path == null) {
+                path = cache.paths.get(pair);
+            }
+            if (path == null) {
+                path = graph.shortestPath(fromStoreId, toStoreId, cache.edgeCost).orElse(null);
+                if (path != null && cache.paths.size() < pathCacheSize) {
+                    cache.paths.put(pair, path);
+                }
+            }
+            return Optional.ofNullable(path);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rebuilds the hot pair table of every rule from the pairs requested since the previous refresh.
+     *
+     * @return memory taken by the tables, bytes
+     */
+    public long refreshHotPairs(int topPairs) {
+        ensureLoaded();
+        long bytes = 0;
+        for (PathCache cache : pathCaches.values()) {
+            long[] pairs = cache.drainDemand(topPairs);
+            lock.readLock().lock();
+            try {
+                int[] sources = hotStores(pairs, 32, cache.table.sourceStoreIds());
+                int[] targets = hotStores(pairs, 0, cache.table.targetStoreIds());
+                cache.table = HotPairTable.build(sources, targets, graph, cache.edgeCost);
+            } finally {
+                lock.readLock().unlock();
+            }
+            bytes += cache.table.bytes();
+            log.debug("Hot pair table refreshed: {}x{} stores, {} bytes",
+                    cache.table.sourceStoreIds().length, cache.table.targetStoreIds().length, cache.table.bytes());
+        }
+        return bytes;
+    }
+
+    public long hotPairBytes() {
+        return pathCaches.values().stream().mapToLong(cache -> cache.table.bytes()).sum();
+    }
+
+    /**
+     * Applies a committed change of a route. Before the graph is loaded the change is left to the load,
+     * which reads the routes table later; during the load it waits for the write lock held by the load.
+     */
+    public void putRoute(RouteEntity route) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                return;
+            }
+            int routeId = route.getRouteId();
+            int[] old = graph.route(routeId);
+            graph.put(routeId, route.getFromStoreId(), route.getToStoreId(),
+                    route.getDistanceFromTo(), route.getMinutesFromTo());
+            for (PathCache cache : pathCaches.values()) {
+                int newCost = cache.edgeCost.cost(route.getDistanceFromTo(), route.getMinutesFromTo());
+                if (old == null) {
+                    cache.evictImprovable(route.getFromStoreId(), route.getToStoreId(), newCost);
+                    continue;
+                }
+                int oldCost = cache.edgeCost.cost(old[2], old[3]);
+                boolean sameEnds = old[0] == route.getFromStoreId() && old[1] == route.getToStoreId();
+                // a path keeps the distance and the minutes of its edges, not only the cost of the rule
+                boolean sameWeights = old[2] == route.getDistanceFromTo() && old[3] == route.getMinutesFromTo();
+                if (!sameEnds || !sameWeights) {
+                    cache.evictUsing(routeId);
+                }
+                if (!sameEnds || newCost < oldCost) {
+                    cache.evictImprovable(route.getFromStoreId(), route.getToStoreId(), newCost);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeRoute(int routeId) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                return;
+            }
+            if (graph.remove(routeId)) {
+                pathCaches.values().forEach(cache -> cache.evictUsing(routeId));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                return;
+            }
+            repository.findAll().forEach(route -> graph.put(route.getRouteId(), route.getFromStoreId(),
+                    route.getToStoreId(), route.getDistanceFromTo(), route.getMinutesFromTo()));
+            loaded = true;
+            log.info("Route graph loaded: {} stores, {} routes", graph.storeCount(), graph.routeCount());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // without fresh demand the table is recomputed for the previous stores
+    private int[] hotStores(long[] pairs, int shift, int[] previous) {
+        if (pairs.length == 0) {
+            return previous;
+        }
+        return Arrays.stream(pairs)
+                .mapToInt(pair -> (int) (pair >> shift))
+                .distinct()
+                .filter(storeId -> graph.node(storeId) >= 0)
+                .toArray();
+    }
+
+    private static long pair(int fromStoreId, int toStoreId) {
+        return ((long) fromStoreId << 32) | (toStoreId & 0xFFFFFFFFL);
+    }
+
+    private final class PathCache {
+        private final RouteGraph.EdgeCost edgeCost;
+        private final Map<Long, RoutePath> paths = new ConcurrentHashMap<>();
+        private final Map<Long, LongAdder> demand = new ConcurrentHashMap<>();
+        private volatile HotPairTable table = HotPairTable.EMPTY;
+
+        PathCache(RouteGraph.EdgeCost edgeCost) {
+            this.edgeCost = edgeCost;
+        }
+
+        void countDemand(long pair) {
+            LongAdder counter = demand.get(pair);
+            if (counter == null && demand.size() < pathCacheSize) {
+                counter = demand.computeIfAbsent(pair, key -> new LongAdder());
+            }
+            if (counter != null) {
+                counter.increment();
+            }
+        }
+
+        long[] drainDemand(int topPairs) {
+            long[] hot = demand.entrySet().stream()
+                    .sorted(Comparator.comparingLong((Map.Entry<Long, LongAdder> entry) -> entry.getValue().sum()).reversed())
+                    .limit(topPairs)
+                    .mapToLong(Map.Entry::getKey)
+                    .toArray();
+            demand.clear();
+            return hot;
+        }
+
+        void evictUsing(int routeId) {
+            table.markUsing(routeId);
+            paths.values().removeIf(path -> {
+                for (int hop : path.getRouteIds()) {
+                    if (hop == routeId) {
+                        return true;
+                    }
+                }
+                return false;
+            });
+        }
+
+        // a new or cheaper edge u->v can only shorten s->t when cost(s,u) + w + cost(v,t) < known cost
+        void evictImprovable(int fromStoreId, int toStoreId, int weight) {
+            long maxCost = Math.max(table.maxCost(),
+                    paths.values().stream().mapToLong(RoutePath::getCost).max().orElse(0));
+            long bound = maxCost - weight;
+            if (bound <= 0) {
+                return;
+            }
+            long[] toEdge = graph.costs(fromStoreId, true, edgeCost, bound);
+            long[] fromEdge = graph.costs(toStoreId, false, edgeCost, bound);
+            table.markImprovable(toEdge, fromEdge, weight, graph);
+            paths.entrySet().removeIf(entry -> {
+                int source = graph.node((int) (entry.getKey() >> 32));
+                int target = graph.node((int) (long) entry.getKey());
+                return toEdge[source] != UNREACHABLE && fromEdge[target] != UNREACHABLE
+                        && toEdge[source] + weight + fromEdge[target] < entry.getValue().getCost();
+            });
+        }
+    }
+}
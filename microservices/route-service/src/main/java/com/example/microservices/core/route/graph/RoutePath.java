@@ -0,0 +1,18 @@
+package com.example.microservices.core.route.graph;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class RoutePath {
+    private final long cost;
+    private final int distanceFromTo;
+    private final int minutesFromTo;
+    private final int[] routeIds;
+    private final int[] storeIds;
+
+    public int hops() {
+        return routeIds.length;
+    }
+}
@@ -1,12 +1,14 @@
 package com.example.microservices.core.route.invariant;
 
 
-import com.example.microservices.core.route.persistence.RouteEntity;
+import com.example.microservices.core.route.graph.RouteNetwork;
+import com.example.microservices.core.route.graph.RoutePath;
 import com.example.mutual.api.core.route.RouteRuleType;
 
-import java.util.List;
 import java.util.Optional;
 
 public interface RuleRouteSelect {
-    Optional<RouteEntity> find(List<RouteEntity> routs, RouteRuleType ruleType);
+    Optional<RoutePath> find(RouteNetwork network, int fromStoreId, int toStoreId, RouteRuleType ruleType);
+
+    int cost(int distanceFromTo, int minutesFromTo);
 }
@@ -1,22 +1,25 @@
 package com.example.microservices.core.route.invariant;
 
-import com.example.microservices.core.route.persistence.RouteEntity;
+import com.example.microservices.core.route.graph.RouteNetwork;
+import com.example.microservices.core.route.graph.RoutePath;
 import com.example.mutual.api.core.route.RouteRuleType;
 import lombok.NoArgsConstructor;
 import org.springframework.stereotype.Component;
 
-import java.util.Comparator;
-import java.util.List;
 import java.util.Optional;
 
 @Component
 @NoArgsConstructor
 public class RuleRouteSelectMinimalDistance implements RuleRouteSelect {
     private final RouteRuleType ruleType = RouteRuleType.MINIMAL_DISTANCE;
-    public Optional<RouteEntity> find(List<RouteEntity> routs, RouteRuleType ruleType) {
+    public Optional<RoutePath> find(RouteNetwork network, int fromStoreId, int toStoreId, RouteRuleType ruleType) {
         if (this.ruleType != ruleType) {
             return Optional.empty();
         }
-        return routs.stream().min(Comparator.comparingInt(RouteEntity::getDistanceFromTo));
+        return network.shortestPath(fromStoreId, toStoreId, ruleType, this::cost);
+    }
+
+    public int cost(int distanceFromTo, int minutesFromTo) {
+        return distanceFromTo;
     }
 }
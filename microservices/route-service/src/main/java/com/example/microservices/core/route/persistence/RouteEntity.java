@@ -1,15 +1,20 @@
 package com.example.microservices.core.route.persistence;
 
+import com.example.mutual.util.persistence.PooledSequenceGenerator;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.io.Serializable;
 import java.time.LocalDateTime;
 
+import static org.hibernate.id.enhanced.SequenceStyleGenerator.SEQUENCE_PARAM;
+
 @NoArgsConstructor
 @Getter
 @Setter
@@ -23,7 +28,12 @@ import java.time.LocalDateTime;
 )
 public class RouteEntity implements Serializable {
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "route_entity_seq")
+    @GenericGenerator(
+            name = "route_entity_seq",
+            type = PooledSequenceGenerator.class,
+            parameters = @Parameter(name = SEQUENCE_PARAM, value = "route_entity_seq")
+    )
     private int id;
     @Version
     private int version;
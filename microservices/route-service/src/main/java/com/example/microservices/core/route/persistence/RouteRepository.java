@@ -1,15 +1,19 @@
 package com.example.microservices.core.route.persistence;
 
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
-public interface RouteRepository extends CrudRepository<RouteEntity, Integer> {
+public interface RouteRepository extends JpaRepository<RouteEntity, Integer> {
     @Transactional(readOnly = true)
     Optional<RouteEntity> findByRouteId(int storeId);
 
+    List<RouteEntity> findByRouteIdIn(Collection<Integer> routeIds);
+
     @Transactional(readOnly = true)
-    List<RouteEntity> findByFromStoreIdAndToStoreId(int fromStoreId, int toStoreId);
+    List<RouteEntity> findByRouteIdGreaterThanOrderByRouteIdAsc(int routeId, Limit limit);
 }
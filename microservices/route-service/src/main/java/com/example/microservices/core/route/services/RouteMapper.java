@@ -13,7 +13,9 @@ public interface RouteMapper {
 
     RouteEntity cloneRouteEntity(RouteEntity storeEntity);
     @Mappings({
-            @Mapping(target = "serviceAddress", ignore = true)
+            @Mapping(target = "hops", ignore = true),
+            @Mapping(target = "serviceAddress", ignore = true),
+            @Mapping(source = "id", target = "entityId")
     })
     Route entityToApi(RouteEntity entity);
 
@@ -1,22 +1,27 @@
 package com.example.microservices.core.route.services;
 
+import com.example.microservices.core.route.cache.TwoLevelCacheManager;
 import com.example.microservices.core.route.persistence.RouteEntity;
 import com.example.microservices.core.route.persistence.RouteRepository;
+import org.springframework.cache.Cache;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.cache.annotation.Caching;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Service
 public class RouteServiceCacheable {
     private final RouteRepository repository;
+    private final TwoLevelCacheManager cacheManager;
 
-    public RouteServiceCacheable(RouteRepository repository) {
+    public RouteServiceCacheable(RouteRepository repository, TwoLevelCacheManager cacheManager) {
         this.repository = repository;
+        this.cacheManager = cacheManager;
     }
 
     @Cacheable(value = "RouteService::findByRouteId", key = "#routeId")
@@ -24,31 +29,44 @@ public class RouteServiceCacheable {
         return repository.findByRouteId(routeId);
     }
 
-    @Cacheable(value = "RouteService::findByFromStoreIdAndToStoreId", key = "#fromStoreId + '_' + #toStoreId")
-    public List<RouteEntity> findByFromStoreIdAndToStoreId(int fromStoreId, int toStoreId) {
-        return repository.findByFromStoreIdAndToStoreId(fromStoreId, toStoreId);
-    }
-
-    @Caching(put = {@CachePut(value = "RouteService::findByRouteId", key = "#result.routeId")})
-    @CacheEvict(
-            value = "RouteService::findByFromStoreIdAndToStoreId",
-            key = "#entity.fromStoreId + '_' + #entity.toStoreId"
-    )
+    @CachePut(value = "RouteService::findByRouteId", key = "#result.routeId")
     public Optional<RouteEntity> save(RouteEntity entity) {
-        return Optional.of(repository.save(entity));
+        // flushed, so a duplicate key fails before the cache put
+        return Optional.of(repository.saveAndFlush(entity));
     }
 
-    @Caching(
-            evict = {
-                    @CacheEvict(
-                            value = "RouteService::findByFromStoreIdAndToStoreId",
-                            key = "#entity.fromStoreId + '_' + #entity.toStoreId"
-                    ),
-                    @CacheEvict(value = "RouteService::findByRouteId", key = "#entity.routeId")
-            })
+    @CacheEvict(value = "RouteService::findByRouteId", key = "#entity.routeId")
     public void delete(RouteEntity entity) {
         repository.delete(entity);
     }
 
+    // uncached, the bulk load needs managed entities of its own transaction
+    public List<RouteEntity> findAllByRouteIdIn(Collection<Integer> routeIds) {
+        return repository.findByRouteIdIn(routeIds);
+    }
+
+    // uncached, a scan page is read once
+    public List<RouteEntity> scanAfterRouteId(int routeId, Limit limit) {
+        return repository.findByRouteIdGreaterThanOrderByRouteIdAsc(routeId, limit);
+    }
+
+    // the caller evicts the keys after the commit, see evict(RouteEntity)
+    public void saveAll(List<RouteEntity> entities) {
+        repository.saveAllAndFlush(entities);
+    }
+
+    public void evict(RouteEntity entity) {
+        evict("RouteService::findByRouteId", entity.getRouteId());
+    }
 
+    public void evictLocal(RouteEntity entity) {
+        cacheManager.evictLocal("RouteService::findByRouteId", entity.getRouteId());
+    }
+
+    private void evict(String name, Object key) {
+        Cache cache = cacheManager.getCache(name);
+        if (cache != null) {
+            cache.evict(key);
+        }
+    }
 }
@@ -2,31 +2,52 @@ package com.example.microservices.core.route.services;
 
 import com.example.microservices.core.route.broker.ProducerRevise;
 import com.example.microservices.core.route.broker.ProducerTask;
+import com.example.microservices.core.route.graph.RouteNetwork;
+import com.example.microservices.core.route.graph.RoutePath;
 import com.example.microservices.core.route.invariant.RuleRouteSelect;
 import com.example.microservices.core.route.persistence.RouteEntity;
+import com.example.mutual.api.core.BulkItemResult;
 import com.example.mutual.api.core.route.Route;
+import com.example.mutual.api.core.route.RouteRuleType;
 import com.example.mutual.api.core.route.RouteService;
 import com.example.mutual.api.core.route.RouteTaskPayload;
 import com.example.mutual.api.core.route.RouteTaskService;
 import com.example.mutual.api.exceptions.InvalidInputException;
 import com.example.mutual.api.exceptions.NotFoundException;
+import com.example.mutual.util.http.ConditionalGet;
 import com.example.mutual.util.http.ServiceUtil;
 import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.retry.annotation.Backoff;
 import org.springframework.retry.annotation.Retryable;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Scheduler;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import static com.example.mutual.api.core.BulkItemResult.created;
+import static com.example.mutual.api.core.BulkItemResult.rejected;
+import static com.example.mutual.api.core.BulkItemResult.updated;
 import static java.util.logging.Level.FINE;
 
 @Slf4j
@@ -40,6 +61,10 @@ public class RouteServiceImpl implements RouteService, RouteTaskService {
     private final ProducerTask producerTask;
     private final List<RuleRouteSelect> rulesSelect;
     private final RouteServiceCacheable serviceRepoCacheable;
+    private final RouteNetwork routeNetwork;
+    private final TransactionTemplate transactionTemplate;
+    private final int bulkChunkSize;
+    private final int scanPageSize;
 
     @Autowired
     public RouteServiceImpl(
@@ -47,7 +72,11 @@ public class RouteServiceImpl implements RouteService, RouteTaskService {
             ServiceUtil serviceUtil,
             @Qualifier("jdbcScheduler") Scheduler jdbcScheduler,
             ProducerRevise producer, ProducerTask producerTask,
-            List<RuleRouteSelect> rulesSelect, RouteServiceCacheable serviceRepoCacheable
+            List<RuleRouteSelect> rulesSelect, RouteServiceCacheable serviceRepoCacheable,
+            RouteNetwork routeNetwork,
+            TransactionTemplate transactionTemplate,
+            @Value("${app.bulk.chunk-size:1000}") int bulkChunkSize,
+            @Value("${app.scan.page-size:500}") int scanPageSize
     ) {
         this.mapper = mapper;
         this.serviceUtil = serviceUtil;
@@ -56,6 +85,10 @@ public class RouteServiceImpl implements RouteService, RouteTaskService {
         this.producerTask = producerTask;
         this.rulesSelect = rulesSelect;
         this.serviceRepoCacheable = serviceRepoCacheable;
+        this.routeNetwork = routeNetwork;
+        this.transactionTemplate = transactionTemplate;
+        this.bulkChunkSize = bulkChunkSize;
+        this.scanPageSize = scanPageSize;
     }
 
     @Override
@@ -66,6 +99,20 @@ public class RouteServiceImpl implements RouteService, RouteTaskService {
         log.info("Will get route with id={}", routeId);
         return Mono.fromCallable(() -> internalGetRoute(routeId))
                 .switchIfEmpty(Mono.error(new NotFoundException("No route found for routeId: " + routeId)))
+                .transform(ConditionalGet.byVersion(Route::getEntityId, Route::getVersion))
+                .log(log.getName(), FINE)
+                .subscribeOn(jdbcScheduler);
+    }
+
+    @Override
+    public Mono<Route> getRouteBetween(int fromStoreId, int toStoreId, RouteRuleType ruleType) {
+        if (fromStoreId < 1 || toStoreId < 1) {
+            throw new InvalidInputException("Invalid storeId: " + (fromStoreId < 1 ? fromStoreId : toStoreId));
+        }
+        log.info("Will get route from storeId={} to storeId={} by {}", fromStoreId, toStoreId, ruleType);
+        return Mono.fromCallable(() -> resolveRoute(fromStoreId, toStoreId, ruleType))
+                .switchIfEmpty(Mono.error(new NotFoundException("No route found for storeId={"
+                        + fromStoreId + "} from and storeId={" + toStoreId + "} to.")))
                 .log(log.getName(), FINE)
                 .subscribeOn(jdbcScheduler);
     }
@@ -80,6 +127,61 @@ public class RouteServiceImpl implements RouteService, RouteTaskService {
                 .orElse(null);
     }
 
+    @Override
+    public Flux<Route> getRoutes(List<Integer> ids) {
+        List<Integer> routeIds = ids.stream().distinct().toList();
+        for (Integer routeId : routeIds) {
+            if (routeId == null || routeId < 1) {
+                throw new InvalidInputException("Invalid routeId: " + routeId);
+            }
+        }
+        log.info("Will get {} routes in chunks of {}", routeIds.size(), bulkChunkSize);
+        return Flux.range(0, (routeIds.size() + bulkChunkSize - 1) / bulkChunkSize)
+                .map(chunk -> routeIds.subList(chunk * bulkChunkSize, Math.min(routeIds.size(), (chunk + 1) * bulkChunkSize)))
+                .concatMap(chunk -> Mono.fromCallable(() -> internalGetRoutes(chunk)).subscribeOn(jdbcScheduler))
+                .flatMapIterable(routes -> routes)
+                .log(log.getName(), FINE);
+    }
+
+    private List<Route> internalGetRoutes(List<Integer> routeIds) {
+        String serviceAddress = serviceUtil.getServiceAddress();
+        return serviceRepoCacheable.findAllByRouteIdIn(routeIds).stream()
+                .map(routeEntity -> {
+                    Route route = mapper.entityToApi(routeEntity);
+                    route.setServiceAddress(serviceAddress);
+                    return route;
+                })
+                .toList();
+    }
+
+    @Override
+    public Flux<Route> scanRoutes(int afterId) {
+        if (afterId < 0) {
+            throw new InvalidInputException("Invalid afterId: " + afterId);
+        }
+        log.info("Will scan routes after routeId={} in pages of {}", afterId, scanPageSize);
+        // the next page is read when the previous one is consumed, prefetch 1 keeps a slow client from piling pages up
+        return Mono.fromCallable(() -> internalScanRoutes(afterId))
+                .subscribeOn(jdbcScheduler)
+                .expand(page -> page.size() < scanPageSize
+                        ? Mono.empty()
+                        : Mono.fromCallable(() -> internalScanRoutes(page.get(page.size() - 1).getRouteId()))
+                                .subscribeOn(jdbcScheduler))
+                .flatMapIterable(routes -> routes, 1)
+                .log(log.getName(), FINE);
+    }
+
+    private List<Route> internalScanRoutes(int afterId) {
+        String serviceAddress = serviceUtil.getServiceAddress();
+        return serviceRepoCacheable.scanAfterRouteId(afterId, Limit.of(scanPageSize)).stream()
+                .map(routeEntity -> {
+                    Route route = mapper.entityToApi(routeEntity);
+                    route.setServiceAddress(serviceAddress);
+                    return route;
+                })
+                .toList();
+    }
+
     @Override
     public Mono<Route> findRoute(RouteTaskPayload payload) {
         return Mono.fromCallable(() -> internalFindRoute(payload))
@@ -92,22 +194,96 @@ public class RouteServiceImpl implements RouteService, RouteTaskService {
     }
 
     private Route internalFindRoute(RouteTaskPayload payload) {
-        List<RouteEntity> routes = serviceRepoCacheable
-                .findByFromStoreIdAndToStoreId(payload.getFromStoreId(), payload.getToStoreId());
+        Route route = resolveRoute(payload.getFromStoreId(), payload.getToStoreId(), payload.getRuleType());
+        if (route != null) {
+            payload.setRoute(route);
+            producerTask.routeFound(payload);
+        } else {
+            log.warn("No route found for storeId={} from and storeId={} to, order ID: {}",
+                    payload.getFromStoreId(), payload.getToStoreId(), payload.getOrderId());
+            producerTask.routeNotFound(payload);
+        }
+        return route;
+    }
+
+    @Override
+    public Flux<RouteTaskPayload> findRoutes(List<RouteTaskPayload> payloads) {
+        return Mono.fromCallable(() -> internalFindRoutes(payloads))
+                .flatMapIterable(found -> found)
+                .log(log.getName(), FINE)
+                .subscribeOn(jdbcScheduler);
+    }
+
+    private List<RouteTaskPayload> internalFindRoutes(List<RouteTaskPayload> payloads) {
+        Map<RouteKey, List<RouteTaskPayload>> groups = payloads.stream().collect(Collectors.groupingBy(
+                payload -> new RouteKey(payload.getFromStoreId(), payload.getToStoreId(), payload.getRuleType()),
+                LinkedHashMap::new,
+                Collectors.toList()
+        ));
+        List<RouteTaskPayload> found = new ArrayList<>(payloads.size());
+        List<RouteTaskPayload> notFound = new ArrayList<>();
+        groups.forEach((key, group) -> {
+            Route route = resolveRoute(key.fromStoreId(), key.toStoreId(), key.ruleType());
+            if (route == null) {
+                log.warn("No route found for storeId={} from and storeId={} to, {} tasks",
+                        key.fromStoreId(), key.toStoreId(), group.size());
+                notFound.addAll(group);
+                return;
+            }
+            group.forEach(payload -> {
+                payload.setRoute(route);
+                found.add(payload);
+            });
+        });
+        log.debug("findRoutes: {} tasks, {} distinct routes, {} found", payloads.size(), groups.size(), found.size());
+        producerTask.routesFound(found);
+        producerTask.routesNotFound(notFound);
+        return found;
+    }
+
+    private Route resolveRoute(int fromStoreId, int toStoreId, RouteRuleType ruleType) {
         return rulesSelect.stream()
-                .map(rule -> rule.find(routes, payload.getRuleType()))
+                .map(rule -> rule.find(routeNetwork, fromStoreId, toStoreId, ruleType))
                 .filter(Optional::isPresent)
-                .map(routeOpt -> {
-                    Route route = mapper.entityToApi(routeOpt.get());
+                .map(pathOpt -> {
+                    Route route = pathToApi(pathOpt.get());
                     route.setServiceAddress(serviceUtil.getServiceAddress());
-                    payload.setRoute(route);
-                    producerTask.routeFound(payload);
                     return route;
                 })
                 .findFirst()
                 .orElse(null);
     }
 
+    private Route pathToApi(RoutePath path) {
+        List<Integer> hops = new ArrayList<>(path.hops());
+        List<RouteEntity> legs = new ArrayList<>(path.hops());
+        for (int routeId : path.getRouteIds()) {
+            hops.add(routeId);
+            serviceRepoCacheable.findByRouteId(routeId).ifPresent(legs::add);
+        }
+        if (legs.size() == 1 && path.hops() == 1) {
+            Route route = mapper.entityToApi(legs.get(0));
+            route.setHops(hops);
+            return route;
+        }
+        StringJoiner pathFromTo = new StringJoiner(" -> ");
+        legs.stream()
+                .map(RouteEntity::getPathFromTo)
+                .filter(Objects::nonNull)
+                .forEach(pathFromTo::add);
+        int[] storeIds = path.getStoreIds();
+        Route route = new Route(
+                0,
+                storeIds[0],
+                storeIds[storeIds.length - 1],
+                pathFromTo.toString(),
+                path.getDistanceFromTo(),
+                path.getMinutesFromTo()
+        );
+        route.setHops(hops);
+        return route;
+    }
+
     @Transactional
     @Override
     public Mono<Route> createRoute(Route body) {
@@ -120,11 +296,14 @@ public class RouteServiceImpl implements RouteService, RouteTaskService {
 
     private Route internalCreateRoute(Route body) {
         try {
-            RouteEntity entity = mapper.apiToEntity(body);
-            Optional<RouteEntity> newEntity = serviceRepoCacheable.save(entity);
-            producer.routeCreated(newEntity.orElseThrow());
+            RouteEntity newEntity = transactionTemplate.execute(status -> {
+                RouteEntity entity = serviceRepoCacheable.save(mapper.apiToEntity(body)).orElseThrow();
+                producer.routeCreated(entity);
+                return entity;
+            });
+            routeNetwork.putRoute(newEntity);
             log.debug("createRoute: created a route entity: {}", body.getRouteId());
-            return mapper.entityToApi(newEntity.get());
+            return mapper.entityToApi(newEntity);
         } catch (DataIntegrityViolationException dive) {
             throw new InvalidInputException("Duplicate key, Route Id: " + body.getRouteId());
         }
@@ -149,19 +328,25 @@ public class RouteServiceImpl implements RouteService, RouteTaskService {
     }
 
     private Route internalUpdateRoute(Route body) {
-        return serviceRepoCacheable
+        RouteEntity newRouteEntity = transactionTemplate.execute(status -> serviceRepoCacheable
                 .findByRouteId(body.getRouteId())
                 .map(
                         entity -> {
-                            RouteEntity oldRouteEntity = mapper.cloneRouteEntity(entity);
-                            BeanUtils.copyProperties(body, entity, "routeId");
-                            serviceRepoCacheable.save(entity);
-                            producer.routeUpdated(oldRouteEntity);
-                            log.debug("updateRoute: updated a route entity: {}", body.getRouteId());
-                            return mapper.entityToApi(entity);
+                            // the cached instance is shared through the near cache, changes go to a copy
+                            RouteEntity newEntity = mapper.cloneRouteEntity(entity);
+                            BeanUtils.copyProperties(body, newEntity, "routeId", "version");
+                            serviceRepoCacheable.save(newEntity);
+                            producer.routeUpdated(entity);
+                            return newEntity;
                         }
                 )
-                .orElse(null);
+                .orElse(null));
+        if (newRouteEntity == null) {
+            return null;
+        }
+        routeNetwork.putRoute(newRouteEntity);
+        log.debug("updateRoute: updated a route entity: {}", body.getRouteId());
+        return mapper.entityToApi(newRouteEntity);
     }
 
     @Transactional
@@ -177,11 +362,103 @@ public class RouteServiceImpl implements RouteService, RouteTaskService {
 
     private void internalDeleteRoute(int routeId) {
         log.debug("deleteRoute: tries to delete with routeId: {}", routeId);
-        serviceRepoCacheable.findByRouteId(routeId).ifPresent(
-                routeEntity -> {
+        RouteEntity deleted = transactionTemplate.execute(status -> serviceRepoCacheable.findByRouteId(routeId)
+                .map(routeEntity -> {
                     serviceRepoCacheable.delete(routeEntity);
                     producer.routeDeleted(routeEntity);
-                }
-        );
+                    return routeEntity;
+                })
+                .orElse(null));
+        if (deleted != null) {
+            routeNetwork.removeRoute(routeId);
+        }
+    }
+
+    @Override
+    public Flux<BulkItemResult> bulkRoutes(List<Route> body) {
+        log.info("Will load {} routes in chunks of {}", body.size(), bulkChunkSize);
+        return Flux.range(0, (body.size() + bulkChunkSize - 1) / bulkChunkSize)
+                .map(chunk -> body.subList(chunk * bulkChunkSize, Math.min(body.size(), (chunk + 1) * bulkChunkSize)))
+                .concatMap(chunk -> Mono.fromCallable(() -> internalBulkRoutes(chunk)).subscribeOn(jdbcScheduler))
+                .flatMapIterable(results -> results)
+                .log(log.getName(), FINE);
+    }
+
+    // one transaction and one JDBC batch per chunk, a chunk rejected by the database is retried route by route
+    private List<BulkItemResult> internalBulkRoutes(List<Route> chunk) {
+        BulkChunk applied;
+        try {
+            applied = transactionTemplate.execute(status -> applyBulkRoutes(chunk));
+        } catch (DataIntegrityViolationException | OptimisticLockingFailureException e) {
+            if (chunk.size() == 1) {
+                int routeId = chunk.get(0).getRouteId();
+                return List.of(rejected(routeId, e instanceof DataIntegrityViolationException
+                        ? "Duplicate key, Route Id: " + routeId
+                        : e.getMessage()));
+            }
+            log.warn("bulkRoutes: a chunk of {} routes failed, loads them one by one: {}", chunk.size(), e.toString());
+            return chunk.stream()
+                    .flatMap(route -> internalBulkRoutes(List.of(route)).stream())
+                    .toList();
+        }
+        // the caches are bypassed by the batch, so both the old and the new keys are dropped
+        applied.created().forEach(entity -> {
+            serviceRepoCacheable.evict(entity);
+            routeNetwork.putRoute(entity);
+        });
+        applied.updated().forEach((oldEntity, entity) -> {
+            serviceRepoCacheable.evict(oldEntity);
+            serviceRepoCacheable.evict(entity);
+            routeNetwork.putRoute(entity);
+        });
+        log.debug("bulkRoutes: created {}, updated {} of {} routes",
+                applied.created().size(), applied.updated().size(), chunk.size());
+        return applied.results();
+    }
+
+    private BulkChunk applyBulkRoutes(List<Route> chunk) {
+        Map<Integer, RouteEntity> existing = serviceRepoCacheable
+                .findAllByRouteIdIn(chunk.stream().map(Route::getRouteId).toList())
+                .stream()
+                .collect(Collectors.toMap(RouteEntity::getRouteId, Function.identity()));
+        BulkChunk applied = new BulkChunk(new ArrayList<>(chunk.size()), new ArrayList<>(), new LinkedHashMap<>());
+        List<RouteEntity> changed = new ArrayList<>(chunk.size());
+        Set<Integer> routeIds = new HashSet<>();
+        for (Route route : chunk) {
+            int routeId = route.getRouteId();
+            if (routeId < 1) {
+                applied.results().add(rejected(routeId, "Invalid routeId: " + routeId));
+                continue;
+            }
+            if (!routeIds.add(routeId)) {
+                applied.results().add(rejected(routeId, "Duplicate key, Route Id: " + routeId));
+                continue;
+            }
+            RouteEntity entity = existing.get(routeId);
+            if (entity == null) {
+                RouteEntity newEntity = mapper.apiToEntity(route);
+                changed.add(newEntity);
+                applied.created().add(newEntity);
+                applied.results().add(created(routeId));
+                continue;
+            }
+            RouteEntity newRouteEntity = mapper.cloneRouteEntity(entity);
+            BeanUtils.copyProperties(route, newRouteEntity, "routeId", "version");
+            changed.add(newRouteEntity);
+            applied.updated().put(mapper.cloneRouteEntity(entity), newRouteEntity);
+            applied.results().add(updated(routeId));
+        }
+        serviceRepoCacheable.saveAll(changed);
+        applied.created().forEach(producer::routeCreated);
+        applied.updated().keySet().forEach(producer::routeUpdated);
+        return applied;
+    }
+
+    private record RouteKey(int fromStoreId, int toStoreId, RouteRuleType ruleType) {
+    }
+
+    private record BulkChunk(
+            List<BulkItemResult> results, List<RouteEntity> created, Map<RouteEntity, RouteEntity> updated
+    ) {
     }
 }
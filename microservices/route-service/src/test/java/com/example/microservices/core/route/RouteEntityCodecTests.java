@@ -0,0 +1,56 @@
+package com.example.microservices.core.route;
+
+import com.example.microservices.core.route.cache.RouteEntityCodec;
+import com.example.microservices.core.route.persistence.RouteEntity;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static com.example.microservices.core.route.util.RouteEntityHelper.assertEqualsRoute;
+import static com.example.microservices.core.route.util.RouteEntityHelper.buildNew;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteEntityCodecTests {
+
+    private final RouteEntityCodec codec = new RouteEntityCodec();
+
+    @Test
+    void entityRoundTrip() {
+        RouteEntity entity = buildNew(1, 10, 15, "ехай тудой", 200, 20);
+        entity.setId(101);
+        entity.setVersion(3);
+        entity.setCreatedOn(LocalDateTime.of(2024, 3, 1, 10, 15, 30, 123456000));
+
+        RouteEntity decoded = (RouteEntity) codec.deserialize(codec.serialize(entity));
+
+        assertEqualsRoute(entity, decoded);
+        assertEquals(entity.getCreatedOn(), decoded.getCreatedOn());
+        assertNull(decoded.getUpdatedOn());
+    }
+
+    @Test
+    void listRoundTrip() {
+        List<RouteEntity> entities = List.of(
+                buildNew(2, 10, 15, "ехай тудой", 200, 20),
+                buildNew(3, 10, 15, null, 180, 25),
+                buildNew(4, 10, 15, "ехай здеся", -1, Integer.MAX_VALUE)
+        );
+
+        List<?> decoded = (List<?>) codec.deserialize(codec.serialize(entities));
+
+        assertEquals(3, decoded.size());
+        for (int i = 0; i < entities.size(); i++) {
+            assertEqualsRoute(entities.get(i), (RouteEntity) decoded.get(i));
+        }
+        assertTrue(((List<?>) codec.deserialize(codec.serialize(List.of()))).isEmpty());
+    }
+
+    @Test
+    void unknownFormatVersion() {
+        byte[] bytes = codec.serialize(buildNew(5, 50, 15, "ехай", 220, 15));
+        // значение другой версии формата читается как промах кэша
+        bytes[0]++;
+        assertNull(codec.deserialize(bytes));
+    }
+}
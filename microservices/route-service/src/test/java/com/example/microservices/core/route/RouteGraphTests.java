@@ -0,0 +1,155 @@
+package com.example.microservices.core.route;
+
+import com.example.microservices.core.route.graph.RouteNetwork;
+import com.example.microservices.core.route.graph.RoutePath;
+import com.example.microservices.core.route.invariant.RuleRouteSelectMinimalDistance;
+import com.example.microservices.core.route.invariant.RuleRouteSelectMinimalMinutes;
+import com.example.microservices.core.route.persistence.RouteRepository;
+import com.example.mutual.api.core.route.RouteRuleType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static com.example.microservices.core.route.util.RouteEntityHelper.buildNew;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RouteGraphTests {
+
+    private final RuleRouteSelectMinimalDistance minimalDistance = new RuleRouteSelectMinimalDistance();
+    private final RuleRouteSelectMinimalMinutes minimalMinutes = new RuleRouteSelectMinimalMinutes();
+    private final RouteRepository repository = mock(RouteRepository.class);
+    private RouteNetwork network;
+
+    @BeforeEach
+    void setup() {
+        // 10 -> 15 напрямую, 10 -> 20 -> 15 короче по расстоянию, 10 -> 30 -> 40 -> 15 быстрее по времени
+        when(repository.findAll()).thenReturn(List.of(
+                buildNew(1, 10, 15, "прямо", 300, 60),
+                buildNew(2, 10, 20, "налево", 100, 40),
+                buildNew(3, 20, 15, "направо", 100, 40),
+                buildNew(4, 10, 30, "по трассе", 200, 10),
+                buildNew(5, 30, 40, "по трассе", 200, 10),
+                buildNew(6, 40, 15, "по трассе", 200, 10),
+                buildNew(7, 15, 50, "дальше", 10, 1)
+        ));
+        network = new RouteNetwork(repository, 100);
+    }
+
+    @Test
+    void minimalDistanceMultiHop() {
+        Optional<RoutePath> path = minimalDistance.find(network, 10, 15, RouteRuleType.MINIMAL_DISTANCE);
+
+        assertTrue(path.isPresent());
+        assertEquals(200, path.get().getCost());
+        assertArrayEquals(new int[]{2, 3}, path.get().getRouteIds());
+        assertArrayEquals(new int[]{10, 20, 15}, path.get().getStoreIds());
+        assertEquals(80, path.get().getMinutesFromTo());
+    }
+
+    @Test
+    void minimalMinutesMultiHop() {
+        Optional<RoutePath> path = minimalMinutes.find(network, 10, 15, RouteRuleType.MINIMAL_MINUTES);
+
+        assertTrue(path.isPresent());
+        assertEquals(30, path.get().getCost());
+        assertArrayEquals(new int[]{4, 5, 6}, path.get().getRouteIds());
+        assertEquals(600, path.get().getDistanceFromTo());
+    }
+
+    @Test
+    void ruleTypeMismatch() {
+        assertTrue(minimalMinutes.find(network, 10, 15, RouteRuleType.MINIMAL_DISTANCE).isEmpty());
+    }
+
+    @Test
+    void noPath() {
+        // маршруты направленные, обратного пути нет
+        assertTrue(minimalDistance.find(network, 50, 10, RouteRuleType.MINIMAL_DISTANCE).isEmpty());
+        // склада нет в графе
+        assertTrue(minimalDistance.find(network, 10, 99, RouteRuleType.MINIMAL_DISTANCE).isEmpty());
+    }
+
+    @Test
+    void applyRouteDeltas() {
+        assertArrayEquals(new int[]{2, 3}, minimalDistance.find(network, 10, 15, RouteRuleType.MINIMAL_DISTANCE)
+                .orElseThrow().getRouteIds());
+        assertArrayEquals(new int[]{2, 3, 7}, minimalDistance.find(network, 10, 50, RouteRuleType.MINIMAL_DISTANCE)
+                .orElseThrow().getRouteIds());
+
+        // новый короткий путь 10 -> 15 меняет оба закэшированных ответа
+        network.putRoute(buildNew(8, 10, 15, "новая дорога", 150, 100));
+        assertArrayEquals(new int[]{8}, minimalDistance.find(network, 10, 15, RouteRuleType.MINIMAL_DISTANCE)
+                .orElseThrow().getRouteIds());
+        assertArrayEquals(new int[]{8, 7}, minimalDistance.find(network, 10, 50, RouteRuleType.MINIMAL_DISTANCE)
+                .orElseThrow().getRouteIds());
+
+        // удлинили используемый маршрут, вернулись на 10 -> 20 -> 15
+        network.putRoute(buildNew(8, 10, 15, "новая дорога", 500, 100));
+        assertArrayEquals(new int[]{2, 3}, minimalDistance.find(network, 10, 15, RouteRuleType.MINIMAL_DISTANCE)
+                .orElseThrow().getRouteIds());
+
+        // удалили маршрут, остался только прямой
+        network.removeRoute(3);
+        assertArrayEquals(new int[]{1}, minimalDistance.find(network, 10, 15, RouteRuleType.MINIMAL_DISTANCE)
+                .orElseThrow().getRouteIds());
+
+        // граф читается из БД только один раз, дальше живет на изменениях
+        verify(repository, times(1)).findAll();
+    }
+
+    @Test
+    void sameCostDeltaUpdatesTotals() {
+        minimalDistance.find(network, 10, 15, RouteRuleType.MINIMAL_DISTANCE);
+        minimalDistance.find(network, 10, 50, RouteRuleType.MINIMAL_DISTANCE);
+        network.refreshHotPairs(10);
+        assertEquals(80, minimalDistance.find(network, 10, 15, RouteRuleType.MINIMAL_DISTANCE)
+                .orElseThrow().getMinutesFromTo());
+
+        // поменялось только время, стоимость по расстоянию та же, а итоги пути и ячейки новые
+        network.putRoute(buildNew(3, 20, 15, "направо", 100, 70));
+        assertEquals(110, minimalDistance.find(network, 10, 15, RouteRuleType.MINIMAL_DISTANCE)
+                .orElseThrow().getMinutesFromTo());
+        assertEquals(111, minimalDistance.find(network, 10, 50, RouteRuleType.MINIMAL_DISTANCE)
+                .orElseThrow().getMinutesFromTo());
+    }
+
+    @Test
+    void deltaBeforeLoad() {
+        // изменение до загрузки графа оставлено загрузке, она читает таблицу маршрутов позже
+        network.putRoute(buildNew(8, 10, 15, "новая дорога", 150, 100));
+        network.removeRoute(3);
+        verify(repository, never()).findAll();
+
+        assertArrayEquals(new int[]{2, 3}, minimalDistance.find(network, 10, 15, RouteRuleType.MINIMAL_DISTANCE)
+                .orElseThrow().getRouteIds());
+        verify(repository, times(1)).findAll();
+    }
+
+    @Test
+    void hotPairTable() {
+        assertEquals(0, network.hotPairBytes());
+        minimalDistance.find(network, 10, 15, RouteRuleType.MINIMAL_DISTANCE);
+        minimalDistance.find(network, 10, 50, RouteRuleType.MINIMAL_DISTANCE);
+
+        // таблица собирается по запрошенным парам складов
+        assertTrue(network.refreshHotPairs(10) > 0);
+        RoutePath path = minimalDistance.find(network, 10, 15, RouteRuleType.MINIMAL_DISTANCE).orElseThrow();
+        assertArrayEquals(new int[]{2, 3}, path.getRouteIds());
+        assertArrayEquals(new int[]{10, 20, 15}, path.getStoreIds());
+
+        // изменение маршрута делает ячейку неактуальной до следующего пересчета
+        network.removeRoute(3);
+        assertArrayEquals(new int[]{1}, minimalDistance.find(network, 10, 15, RouteRuleType.MINIMAL_DISTANCE)
+                .orElseThrow().getRouteIds());
+        assertArrayEquals(new int[]{1, 7}, minimalDistance.find(network, 10, 50, RouteRuleType.MINIMAL_DISTANCE)
+                .orElseThrow().getRouteIds());
+
+        // без нового спроса таблица пересчитывается по прежним складам
+        network.refreshHotPairs(10);
+        assertArrayEquals(new int[]{1}, minimalDistance.find(network, 10, 15, RouteRuleType.MINIMAL_DISTANCE)
+                .orElseThrow().getRouteIds());
+    }
+}
@@ -5,6 +5,7 @@ import com.example.microservices.core.route.persistence.RouteRepository;
 import com.example.microservices.core.route.services.RouteServiceCacheable;
 import com.example.microservices.core.route.util.ContainersTestBase;
 import com.example.microservices.core.route.util.RouteEntityHelper;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -43,6 +44,9 @@ public class RouteServiceCacheableTest extends ContainersTestBase {
     @Autowired
     private RouteRepository routeRepository;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @BeforeEach
     void setup() {
         routeRepository.deleteAll();
@@ -68,36 +72,6 @@ public class RouteServiceCacheableTest extends ContainersTestBase {
         verify(routeRepository, times(1)).findByRouteId(routeId);
     }
 
-    @Test
-    void testFindByFromStoreIdAndToStoreId(){
-        //
-        final int routeIdToDelete = 2;
-        routeRepository.save(RouteEntityHelper.getEntity(routeIdToDelete));
-        routeRepository.save(RouteEntityHelper.getEntity(3));
-        routeRepository.save(RouteEntityHelper.getEntity(4));
-        routeRepository.save(RouteEntityHelper.getEntity(5));
-        cacheManager.getCache(redisName).clear();
-
-
-        // найти все пути от пункта до пункта. Репо + 1, Сервису + 1
-        assertEquals(3, serviceCacheable.findByFromStoreIdAndToStoreId(10, 15).size());
-        // найти все пути от пункта до пункта. Репо + 0, Сервису + 1
-        assertEquals(3, serviceCacheable.findByFromStoreIdAndToStoreId(10, 15).size());
-
-        // взяли из БД только 1 раз, второй раз из кэш
-        verify(routeRepository, times(1)).findByFromStoreIdAndToStoreId(10, 15);
-
-        // удалим одну запись из БД, это очистит кэш. Обращаемся к сервису но не к ф-ии удаления, а это не считаем
-        RouteEntity entity = serviceCacheable.findByRouteId(routeIdToDelete).get();
-        serviceCacheable.delete(entity);
-
-        // снова вызовем список путей и т.к. кэш пуст, снова обратимся к Репо +1 и путей на один меньше
-        assertEquals(2, serviceCacheable.findByFromStoreIdAndToStoreId(10, 15).size());
-
-        // кэш очищался по этому обращались к БД 2 раза
-        verify(routeRepository, times(2)).findByFromStoreIdAndToStoreId(10, 15);
-    }
-
     @Test()
     void testDelete(){
         final int routeId = 6;
@@ -144,4 +118,35 @@ public class RouteServiceCacheableTest extends ContainersTestBase {
         // должно быть 1 обращение к БД тк при обновлении кэш обновился
         verify(routeRepository, times(1)).findByRouteId(routeId);
     }
+
+    @Test
+    void testLocalLevel() {
+        final int routeId = 8;
+        routeRepository.save(RouteEntityHelper.getEntity(routeId));
+        // счетчики общие для всех тестов контекста, проверяем прирост
+        double localHits = gets("l1", "hit");
+        double remoteHits = gets("l2", "hit");
+
+        // первое обращение идет в БД и кладет сущность в оба уровня кэша
+        RouteEntity entity = serviceCacheable.findByRouteId(routeId).get();
+        // второе обращение отдает локальный уровень
+        assertTrue(serviceCacheable.findByRouteId(routeId).isPresent());
+        assertEquals(localHits + 1, gets("l1", "hit"));
+        assertEquals(remoteHits, gets("l2", "hit"));
+
+        // событие route-revise чистит только локальный уровень, сущность берется из Redis
+        serviceCacheable.evictLocal(entity);
+        assertTrue(serviceCacheable.findByRouteId(routeId).isPresent());
+        assertEquals(remoteHits + 1, gets("l2", "hit"));
+
+        // в БД обращались только один раз
+        verify(routeRepository, times(1)).findByRouteId(routeId);
+    }
+
+    private double gets(String level, String result) {
+        return meterRegistry.get("route.cache.gets")
+                .tags("cache", "RouteService::findByRouteId", "level", level, "result", result)
+                .counter()
+                .count();
+    }
 }
@@ -8,7 +8,7 @@ import com.example.microservices.core.route.util.ContainersTestBase;
 import com.example.microservices.core.route.util.ReaderProducedMessages;
 import com.example.mutual.api.core.route.Route;
 import com.example.mutual.api.event.Event;
-import com.example.mutual.api.exceptions.InvalidInputException;
+import com.example.mutual.util.outbox.OutboxRelay;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -19,14 +19,20 @@ import org.springframework.cloud.stream.binder.test.OutputDestination;
 import org.springframework.cloud.stream.binder.test.TestChannelBinderConfiguration;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpStatus;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.time.Duration;
 import java.util.Optional;
-import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static com.example.mutual.api.event.Event.Type.*;
 import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.matchesPattern;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
@@ -37,7 +43,7 @@ import static org.testcontainers.shaded.org.awaitility.Awaitility.await;
 @Slf4j
 @SpringBootTest(
         webEnvironment = RANDOM_PORT,
-        properties = {"spring.main.allow-bean-definition-overriding=true"})
+        properties = {"spring.main.allow-bean-definition-overriding=true", "app.scan.page-size=2"})
 @Import({TestChannelBinderConfiguration.class, ConsumersConfig.class})
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
 class RouteServiceTest extends ContainersTestBase {
@@ -48,21 +54,26 @@ class RouteServiceTest extends ContainersTestBase {
     @Autowired
     private RouteRepository repository;
     private final ReaderProducedMessages readerRouteChanges;
+    private final ReaderProducedMessages readerDeadLetter;
+    private final OutputDestination target;
     private final RouteMapper mapper;
 
     @Autowired
-    public RouteServiceTest(OutputDestination target, RouteMapper mapper) {
-        this.readerRouteChanges = new ReaderProducedMessages(target, "route-revise");
+    public RouteServiceTest(OutputDestination target, OutboxRelay outboxRelay, RouteMapper mapper) {
+        this.readerRouteChanges = new ReaderProducedMessages(target, "route-revise", outboxRelay::relay);
+        this.readerDeadLetter = new ReaderProducedMessages(target, "error.route-crud.routeCrudGroup");
+        this.target = target;
         this.mapper = mapper;
     }
 
     @Autowired
-    private Consumer<Event<Integer, Route>> consumerCrudFunc;
+    private Function<Flux<Message<Event<Integer, Route>>>, Mono<Void>> consumerCrudFunc;
 
     @BeforeEach
     void setupDb() {
         repository.deleteAll();
         readerRouteChanges.purgeMessages();
+        readerDeadLetter.purgeMessages();
     }
 
     @Test
@@ -81,6 +92,45 @@ class RouteServiceTest extends ContainersTestBase {
                 .jsonPath("$.routeId").isEqualTo(routeId);
     }
 
+    @Test
+    void getRoutesByIds() {
+        sendCreateRouteEvent(1);
+        sendCreateRouteEvent(2);
+        sendCreateRouteEvent(3);
+
+        // id 4 отсутствует и пропускается, повторный id 1 читается один раз
+        client.get()
+                .uri("/routes?ids=1,3,4,1")
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[*].routeId").value(containsInAnyOrder(1, 3));
+
+        client.get()
+                .uri("/routes?ids=1,-1")
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(UNPROCESSABLE_ENTITY);
+    }
+
+    @Test
+    void scanRoutes() {
+        for (int routeId = 1; routeId <= 5; routeId++) {
+            sendCreateRouteEvent(routeId);
+        }
+
+        // страницы по две записи, скан продолжается после routeId 1
+        client.get()
+                .uri("/routes/scan?afterId=1")
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[*].routeId").value(contains(2, 3, 4, 5));
+    }
+
     @Test
     void getRouteNotFound() {
         int routeIdNotFound = 13;
@@ -113,12 +163,8 @@ class RouteServiceTest extends ContainersTestBase {
         sendCreateRouteEvent(routeId);
         assertTrue(repository.findByRouteId(routeId).isPresent());
         // и пытаемся создать сущность с тем же айди
-        InvalidInputException thrown = assertThrows(
-                InvalidInputException.class,
-                () -> sendCreateRouteEvent(routeId),
-                "Expected an InvalidInputException here!"
-        );
-        assertEquals("Duplicate key, Route Id: " + routeId, thrown.getMessage());
+        sendCreateRouteEvent(routeId);
+        assertDeadLetter("Duplicate key, Route Id: " + routeId);
     }
 
     @Test
@@ -182,16 +228,23 @@ class RouteServiceTest extends ContainersTestBase {
     private void sendCreateRouteEvent(int routeId) {
         Route route = new Route(routeId, 10, 11, "ехай прямо и на право", 100, 10);
         Event<Integer, Route> event = new Event<>(CREATE, routeId, route);
-        consumerCrudFunc.accept(event);
+        consumerCrudFunc.apply(Flux.just(MessageBuilder.withPayload(event).build())).block();
     }
 
     private void sendUpdateRouteEvent(Route route) {
         Event<Integer, Route> event = new Event<>(UPDATE, route.getRouteId(), route);
-        consumerCrudFunc.accept(event);
+        consumerCrudFunc.apply(Flux.just(MessageBuilder.withPayload(event).build())).block();
     }
 
     private void sendDeleteRouteEvent(int routeId) {
         Event<Integer, Route> event = new Event<>(DELETE, routeId, null);
-        consumerCrudFunc.accept(event);
+        consumerCrudFunc.apply(Flux.just(MessageBuilder.withPayload(event).build())).block();
+    }
+
+    // ошибочное событие не роняет поток событий, а уходит в DLQ с текстом ошибки в заголовке
+    private void assertDeadLetter(String expectedMessage) {
+        Message<byte[]> message = target.receive(0, "error.route-crud.routeCrudGroup");
+        assertNotNull(message, "Expected a dead letter here!");
+        assertEquals(expectedMessage, message.getHeaders().get("x-exception-message"));
     }
 }
@@ -25,6 +25,7 @@ import java.util.List;
 import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 import static org.springframework.transaction.annotation.Propagation.NOT_SUPPORTED;
 
@@ -50,7 +51,7 @@ class RouteTaskServiceTest extends ContainersTestBase {
     }
 
     @Autowired
-    private Consumer<EventTask<Integer, RouteTaskPayload>> consumerTask;
+    private Consumer<List<EventTask<Integer, RouteTaskPayload>>> consumerTask;
 
     @Test
     void updateRoute() throws JsonProcessingException {
@@ -94,9 +95,45 @@ class RouteTaskServiceTest extends ContainersTestBase {
         assertEquals(MINIMAL_DISTANCE, payload.getRoute().getRouteId());
     }
 
+    @Test
+    void findRoutesBatch() throws JsonProcessingException {
+        repository.save(RouteEntityHelper.getEntity(2));
+        repository.save(RouteEntityHelper.getEntity(3));
+        repository.save(RouteEntityHelper.getEntity(4));
+        readerRouteFound.purgeMessages();
+
+        // пачка задач: два заказа с одинаковым маршрутом, один по времени и один без пути
+        consumerTask.accept(List.of(
+                findRouteEvent(1, 10, RouteRuleType.MINIMAL_DISTANCE),
+                findRouteEvent(2, 10, RouteRuleType.MINIMAL_DISTANCE),
+                findRouteEvent(3, 10, RouteRuleType.MINIMAL_MINUTES),
+                findRouteEvent(4, 99, RouteRuleType.MINIMAL_MINUTES)
+        ));
+
+        // ответы для найденных путей в порядке задач, затем задача без пути
+        List<String> messages = readerRouteFound.getMessages();
+        assertEquals(4, messages.size());
+        int[] expectedRouteIds = {3, 3, 4};
+        for (int i = 0; i < expectedRouteIds.length; i++) {
+            EventTask<Integer, RouteTaskPayload> eventTask = objectMapper.readValue(messages.get(i), new TypeReference<>() {
+            });
+            assertEquals(EventTask.Type.ROUTE_FOUND, eventTask.getEventType());
+            assertEquals(i + 1, eventTask.getData().getOrderId());
+            assertEquals(expectedRouteIds[i], eventTask.getData().getRoute().getRouteId());
+        }
+        EventTask<Integer, RouteTaskPayload> notFound = objectMapper.readValue(messages.get(3), new TypeReference<>() {
+        });
+        assertEquals(EventTask.Type.ROUTE_NOT_FOUND, notFound.getEventType());
+        assertEquals(4, notFound.getData().getOrderId());
+        assertNull(notFound.getData().getRoute());
+    }
+
     private void sendFindRouteEvent(int orderId, RouteRuleType ruleType) {
-        RouteTaskPayload payload = new RouteTaskPayload(orderId, 10, 15, null, ruleType);
-        EventTask<Integer, RouteTaskPayload> event = new EventTask<>(EventTask.Type.FIND_ROUTE, orderId, payload);
-        consumerTask.accept(event);
+        consumerTask.accept(List.of(findRouteEvent(orderId, 10, ruleType)));
+    }
+
+    private EventTask<Integer, RouteTaskPayload> findRouteEvent(int orderId, int fromStoreId, RouteRuleType ruleType) {
+        RouteTaskPayload payload = new RouteTaskPayload(orderId, fromStoreId, 15, null, ruleType);
+        return new EventTask<>(EventTask.Type.FIND_ROUTE, orderId, payload);
     }
 }
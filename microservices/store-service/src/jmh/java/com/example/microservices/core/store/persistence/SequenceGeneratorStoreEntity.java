@@ -0,0 +1,52 @@
+package com.example.microservices.core.store.persistence;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * {@link StoreEntity} with the id mapping it had before PooledSequenceGenerator: the JPA sequence
+ * generator, which Hibernate 6 already runs with the pooled optimizer.
+ */
+@Entity
+@Table(name = "stores_before")
+public class SequenceGeneratorStoreEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "store_before_seq")
+    @SequenceGenerator(name = "store_before_seq", allocationSize = 50)
+    private int id;
+    @Version
+    private int version;
+
+    @CreationTimestamp
+    @Column(name = "created_on", updatable = false)
+    private LocalDateTime createdOn;
+
+    @UpdateTimestamp
+    @Column(name = "updated_on")
+    private LocalDateTime updatedOn;
+
+    private int storeId;
+    private String location;
+    private int capacity;
+    private int usedCapacity;
+
+    protected SequenceGeneratorStoreEntity() {
+    }
+
+    public SequenceGeneratorStoreEntity(int storeId, String location, int capacity, int usedCapacity) {
+        this.storeId = storeId;
+        this.location = location;
+        this.capacity = capacity;
+        this.usedCapacity = usedCapacity;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.microservices.core.store.persistence;
+
+import com.example.mutual.util.persistence.PooledSequenceGenerator;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * Store inserts per second under a sustained stream of create events, persisted by Hibernate with the
+ * JDBC settings of config-repo/application.yml:
+ * <ul>
+ * <li>{@code mapping} - {@code sequenceGenerator} is the id mapping before PooledSequenceGenerator
+ * ({@link SequenceGeneratorStoreEntity}), {@code pooledSequenceGenerator} is {@link StoreEntity}.
+ * Both take one nextval per 50 ids</li>
+ * <li>{@code eventsPerTransaction} - 1 is createStore, 50 is a chunk of the bulk load sent as JDBC batches</li>
+ * </ul>
+ * Needs Docker for the PostgreSQL container. Run: ./gradlew :microservices:store-service:jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(StoreInsertBenchmark.EVENTS)
+public class StoreInsertBenchmark {
+    static final int EVENTS = 1000;
+
+    @Param({"sequenceGenerator", "pooledSequenceGenerator"})
+    public String mapping;
+
+    @Param({"1", "50"})
+    public int eventsPerTransaction;
+
+    private PostgreSQLContainer<?> db;
+    private SessionFactory sessionFactory;
+    private IntFunction<Object> newStore;
+    private int storeId;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        db = new PostgreSQLContainer<>("postgres:11.22-alpine3.19");
+        db.start();
+        sessionFactory = new Configuration()
+                .addAnnotatedClass(StoreEntity.class)
+                .addAnnotatedClass(SequenceGeneratorStoreEntity.class)
+                .setProperty(AvailableSettings.JAKARTA_JDBC_URL, db.getJdbcUrl())
+                .setProperty(AvailableSettings.JAKARTA_JDBC_USER, db.getUsername())
+                .setProperty(AvailableSettings.JAKARTA_JDBC_PASSWORD, db.getPassword())
+                // handed to the driver, as spring.datasource.hikari.data-source-properties does
+                .setProperty("hibernate.connection.reWriteBatchedInserts", "true")
+                .setProperty(AvailableSettings.HBM2DDL_AUTO, "create")
+                .setProperty(AvailableSettings.STATEMENT_BATCH_SIZE, "50")
+                .setProperty(AvailableSettings.ORDER_INSERTS, "true")
+                .setProperty(PooledSequenceGenerator.ALLOCATION_SIZE, "50")
+                .buildSessionFactory();
+        newStore = "sequenceGenerator".equals(mapping)
+                ? id -> new SequenceGeneratorStoreEntity(id, location(id), 1000, 0)
+                : id -> new StoreEntity(id, location(id), 1000, 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionFactory.close();
+        db.stop();
+    }
+
+    @Benchmark
+    public void createEvents() {
+        for (int event = 0; event < EVENTS; event += eventsPerTransaction) {
+            int events = Math.min(eventsPerTransaction, EVENTS - event);
+            sessionFactory.inTransaction(session -> {
+                for (int i = 0; i < events; i++) {
+                    session.persist(newStore.apply(++storeId));
+                }
+            });
+        }
+    }
+
+    private static String location(int storeId) {
+        return "dom " + storeId + " ul Centralnaya, gorod Minsk, Minsk region";
+    }
+}
@@ -1,59 +1,158 @@
 package com.example.microservices.core.store.broker;
 
+import com.example.microservices.core.store.capacity.CapacityReservations;
+import com.example.microservices.core.store.persistence.StoreEntity;
 import com.example.mutual.api.core.store.Store;
 import com.example.mutual.api.core.store.StoreService;
 import com.example.mutual.api.event.Event;
 import com.example.mutual.api.exceptions.EventProcessingException;
+import com.example.mutual.util.cache.ReadThroughCache;
+import com.example.mutual.util.event.KeyOrderedExecutor;
+import com.example.mutual.util.event.RecordPosition;
+import com.example.mutual.util.outbox.Outbox;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.stream.function.StreamBridge;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Slf4j
 @Configuration
 public class ConsumersConfig {
 
+    private static final String DEAD_LETTER_BINDING = "consumerCrudDlq-out-0";
+
     private final StoreService storeService;
+    private final StreamBridge streamBridge;
+    private final ReadThroughCache<Integer, Store> cache;
+    private final CapacityReservations capacityReservations;
+    private final Outbox outbox;
+    private final KeyOrderedExecutor executor;
 
     @Autowired
-    public ConsumersConfig(StoreService storeService) {
+    public ConsumersConfig(
+            StoreService storeService,
+            StreamBridge streamBridge,
+            ReadThroughCache<Integer, Store> cache,
+            CapacityReservations capacityReservations,
+            Outbox outbox,
+            @Value("${app.consumer.concurrency:4}") int concurrency,
+            @Value("${app.consumer.max-in-flight:256}") int maxInFlight
+    ) {
         this.storeService = storeService;
+        this.streamBridge = streamBridge;
+        this.cache = cache;
+        this.capacityReservations = capacityReservations;
+        this.outbox = outbox;
+        this.executor = new KeyOrderedExecutor(concurrency, maxInFlight);
     }
 
+    /**
+     * Events of one store id share a lane and are applied one after another, lanes run concurrently.
+     * A failed event goes to the dead letter topic, the stream itself keeps going. Offsets are
+     * acknowledged only up to the oldest event still in progress, so a restart never skips one.
+     */
     @Bean
-    public Consumer<Event<Integer, Store>> consumerCrud() {
-        return event -> {
-            log.info("Process message created at {}...", event.getEventCreatedAt());
-            Store store;
-
-            switch (event.getEventType()) {
-
-                case CREATE:
-                    store = event.getData();
-                    log.info("Create store with ID: {}", store.getStoreId());
-                    storeService.createStore(store).block();
-                    break;
-
-                case UPDATE:
-                    store = event.getData();
-                    log.info("Update store with storeID: {}", store.getStoreId());
-                    storeService.updateStore(store).block();
-                    break;
-
-                case DELETE:
-                    log.info("Delete store with storeID: {}", event.getKey());
-                    storeService.deleteStore(event.getKey()).block();
-                    break;
-
-                default:
-                    String errorMessage = "Incorrect event type: " + event.getEventType() + ", expected a CREATE or DELETE event";
-                    log.warn(errorMessage);
-                    throw new EventProcessingException(errorMessage);
-            }
+    public Function<Flux<Message<Event<Integer, Store>>>, Mono<Void>> consumerCrud() {
+        return messages -> executor.execute(
+                messages,
+                message -> message.getPayload().getKey(),
+                ConsumersConfig::position,
+                message -> processCrud(message.getPayload())
+        );
+    }
+
+    // the acknowledgment header is present with ackMode MANUAL only
+    private static RecordPosition position(Message<?> message) {
+        MessageHeaders headers = message.getHeaders();
+        Acknowledgment acknowledgment = headers.get(KafkaHeaders.ACKNOWLEDGMENT, Acknowledgment.class);
+        if (acknowledgment == null) {
+            return null;
+        }
+        return new RecordPosition(
+                headers.get(KafkaHeaders.RECEIVED_PARTITION, Integer.class),
+                headers.get(KafkaHeaders.OFFSET, Long.class),
+                acknowledgment::acknowledge
+        );
+    }
+
+    private Mono<Void> processCrud(Event<Integer, Store> event) {
+        return Mono.defer(() -> applyCrud(event))
+                .doOnSuccess(result -> log.info("Message processing done!"))
+                .onErrorResume(error -> deadLetter(event, error))
+                .then();
+    }
+
+    private Mono<?> applyCrud(Event<Integer, Store> event) {
+        log.info("Process message {} created at {}...", event.getEventId(), event.getEventCreatedAt());
+        Store store;
+
+        switch (event.getEventType()) {
+
+            case CREATE:
+                store = event.getData();
+                log.info("Create store with ID: {}", store.getStoreId());
+                return storeService.createStore(store);
 
-            log.info("Message processing done!");
+            case UPDATE:
+                store = event.getData();
+                log.info("Update store with storeID: {}", store.getStoreId());
+                return storeService.updateStore(store);
+
+            case DELETE:
+                log.info("Delete store with storeID: {}", event.getKey());
+                return storeService.deleteStore(event.getKey());
+
+            default:
+                String errorMessage = "Incorrect event type: " + event.getEventType() + ", expected a CREATE or DELETE event";
+                log.warn(errorMessage);
+                throw new EventProcessingException(errorMessage);
+        }
+    }
+
+    private Mono<Void> deadLetter(Event<Integer, Store> event, Throwable error) {
+        log.error("Failed to process {} for storeID: {}, sent to the dead letter topic: {}",
+                event.getEventType(), event.getKey(), error.getMessage());
+        streamBridge.send(DEAD_LETTER_BINDING, MessageBuilder.withPayload(event)
+                .setHeader("x-exception-message", String.valueOf(error.getMessage()))
+                .build());
+        return Mono.empty();
+    }
+
+    /**
+     * Every instance receives the revise events of its own topic (no consumer group) and drops the store
+     * from its read cache and its capacity counter, the row has been changed by another instance.
+     * The events of this instance are skipped: it has dropped the store already after the commit,
+     * and its own flushes must not evict the counters they come from.
+     */
+    @Bean
+    public Consumer<Message<Event<Integer, StoreEntity>>> consumerRevise() {
+        return message -> {
+            Event<Integer, StoreEntity> event = message.getPayload();
+            if (outbox.origin().equals(origin(message))) {
+                return;
+            }
+            log.debug("Invalidate the cached store on revise {} for storeID: {}", event.getEventType(), event.getKey());
+            capacityReservations.evict(event.getKey());
+            cache.invalidate(event.getKey());
         };
     }
+
+    // a header the Kafka header mapper does not know the type of comes as raw bytes
+    private static String origin(Message<?> message) {
+        Object origin = message.getHeaders().get(Outbox.ORIGIN_HEADER);
+        return origin instanceof byte[] bytes ? new String(bytes, StandardCharsets.UTF_8) : (String) origin;
+    }
 }
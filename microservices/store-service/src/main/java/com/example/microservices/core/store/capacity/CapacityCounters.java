@@ -0,0 +1,294 @@
+package com.example.microservices.core.store.capacity;
+
+import com.example.microservices.core.store.broker.ProducerRevise;
+import com.example.microservices.core.store.persistence.StoreEntity;
+import com.example.microservices.core.store.persistence.StoreRepository;
+import com.example.mutual.api.core.store.Store;
+import com.example.mutual.api.core.store.StoreCapacity;
+import com.example.mutual.api.exceptions.InvalidInputException;
+import com.example.mutual.api.exceptions.NotFoundException;
+import com.example.mutual.util.cache.ReadThroughCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Capacity reservations against in-memory counters. A reservation is one compare-and-set of the counter
+ * of the store, without a database round trip and without optimistic locking, so a hot store takes
+ * reservations at the rate of the CPU. The used capacity is written behind: a flush adds the units
+ * reserved since the previous flush to the rows of the changed stores, one JDBC batch for all of them.
+ * The written stores go to the outbox as revise events of the same transaction and are dropped from
+ * the read cache after it, so no instance keeps serving the used capacity of before the write.
+ * The flush keeps the used capacity of the row between 0 and its capacity: a row changed behind
+ * the counter may reject the units, then the counter is dropped and loaded anew from the row,
+ * and the dropped units are logged as an error and counted in store.capacity.flushes.
+ * <p>
+ * The counters belong to the instance, the reservations of a store must come to one instance. A store
+ * changed by updateStore or deleteStore is evicted before and after the change, see {@link #evict(int)},
+ * and on the store-revise events of the other instances.
+ * A counter being loaded or evicted is busy: the changes of the store wait on its latch, released by
+ * the thread doing the load or the eviction. A change may wait or load, it runs on the jdbcScheduler.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.capacity.mode", havingValue = "memory", matchIfMissing = true)
+public class CapacityCounters implements CapacityReservations {
+    private static final String FLUSH = "update stores set used_capacity = used_capacity + ?,"
+            + " version = version + 1, updated_on = now()"
+            + " where store_id = ? and used_capacity + ? between 0 and capacity";
+
+    private final StoreRepository repository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ProducerRevise producer;
+    private final ReadThroughCache<Integer, Store> cache;
+    private final Map<Integer, AtomicReference<State>> counters = new ConcurrentHashMap<>();
+    private final Set<Integer> dirty = ConcurrentHashMap.newKeySet();
+    private final Counter reserved;
+    private final Counter rejected;
+    private final Counter flushRejected;
+
+    public CapacityCounters(
+            StoreRepository repository,
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            ProducerRevise producer,
+            ReadThroughCache<Integer, Store> cache,
+            MeterRegistry registry
+    ) {
+        this.repository = repository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.producer = producer;
+        this.cache = cache;
+        this.reserved = Counter.builder("store.capacity.changes").tag("outcome", "applied").register(registry);
+        this.rejected = Counter.builder("store.capacity.changes").tag("outcome", "rejected").register(registry);
+        this.flushRejected = Counter.builder("store.capacity.flushes").tag("outcome", "rejected").register(registry);
+    }
+
+    // the first change of a store loads its counter from the database
+    @Override
+    public StoreCapacity change(int storeId, int units) {
+        while (true) {
+            AtomicReference<State> counter = counters.get(storeId);
+            if (counter == null) {
+                load(storeId);
+                continue;
+            }
+            State state = counter.get();
+            if (state.busy() != null) {
+                await(state.busy());
+                continue;
+            }
+            int used = state.used() + units;
+            if (used > state.capacity() || used < 0) {
+                rejected.increment();
+                throw new InvalidInputException(units > 0
+                        ? "Not enough capacity, Store Id: " + storeId
+                        : "Released more than used, Store Id: " + storeId);
+            }
+            State next = new State(state.capacity(), used, state.flushed());
+            if (counter.compareAndSet(state, next)) {
+                dirty.add(storeId);
+                reserved.increment();
+                return new StoreCapacity(storeId, next.capacity(), next.used());
+            }
+        }
+    }
+
+    /**
+     * Writes the pending units of the store and drops its counter. The reservations coming meanwhile
+     * wait for the eviction and load the counter again, with the row as it is at that moment.
+     */
+    @Override
+    public synchronized void evict(int storeId) {
+        while (true) {
+            AtomicReference<State> counter = counters.get(storeId);
+            if (counter == null) {
+                return;
+            }
+            State last = counter.get();
+            if (last.busy() != null) {
+                // being loaded, the loaded counter is evicted
+                await(last.busy());
+                continue;
+            }
+            State evicting = State.latched();
+            if (!counter.compareAndSet(last, evicting)) {
+                continue;
+            }
+            try {
+                int units = last.used() - last.flushed();
+                if (!write(List.of(new Pending(storeId, units))).isEmpty()) {
+                    rejectedFlush(storeId, units);
+                }
+                counters.remove(storeId, counter);
+            } catch (RuntimeException e) {
+                counter.set(last);
+                throw e;
+            } finally {
+                evicting.busy().countDown();
+            }
+            return;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.capacity.flush-interval-ms:100}")
+    public synchronized void flush() {
+        List<Pending> pending = new ArrayList<>();
+        List<State> flushed = new ArrayList<>();
+        for (Integer storeId : dirty) {
+            dirty.remove(storeId);
+            AtomicReference<State> counter = counters.get(storeId);
+            State state = counter == null ? null : counter.get();
+            if (state != null && state.busy() == null && state.used() != state.flushed()) {
+                pending.add(new Pending(storeId, state.used() - state.flushed()));
+                flushed.add(state);
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        Set<Integer> rejectedIds;
+        try {
+            rejectedIds = write(pending);
+        } catch (RuntimeException e) {
+            log.warn("Failed to flush the capacity of {} stores, will retry: {}", pending.size(), e.toString());
+            pending.forEach(store -> dirty.add(store.storeId()));
+            return;
+        }
+        for (int i = 0; i < pending.size(); i++) {
+            int storeId = pending.get(i).storeId();
+            if (rejectedIds.contains(storeId)) {
+                drop(storeId);
+            } else {
+                markFlushed(storeId, flushed.get(i).used());
+            }
+        }
+        log.debug("Flushed the capacity of {} stores", pending.size() - rejectedIds.size());
+    }
+
+    // the row is read outside the map, the other changes of the store wait for the loading counter
+    private void load(int storeId) {
+        State loading = State.latched();
+        AtomicReference<State> counter = new AtomicReference<>(loading);
+        if (counters.putIfAbsent(storeId, counter) != null) {
+            return;
+        }
+        try {
+            StoreEntity entity = repository.findByStoreId(storeId)
+                    .orElseThrow(() -> new NotFoundException("There is no Store with storeId: " + storeId));
+            counter.set(new State(entity.getCapacity(), entity.getUsedCapacity(), entity.getUsedCapacity()));
+        } catch (RuntimeException e) {
+            counters.remove(storeId, counter);
+            throw e;
+        } finally {
+            loading.busy().countDown();
+        }
+    }
+
+    private static void await(CountDownLatch busy) {
+        try {
+            busy.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while a capacity counter is loaded or evicted", e);
+        }
+    }
+
+    // returns the stores whose row rejected the units, the others are written and revised
+    private Set<Integer> write(List<Pending> pending) {
+        List<Pending> changed = pending.stream().filter(store -> store.units() != 0).toList();
+        if (changed.isEmpty()) {
+            return Set.of();
+        }
+        Set<Integer> rejectedIds = new HashSet<>();
+        List<Integer> storeIds = new ArrayList<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            int[][] counts = jdbcTemplate.batchUpdate(FLUSH, changed, changed.size(), (statement, store) -> {
+                statement.setInt(1, store.units());
+                statement.setInt(2, store.storeId());
+                statement.setInt(3, store.units());
+            });
+            for (int i = 0; i < changed.size(); i++) {
+                int storeId = changed.get(i).storeId();
+                if (counts[0][i] == 0) {
+                    rejectedIds.add(storeId);
+                } else {
+                    storeIds.add(storeId);
+                }
+            }
+            if (!storeIds.isEmpty()) {
+                repository.findByStoreIdIn(storeIds).forEach(producer::storeUpdated);
+            }
+        });
+        cache.invalidateAll(storeIds);
+        return rejectedIds;
+    }
+
+    // the counter went past the row, its units are dropped and the next change loads the row
+    private void drop(int storeId) {
+        AtomicReference<State> counter = counters.get(storeId);
+        if (counter == null) {
+            return;
+        }
+        State dropping = State.latched();
+        State last = counter.getAndSet(dropping);
+        try {
+            rejectedFlush(storeId, last.used() - last.flushed());
+            counters.remove(storeId, counter);
+        } finally {
+            dropping.busy().countDown();
+        }
+    }
+
+    private void rejectedFlush(int storeId, int units) {
+        flushRejected.increment();
+        log.error("The row of the store rejected the flush, dropped {} units reserved in memory, Store Id: {}",
+                units, storeId);
+    }
+
+    // only the flush moves the flushed mark, the reservations move the used capacity past it
+    private void markFlushed(int storeId, int used) {
+        AtomicReference<State> counter = counters.get(storeId);
+        if (counter == null) {
+            return;
+        }
+        State state;
+        do {
+            state = counter.get();
+            if (state.busy() != null) {
+                return;
+            }
+        } while (!counter.compareAndSet(state, new State(state.capacity(), state.used(), used)));
+    }
+
+    // busy is the latch of a counter being loaded or evicted, null when the counter can be changed
+    private record State(int capacity, int used, int flushed, CountDownLatch busy) {
+
+        State(int capacity, int used, int flushed) {
+            this(capacity, used, flushed, null);
+        }
+
+        static State latched() {
+            return new State(0, 0, 0, new CountDownLatch(1));
+        }
+    }
+
+    private record Pending(int storeId, int units) {
+    }
+}
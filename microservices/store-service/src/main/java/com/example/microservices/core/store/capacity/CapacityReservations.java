@@ -0,0 +1,20 @@
+package com.example.microservices.core.store.capacity;
+
+import com.example.mutual.api.core.store.StoreCapacity;
+
+/**
+ * Reservations of the store capacity, selected by {@code app.capacity.mode}: {@code memory} counts them
+ * in {@link CapacityCounters}, {@code sql} applies each of them by {@link UsedCapacityStatement}.
+ */
+public interface CapacityReservations {
+
+    /**
+     * Reserves or, with a negative number of units, releases the capacity of the store.
+     */
+    StoreCapacity change(int storeId, int units);
+
+    /**
+     * Writes the pending changes of the store and forgets its state, before and after a change of the row.
+     */
+    void evict(int storeId);
+}
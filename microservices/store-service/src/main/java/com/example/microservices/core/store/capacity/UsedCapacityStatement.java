@@ -0,0 +1,93 @@
+package com.example.microservices.core.store.capacity;
+
+import com.example.microservices.core.store.broker.ProducerRevise;
+import com.example.microservices.core.store.invariant.RuleStoreUpdate;
+import com.example.microservices.core.store.persistence.StoreEntity;
+import com.example.mutual.api.core.store.StoreCapacity;
+import com.example.mutual.api.exceptions.InvalidInputException;
+import com.example.mutual.api.exceptions.NotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Changes the used capacity of a store by one conditional UPDATE. The update rules are a part of its
+ * where clause, so the row is not read before the write, there is no version check and no retry:
+ * a missing store or a broken rule just updates no row. Unlike {@link CapacityCounters} the database
+ * is the only state, so any number of instances may take the reservations of a store.
+ * The changed row is returned by the UPDATE and goes to the outbox as a revise event of the same transaction.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.capacity.mode", havingValue = "sql")
+public class UsedCapacityStatement implements CapacityReservations {
+    private static final String EXISTS = "select count(*) from stores where store_id = :storeId";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ProducerRevise producer;
+    private final String update;
+
+    public UsedCapacityStatement(
+            NamedParameterJdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            ProducerRevise producer,
+            List<RuleStoreUpdate> rulesUpdate
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.producer = producer;
+        this.update = "update stores set used_capacity = used_capacity + :delta,"
+                + " version = version + 1, updated_on = now()"
+                + " where store_id = :storeId and used_capacity + :delta >= 0"
+                + rulesUpdate.stream()
+                .map(RuleStoreUpdate::usedCapacityPredicate)
+                .filter(Objects::nonNull)
+                .map(predicate -> " and " + predicate)
+                .collect(Collectors.joining())
+                + " returning id, version, created_on, updated_on, store_id, location, capacity, used_capacity";
+        log.info("Changes the used capacity by: {}", update);
+    }
+
+    @Override
+    public StoreCapacity change(int storeId, int units) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("storeId", storeId)
+                .addValue("delta", units);
+        StoreEntity changed = transactionTemplate.execute(status -> {
+            List<StoreEntity> entities = jdbcTemplate.query(update, parameters, (resultSet, rowNum) -> {
+                StoreEntity entity = new StoreEntity(
+                        resultSet.getInt(5), resultSet.getString(6), resultSet.getInt(7), resultSet.getInt(8));
+                entity.setId(resultSet.getInt(1));
+                entity.setVersion(resultSet.getInt(2));
+                entity.setCreatedOn(resultSet.getTimestamp(3).toLocalDateTime());
+                entity.setUpdatedOn(resultSet.getTimestamp(4).toLocalDateTime());
+                return entity;
+            });
+            entities.forEach(producer::storeUpdated);
+            return entities.isEmpty() ? null : entities.get(0);
+        });
+        if (changed != null) {
+            return new StoreCapacity(storeId, changed.getCapacity(), changed.getUsedCapacity());
+        }
+        // no row is updated, only a rejected change reads the store
+        if (jdbcTemplate.queryForObject(EXISTS, parameters, Integer.class) == 0) {
+            throw new NotFoundException("There is no Store with storeId: " + storeId);
+        }
+        throw new InvalidInputException(units > 0
+                ? "Not enough capacity, Store Id: " + storeId
+                : "Released more than used, Store Id: " + storeId);
+    }
+
+    // nothing is kept between the changes
+    @Override
+    public void evict(int storeId) {
+    }
+}
@@ -5,4 +5,12 @@ import com.example.microservices.core.store.persistence.StoreEntity;
 
 public interface RuleStoreUpdate {
     boolean apply(StoreEntity old, StoreEntity anew);
+
+    /**
+     * The same check for a change of the used capacity by {@code :delta}, as an SQL predicate
+     * over the row of the store, or null when the rule does not restrict such a change.
+     */
+    default String usedCapacityPredicate() {
+        return null;
+    }
 }
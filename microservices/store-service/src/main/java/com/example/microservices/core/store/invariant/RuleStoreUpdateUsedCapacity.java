@@ -14,4 +14,9 @@ public class RuleStoreUpdateUsedCapacity implements RuleStoreUpdate {
         }
         return false;
     }
+
+    @Override
+    public String usedCapacityPredicate() {
+        return "capacity >= used_capacity + :delta";
+    }
 }
@@ -1,14 +1,19 @@
 package com.example.microservices.core.store.persistence;
 
+import com.example.mutual.util.persistence.PooledSequenceGenerator;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
 
+import static org.hibernate.id.enhanced.SequenceStyleGenerator.SEQUENCE_PARAM;
+
 @NoArgsConstructor
 @Getter
 @Setter
@@ -21,7 +26,12 @@ import java.time.LocalDateTime;
 )
 public class StoreEntity {
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "store_entity_seq")
+    @GenericGenerator(
+            name = "store_entity_seq",
+            type = PooledSequenceGenerator.class,
+            parameters = @Parameter(name = SEQUENCE_PARAM, value = "store_entity_seq")
+    )
     private int id;
     @Version
     private int version;
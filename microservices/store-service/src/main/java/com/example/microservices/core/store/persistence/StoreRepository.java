@@ -1,11 +1,19 @@
 package com.example.microservices.core.store.persistence;
 
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
-public interface StoreRepository extends CrudRepository<StoreEntity, Integer> {
+public interface StoreRepository extends JpaRepository<StoreEntity, Integer> {
     @Transactional(readOnly = true)
     Optional<StoreEntity> findByStoreId(int storeId);
+
+    List<StoreEntity> findByStoreIdIn(Collection<Integer> storeIds);
+
+    @Transactional(readOnly = true)
+    List<StoreEntity> findByStoreIdGreaterThanOrderByStoreIdAsc(int storeId, Limit limit);
 }
@@ -13,7 +13,8 @@ public interface StoreMapper {
 
     StoreEntity cloneStoreEntity(StoreEntity storeEntity);
     @Mappings({
-            @Mapping(target = "serviceAddress", ignore = true)
+            @Mapping(target = "serviceAddress", ignore = true),
+            @Mapping(source = "id", target = "entityId")
     })
     Store entityToApi(StoreEntity entity);
 
@@ -1,30 +1,49 @@
 package com.example.microservices.core.store.services;
 
 import com.example.microservices.core.store.broker.ProducerRevise;
+import com.example.microservices.core.store.capacity.CapacityReservations;
 import com.example.microservices.core.store.invariant.RuleStoreDelete;
 import com.example.microservices.core.store.invariant.RuleStoreUpdate;
 import com.example.microservices.core.store.persistence.StoreEntity;
 import com.example.microservices.core.store.persistence.StoreRepository;
+import com.example.mutual.api.core.BulkItemResult;
 import com.example.mutual.api.core.store.Store;
+import com.example.mutual.api.core.store.StoreCapacity;
 import com.example.mutual.api.core.store.StoreService;
 import com.example.mutual.api.exceptions.InvalidInputException;
 import com.example.mutual.api.exceptions.NotFoundException;
+import com.example.mutual.util.cache.ReadThroughCache;
+import com.example.mutual.util.http.ConditionalGet;
 import com.example.mutual.util.http.ServiceUtil;
 import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.retry.annotation.Backoff;
 import org.springframework.retry.annotation.Retryable;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Scheduler;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
+import static com.example.mutual.api.core.BulkItemResult.created;
+import static com.example.mutual.api.core.BulkItemResult.rejected;
+import static com.example.mutual.api.core.BulkItemResult.updated;
 import static java.util.logging.Level.FINE;
 
 @Slf4j
@@ -38,6 +57,11 @@ public class StoreServiceImpl implements StoreService {
     private final ProducerRevise producer;
     private final List<RuleStoreUpdate> rulesUpdate;
     private final List<RuleStoreDelete> rulesDelete;
+    private final TransactionTemplate transactionTemplate;
+    private final ReadThroughCache<Integer, Store> cache;
+    private final CapacityReservations capacityReservations;
+    private final int bulkChunkSize;
+    private final int scanPageSize;
 
     @Autowired
     public StoreServiceImpl(
@@ -47,7 +71,12 @@ public class StoreServiceImpl implements StoreService {
             @Qualifier("jdbcScheduler") Scheduler jdbcScheduler,
             ProducerRevise producer,
             List<RuleStoreUpdate> rulesUpdate,
-            List<RuleStoreDelete> rulesDelete
+            List<RuleStoreDelete> rulesDelete,
+            TransactionTemplate transactionTemplate,
+            ReadThroughCache<Integer, Store> cache,
+            CapacityReservations capacityReservations,
+            @Value("${app.bulk.chunk-size:1000}") int bulkChunkSize,
+            @Value("${app.scan.page-size:500}") int scanPageSize
     ) {
         this.repository = repository;
         this.mapper = mapper;
@@ -56,6 +85,11 @@ public class StoreServiceImpl implements StoreService {
         this.producer = producer;
         this.rulesUpdate = rulesUpdate;
         this.rulesDelete = rulesDelete;
+        this.transactionTemplate = transactionTemplate;
+        this.cache = cache;
+        this.capacityReservations = capacityReservations;
+        this.bulkChunkSize = bulkChunkSize;
+        this.scanPageSize = scanPageSize;
     }
 
     @Override
@@ -64,10 +98,10 @@ public class StoreServiceImpl implements StoreService {
             throw new InvalidInputException("Invalid storeId: " + storeId);
         }
         log.info("Will get store with id={}", storeId);
-        return Mono.fromCallable(() -> internalGetStore(storeId))
+        return cache.get(storeId, this::internalGetStore, jdbcScheduler)
                 .switchIfEmpty(Mono.error(new NotFoundException("No store found for storeId: " + storeId)))
-                .log(log.getName(), FINE)
-                .subscribeOn(jdbcScheduler);
+                .transform(ConditionalGet.byVersion(Store::getEntityId, Store::getVersion))
+                .log(log.getName(), FINE);
     }
 
     private Store internalGetStore(int storeId) {
@@ -80,6 +114,61 @@ public class StoreServiceImpl implements StoreService {
                 .orElse(null);
     }
 
+    @Override
+    public Flux<Store> getStores(List<Integer> ids) {
+        List<Integer> storeIds = ids.stream().distinct().toList();
+        for (Integer storeId : storeIds) {
+            if (storeId == null || storeId < 1) {
+                throw new InvalidInputException("Invalid storeId: " + storeId);
+            }
+        }
+        log.info("Will get {} stores in chunks of {}", storeIds.size(), bulkChunkSize);
+        return Flux.range(0, (storeIds.size() + bulkChunkSize - 1) / bulkChunkSize)
+                .map(chunk -> storeIds.subList(chunk * bulkChunkSize, Math.min(storeIds.size(), (chunk + 1) * bulkChunkSize)))
+                .concatMap(chunk -> Mono.fromCallable(() -> internalGetStores(chunk)).subscribeOn(jdbcScheduler))
+                .flatMapIterable(stores -> stores)
+                .log(log.getName(), FINE);
+    }
+
+    private List<Store> internalGetStores(List<Integer> storeIds) {
+        String serviceAddress = serviceUtil.getServiceAddress();
+        return repository.findByStoreIdIn(storeIds).stream()
+                .map(storeEntity -> {
+                    Store store = mapper.entityToApi(storeEntity);
+                    store.setServiceAddress(serviceAddress);
+                    return store;
+                })
+                .toList();
+    }
+
+    @Override
+    public Flux<Store> scanStores(int afterId) {
+        if (afterId < 0) {
+            throw new InvalidInputException("Invalid afterId: " + afterId);
+        }
+        log.info("Will scan stores after storeId={} in pages of {}", afterId, scanPageSize);
+        // the next page is read when the previous one is consumed, prefetch 1 keeps a slow client from piling pages up
+        return Mono.fromCallable(() -> internalScanStores(afterId))
+                .subscribeOn(jdbcScheduler)
+                .expand(page -> page.size() < scanPageSize
+                        ? Mono.empty()
+                        : Mono.fromCallable(() -> internalScanStores(page.get(page.size() - 1).getStoreId()))
+                                .subscribeOn(jdbcScheduler))
+                .flatMapIterable(stores -> stores, 1)
+                .log(log.getName(), FINE);
+    }
+
+    private List<Store> internalScanStores(int afterId) {
+        String serviceAddress = serviceUtil.getServiceAddress();
+        return repository.findByStoreIdGreaterThanOrderByStoreIdAsc(afterId, Limit.of(scanPageSize)).stream()
+                .map(storeEntity -> {
+                    Store store = mapper.entityToApi(storeEntity);
+                    store.setServiceAddress(serviceAddress);
+                    return store;
+                })
+                .toList();
+    }
+
     @Transactional
     @Override
     public Mono<Store> createStore(Store body) {
@@ -92,9 +181,12 @@ public class StoreServiceImpl implements StoreService {
 
     private Store internalCreateStore(Store body) {
         try {
-            StoreEntity entity = mapper.apiToEntity(body);
-            StoreEntity newEntity = repository.save(entity);
-            producer.storeCreated(newEntity);
+            // the flush brings the ids and the timestamps into the event and a duplicate key up to here
+            StoreEntity newEntity = transactionTemplate.execute(status -> {
+                StoreEntity entity = repository.saveAndFlush(mapper.apiToEntity(body));
+                producer.storeCreated(entity);
+                return entity;
+            });
             log.debug("createStore: created a store entity: {}", body.getStoreId());
             return mapper.entityToApi(newEntity);
         } catch (DataIntegrityViolationException dive) {
@@ -113,8 +205,10 @@ public class StoreServiceImpl implements StoreService {
         if (body.getStoreId() < 1) {
             throw new InvalidInputException("Invalid storeId: " + body.getStoreId());
         }
-        return Mono.fromCallable(()-> internalUpdateStore(body))
-                .subscribeOn(jdbcScheduler);
+        return Mono.fromCallable(() -> withCapacityEvicted(List.of(body.getStoreId()),
+                        () -> transactionTemplate.execute(status -> internalUpdateStore(body))))
+                .subscribeOn(jdbcScheduler)
+                .doFinally(signal -> cache.invalidate(body.getStoreId()));
     }
     private Store internalUpdateStore(Store body) {
         Optional<StoreEntity> entityOpt = repository.findByStoreId(body.getStoreId());
@@ -145,7 +239,13 @@ public class StoreServiceImpl implements StoreService {
     )
     @Override
     public Mono<Void> deleteStore(int storeId) {
-        return Mono.fromRunnable(()->internalDeleteStore(storeId)).subscribeOn(jdbcScheduler).then();
+        return Mono.fromRunnable(() -> withCapacityEvicted(List.of(storeId), () -> {
+                    transactionTemplate.executeWithoutResult(status -> internalDeleteStore(storeId));
+                    return null;
+                }))
+                .subscribeOn(jdbcScheduler)
+                .doFinally(signal -> cache.invalidate(storeId))
+                .then();
     }
 
     private void internalDeleteStore(int storeId) {
@@ -164,4 +264,122 @@ public class StoreServiceImpl implements StoreService {
             }
         );
     }
+
+    @Override
+    public Flux<BulkItemResult> bulkStores(List<Store> body) {
+        log.info("Will load {} stores in chunks of {}", body.size(), bulkChunkSize);
+        return Flux.range(0, (body.size() + bulkChunkSize - 1) / bulkChunkSize)
+                .map(chunk -> body.subList(chunk * bulkChunkSize, Math.min(body.size(), (chunk + 1) * bulkChunkSize)))
+                .concatMap(chunk -> Mono.fromCallable(() -> internalBulkStores(chunk))
+                        .subscribeOn(jdbcScheduler)
+                        .doFinally(signal -> cache.invalidateAll(chunk.stream().map(Store::getStoreId).toList())))
+                .flatMapIterable(results -> results)
+                .log(log.getName(), FINE);
+    }
+
+    // one transaction and one JDBC batch per chunk, a chunk rejected by the database is retried store by store
+    private List<BulkItemResult> internalBulkStores(List<Store> chunk) {
+        BulkChunk<StoreEntity> applied;
+        try {
+            applied = withCapacityEvicted(chunk.stream().map(Store::getStoreId).toList(),
+                    () -> transactionTemplate.execute(status -> applyBulkStores(chunk)));
+        } catch (DataIntegrityViolationException | OptimisticLockingFailureException e) {
+            if (chunk.size() == 1) {
+                int storeId = chunk.get(0).getStoreId();
+                return List.of(rejected(storeId, e instanceof DataIntegrityViolationException
+                        ? "Duplicate key, Store Id: " + storeId
+                        : e.getMessage()));
+            }
+            log.warn("bulkStores: a chunk of {} stores failed, loads them one by one: {}", chunk.size(), e.toString());
+            return chunk.stream()
+                    .flatMap(store -> internalBulkStores(List.of(store)).stream())
+                    .toList();
+        }
+        log.debug("bulkStores: created {}, updated {} of {} stores",
+                applied.created().size(), applied.updated().size(), chunk.size());
+        return applied.results();
+    }
+
+    private BulkChunk<StoreEntity> applyBulkStores(List<Store> chunk) {
+        Map<Integer, StoreEntity> existing = repository
+                .findByStoreIdIn(chunk.stream().map(Store::getStoreId).toList())
+                .stream()
+                .collect(Collectors.toMap(StoreEntity::getStoreId, Function.identity()));
+        BulkChunk<StoreEntity> applied = new BulkChunk<>(new ArrayList<>(chunk.size()), new ArrayList<>(), new ArrayList<>());
+        List<StoreEntity> changed = new ArrayList<>(chunk.size());
+        Set<Integer> storeIds = new HashSet<>();
+        for (Store store : chunk) {
+            int storeId = store.getStoreId();
+            if (storeId < 1) {
+                applied.results().add(rejected(storeId, "Invalid storeId: " + storeId));
+                continue;
+            }
+            if (!storeIds.add(storeId)) {
+                applied.results().add(rejected(storeId, "Duplicate key, Store Id: " + storeId));
+                continue;
+            }
+            StoreEntity entity = existing.get(storeId);
+            if (entity == null) {
+                StoreEntity newEntity = mapper.apiToEntity(store);
+                changed.add(newEntity);
+                applied.created().add(newEntity);
+                applied.results().add(created(storeId));
+                continue;
+            }
+            // rules change a copy, a rejected store must not be flushed with the rest
+            StoreEntity newEntity = mapper.cloneStoreEntity(entity);
+            boolean isBrokenRule = rulesUpdate.stream()
+                    .map(rule -> rule.apply(newEntity, mapper.apiToEntity(store)))
+                    .anyMatch(bool -> !bool);
+            if (isBrokenRule) {
+                applied.results().add(rejected(storeId, "There is a broken Update Rule, Store Id: " + storeId));
+                continue;
+            }
+            changed.add(newEntity);
+            applied.updated().add(mapper.cloneStoreEntity(entity));
+            applied.results().add(updated(storeId));
+        }
+        repository.saveAll(changed);
+        repository.flush();
+        applied.created().forEach(producer::storeCreated);
+        applied.updated().forEach(producer::storeUpdated);
+        return applied;
+    }
+
+    @Override
+    public Mono<StoreCapacity> reserveCapacity(int storeId, int units) {
+        return changeCapacity(storeId, units, units);
+    }
+
+    @Override
+    public Mono<StoreCapacity> releaseCapacity(int storeId, int units) {
+        return changeCapacity(storeId, units, -units);
+    }
+
+    private Mono<StoreCapacity> changeCapacity(int storeId, int units, int delta) {
+        if (storeId < 1) {
+            throw new InvalidInputException("Invalid storeId: " + storeId);
+        }
+        if (units < 1) {
+            throw new InvalidInputException("Invalid units: " + units);
+        }
+        // even a loaded counter may wait for an eviction or load the store, so never on the event loop
+        return Mono.fromCallable(() -> capacityReservations.change(storeId, delta))
+                .subscribeOn(jdbcScheduler)
+                .doOnSuccess(capacity -> cache.invalidate(storeId))
+                .log(log.getName(), FINE);
+    }
+
+    // the reserved units reach the rows before the change, the counters are loaded again after it
+    private <T> T withCapacityEvicted(List<Integer> storeIds, Supplier<T> change) {
+        storeIds.forEach(capacityReservations::evict);
+        try {
+            return change.get();
+        } finally {
+            storeIds.forEach(capacityReservations::evict);
+        }
+    }
+
+    private record BulkChunk<E>(List<BulkItemResult> results, List<E> created, List<E> updated) {
+    }
 }
@@ -0,0 +1,110 @@
+package com.example.microservices.core.store;
+
+import com.example.microservices.core.store.capacity.CapacityReservations;
+import com.example.microservices.core.store.capacity.UsedCapacityStatement;
+import com.example.microservices.core.store.persistence.StoreRepository;
+import com.example.microservices.core.store.util.ContainersTestBase;
+import com.example.microservices.core.store.util.ReaderProducedMessages;
+import com.example.mutual.api.core.store.Store;
+import com.example.mutual.api.event.Event;
+import com.example.mutual.util.cache.ReadThroughCache;
+import com.example.mutual.util.outbox.OutboxRelay;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.stream.binder.test.OutputDestination;
+import org.springframework.cloud.stream.binder.test.TestChannelBinderConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.function.Function;
+
+import static com.example.mutual.api.event.Event.Type.CREATE;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
+
+@SpringBootTest(
+        webEnvironment = RANDOM_PORT,
+        properties = {"spring.main.allow-bean-definition-overriding=true", "app.capacity.mode=sql"})
+@Import({TestChannelBinderConfiguration.class})
+class StoreCapacitySqlTest extends ContainersTestBase {
+
+    @Autowired
+    private WebTestClient client;
+
+    @Autowired
+    private StoreRepository repository;
+
+    @Autowired
+    private CapacityReservations capacityReservations;
+
+    @Autowired
+    private ReadThroughCache<Integer, Store> storeCache;
+
+    @Autowired
+    @Qualifier("consumerCrud")
+    private Function<Flux<Message<Event<Integer, Store>>>, Mono<Void>> consumerCrud;
+
+    private final ReaderProducedMessages readerStoreRevise;
+
+    @Autowired
+    public StoreCapacitySqlTest(OutputDestination target, OutboxRelay outboxRelay) {
+        this.readerStoreRevise = new ReaderProducedMessages(target, "store-revise", outboxRelay::relay);
+    }
+
+    @BeforeEach
+    void setupDb() {
+        repository.deleteAll();
+        storeCache.invalidateAll();
+        readerStoreRevise.purgeMessages();
+    }
+
+    @Test
+    void reserveAndReleaseRevised() {
+        // в режиме sql каждый резерв пишется в базу и рассылает revise в той же транзакции
+        assertInstanceOf(UsedCapacityStatement.class, capacityReservations);
+        int storeId = 1;
+        sendCreateStoreEvent(storeId);
+        readerStoreRevise.purgeMessages();
+
+        client.post()
+                .uri("/store/" + storeId + "/reserve?units=600")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.usedCapacity").isEqualTo(600);
+        client.post()
+                .uri("/store/" + storeId + "/release?units=100")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.usedCapacity").isEqualTo(500);
+        client.post()
+                .uri("/store/" + storeId + "/reserve?units=501")
+                .exchange()
+                .expectStatus().isEqualTo(UNPROCESSABLE_ENTITY)
+                .expectBody()
+                .jsonPath("$.message").isEqualTo("Not enough capacity, Store Id: " + storeId);
+
+        assertEquals(500, repository.findByStoreId(storeId).get().getUsedCapacity());
+        // отклоненный резерв ничего не рассылает
+        List<String> revised = readerStoreRevise.getMessages();
+        assertEquals(2, revised.size());
+        assertTrue(revised.get(0).contains("\"usedCapacity\":600"));
+        assertTrue(revised.get(1).contains("\"usedCapacity\":500"));
+    }
+
+    private void sendCreateStoreEvent(int storeId) {
+        Store store = new Store(storeId, "dom 33 ul Centralnaya, gorod Minsk, Minsk region", 1000, 0, "SA");
+        Event<Integer, Store> event = new Event<>(CREATE, storeId, store);
+        consumerCrud.apply(Flux.just(MessageBuilder.withPayload(event).build())).block();
+    }
+}
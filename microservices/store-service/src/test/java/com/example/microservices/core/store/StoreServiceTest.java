@@ -1,13 +1,22 @@
 package com.example.microservices.core.store;
 
+import com.example.microservices.core.store.broker.ProducerRevise;
+import com.example.microservices.core.store.capacity.CapacityCounters;
+import com.example.microservices.core.store.capacity.UsedCapacityStatement;
+import com.example.microservices.core.store.invariant.RuleStoreUpdate;
 import com.example.microservices.core.store.persistence.StoreEntity;
 import com.example.microservices.core.store.persistence.StoreRepository;
 import com.example.microservices.core.store.services.StoreMapper;
 import com.example.microservices.core.store.util.ContainersTestBase;
 import com.example.microservices.core.store.util.ReaderProducedMessages;
 import com.example.mutual.api.core.store.Store;
+import com.example.mutual.api.core.store.StoreCapacity;
 import com.example.mutual.api.event.Event;
 import com.example.mutual.api.exceptions.InvalidInputException;
+import com.example.mutual.api.exceptions.NotFoundException;
+import com.example.mutual.util.cache.ReadThroughCache;
+import com.example.mutual.util.outbox.Outbox;
+import com.example.mutual.util.outbox.OutboxRelay;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -18,14 +27,30 @@ import org.springframework.cloud.stream.binder.test.OutputDestination;
 import org.springframework.cloud.stream.binder.test.TestChannelBinderConfiguration;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static com.example.mutual.api.event.Event.Type.*;
 import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.matchesPattern;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
@@ -36,7 +61,7 @@ import static org.testcontainers.shaded.org.awaitility.Awaitility.await;
 @Slf4j
 @SpringBootTest(
         webEnvironment = RANDOM_PORT,
-        properties = {"spring.main.allow-bean-definition-overriding=true"})
+        properties = {"spring.main.allow-bean-definition-overriding=true", "app.scan.page-size=2"})
 @Import({TestChannelBinderConfiguration.class})
 class StoreServiceTest extends ContainersTestBase {
 
@@ -45,24 +70,58 @@ class StoreServiceTest extends ContainersTestBase {
 
     @Autowired
     private StoreRepository repository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CapacityCounters capacityCounters;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    private List<RuleStoreUpdate> rulesUpdate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ProducerRevise producerRevise;
     private final ReaderProducedMessages readerStoreRevise;
+    private final ReaderProducedMessages readerDeadLetter;
+    private final OutputDestination target;
     private final StoreMapper mapper;
 
 
     @Autowired
-    public StoreServiceTest(OutputDestination target, StoreMapper mapper) {
-        this.readerStoreRevise = new ReaderProducedMessages(target, "store-revise");
+    public StoreServiceTest(OutputDestination target, OutboxRelay outboxRelay, StoreMapper mapper) {
+        this.readerStoreRevise = new ReaderProducedMessages(target, "store-revise", outboxRelay::relay);
+        this.readerDeadLetter = new ReaderProducedMessages(target, "error.store-crud.storeCrudGroup");
+        this.target = target;
         this.mapper = mapper;
     }
 
     @Autowired
     @Qualifier("consumerCrud")
-    private Consumer<Event<Integer, Store>> consumerCrud;
+    private Function<Flux<Message<Event<Integer, Store>>>, Mono<Void>> consumerCrud;
+
+    @Autowired
+    @Qualifier("consumerRevise")
+    private Consumer<Message<Event<Integer, StoreEntity>>> consumerRevise;
+
+    @Autowired
+    private Outbox outbox;
+
+    @Autowired
+    private ReadThroughCache<Integer, Store> storeCache;
 
     @BeforeEach
     void setupDb() {
         repository.deleteAll();
+        storeCache.invalidateAll();
         readerStoreRevise.purgeMessages();
+        readerDeadLetter.purgeMessages();
     }
 
     @Test
@@ -80,6 +139,45 @@ class StoreServiceTest extends ContainersTestBase {
                 .jsonPath("$.storeId").isEqualTo(storeId);
     }
 
+    @Test
+    void getStoresByIds() {
+        sendCreateStoreEvent(1);
+        sendCreateStoreEvent(2);
+        sendCreateStoreEvent(3);
+
+        // id 4 отсутствует и пропускается, повторный id 1 читается один раз
+        client.get()
+                .uri("/stores?ids=1,3,4,1")
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[*].storeId").value(containsInAnyOrder(1, 3));
+
+        client.get()
+                .uri("/stores?ids=1,-1")
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(UNPROCESSABLE_ENTITY);
+    }
+
+    @Test
+    void scanStores() {
+        for (int storeId = 1; storeId <= 5; storeId++) {
+            sendCreateStoreEvent(storeId);
+        }
+
+        // страницы по две записи, скан продолжается после storeId 1
+        client.get()
+                .uri("/stores/scan?afterId=1")
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[*].storeId").value(contains(2, 3, 4, 5));
+    }
+
     @Test
     void getStoreNotFound() {
         int storeIdNotFound = 13;
@@ -110,12 +208,8 @@ class StoreServiceTest extends ContainersTestBase {
         sendCreateStoreEvent(storeId);
         assertTrue(repository.findByStoreId(storeId).isPresent());
 
-        InvalidInputException thrown = assertThrows(
-                InvalidInputException.class,
-                () -> sendCreateStoreEvent(storeId),
-                "Expected an InvalidInputException here!"
-        );
-        assertEquals("Duplicate key, Store Id: " + storeId, thrown.getMessage());
+        sendCreateStoreEvent(storeId);
+        assertDeadLetter("Duplicate key, Store Id: " + storeId);
     }
 
     @Test
@@ -143,6 +237,36 @@ class StoreServiceTest extends ContainersTestBase {
         assertEquals(2, readerStoreRevise.getMessages().size());
     }
 
+    @Test
+    void cachedStoreInvalidatedByRevise() {
+        int storeId = 1;
+        sendCreateStoreEvent(storeId);
+        String location = repository.findByStoreId(storeId).get().getLocation();
+        getAndVerifyStore(storeId, OK)
+                .jsonPath("$.location").isEqualTo(location);
+
+        // запись другого экземпляра: база изменена, кэш этого экземпляра еще нет
+        jdbcTemplate.update("update stores set location = 'moved' where store_id = ?", storeId);
+        getAndVerifyStore(storeId, OK)
+                .jsonPath("$.location").isEqualTo(location);
+
+        // свое событие пропускается, этот экземпляр уже сбросил склад после коммита
+        StoreEntity entity = repository.findByStoreId(storeId).get();
+        consumerRevise.accept(reviseMessage(entity, outbox.origin()));
+        getAndVerifyStore(storeId, OK)
+                .jsonPath("$.location").isEqualTo(location);
+
+        consumerRevise.accept(reviseMessage(entity, "other-instance"));
+        getAndVerifyStore(storeId, OK)
+                .jsonPath("$.location").isEqualTo("moved");
+    }
+
+    private Message<Event<Integer, StoreEntity>> reviseMessage(StoreEntity entity, String origin) {
+        return MessageBuilder.withPayload(new Event<>(UPDATE, entity.getStoreId(), entity))
+                .setHeader(Outbox.ORIGIN_HEADER, origin)
+                .build();
+    }
+
     @Test
     void updateStoreBad() {
         readerStoreRevise.purgeMessages();
@@ -154,16 +278,48 @@ class StoreServiceTest extends ContainersTestBase {
         StoreEntity entity = repository.findByStoreId(storeId).get();
         entity.setCapacity(9);
 
-        InvalidInputException thrown = assertThrows(
-                InvalidInputException.class,
-                () -> sendUpdateStoreEvent(mapper.entityToApi(entity)),     // 2. UPDATE Event is escaped
-                "Expected an InvalidInputException here!"
-        );
-        assertEquals("There is a broken Update Rule, Store Id: " + storeId, thrown.getMessage());
+        sendUpdateStoreEvent(mapper.entityToApi(entity));               // 2. UPDATE Event is escaped
+        assertDeadLetter("There is a broken Update Rule, Store Id: " + storeId);
 
         assertEquals(1, readerStoreRevise.getMessages().size());
     }
 
+    @Test
+    void outboxPublishesCommittedChangesOnly() {
+        // событие пишется в outbox в транзакции изменения, откат изменения откатывает и событие
+        int storeId = 1;
+        sendCreateStoreEvent(storeId);
+        sendCreateStoreEvent(storeId);                                  // дубликат откатывается
+        assertDeadLetter("Duplicate key, Store Id: " + storeId);
+
+        List<String> messages = readerStoreRevise.getMessages();
+        assertEquals(1, messages.size());
+        assertTrue(messages.get(0).contains("\"eventType\":\"CREATE\""));
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from outbox", Integer.class));
+    }
+
+    @Test
+    void keyOrderAcrossLanes() {
+        // события разных складов идут параллельно, события одного склада строго по порядку
+        List<Event<Integer, Store>> events = new ArrayList<>();
+        for (int storeId = 1; storeId <= 6; storeId++) {
+            Store store = new Store(storeId, "dom 33 ul Centralnaya, gorod Minsk, Minsk region", 1000, 0, "SA");
+            events.add(new Event<>(CREATE, storeId, store));
+        }
+        for (int storeId = 1; storeId <= 6; storeId++) {
+            Store store = new Store(storeId, "a better place " + storeId, 1000, 0, "SA");
+            events.add(new Event<>(UPDATE, storeId, store));
+        }
+        consumerCrud.apply(Flux.fromIterable(events).map(event -> MessageBuilder.withPayload(event).build())).block();
+
+        assertEquals(6, repository.count());
+        for (int storeId = 1; storeId <= 6; storeId++) {
+            assertEquals("a better place " + storeId, repository.findByStoreId(storeId).get().getLocation());
+        }
+        assertEquals(12, readerStoreRevise.getMessages().size());
+        assertEquals(0, readerDeadLetter.getMessages().size());
+    }
+
     @Test
     void deleteStoreOk() {
         readerStoreRevise.purgeMessages();
@@ -191,16 +347,148 @@ class StoreServiceTest extends ContainersTestBase {
         await().pollInterval(Duration.ofSeconds(3)).atMost(10, SECONDS).untilAsserted(() -> {
             assertTrue(repository.findByStoreId(storeId).isPresent());
         });
-        InvalidInputException thrown = assertThrows(
-                InvalidInputException.class,
-                () -> sendDeleteStoreEvent(storeId),                // 2. Delete Event is escaped
-                "Expected an InvalidInputException here!"
-        );
-        assertEquals("There is a broken Delete Rule, store Id: " + storeId, thrown.getMessage());
+        sendDeleteStoreEvent(storeId);                      // 2. Delete Event is escaped
+        assertDeadLetter("There is a broken Delete Rule, store Id: " + storeId);
 
         assertEquals(1, readerStoreRevise.getMessages().size());
     }
 
+    @Test
+    void bulkStores() {
+        sendCreateStoreEvent(1);
+        sendCreateStoreEventForBad(2);
+        readerStoreRevise.purgeMessages();
+
+        // загрузка пачкой: новые склады создаются, существующие обновляются, ошибочные отклоняются поштучно
+        List<Store> stores = new ArrayList<>();
+        stores.add(new Store(1, "a better place", 1000, 0, null));
+        stores.add(new Store(2, "dom 33 ul Centralnaya, gorod Minsk, Minsk region", 5, 10, null));
+        for (int storeId = 3; storeId <= 5; storeId++) {
+            stores.add(new Store(storeId, "dom " + storeId + " ul Centralnaya, gorod Minsk, Minsk region", 1000, 0, null));
+        }
+        stores.add(new Store(3, "a duplicate", 1000, 0, null));
+        stores.add(new Store(-1, "an invalid store", 1000, 0, null));
+
+        client.post()
+                .uri("/store/bulk")
+                .contentType(APPLICATION_JSON)
+                .bodyValue(stores)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(7)
+                .jsonPath("$[0].status").isEqualTo("UPDATED")
+                .jsonPath("$[1].status").isEqualTo("REJECTED")
+                .jsonPath("$[1].message").isEqualTo("There is a broken Update Rule, Store Id: 2")
+                .jsonPath("$[2].status").isEqualTo("CREATED")
+                .jsonPath("$[4].status").isEqualTo("CREATED")
+                .jsonPath("$[5].message").isEqualTo("Duplicate key, Store Id: 3")
+                .jsonPath("$[6].message").isEqualTo("Invalid storeId: -1");
+
+        assertEquals(5, repository.count());
+        assertEquals("a better place", repository.findByStoreId(1).get().getLocation());
+        assertEquals(1000, repository.findByStoreId(2).get().getCapacity());
+        assertEquals(4, readerStoreRevise.getMessages().size());
+    }
+
+    @Test
+    void capacityReservations() throws Exception {
+        // резервы считаются в памяти без оптимистических блокировок, в базу пишется накопленная разница
+        int storeId = 7;
+        sendCreateStoreEvent(storeId);
+        readerStoreRevise.purgeMessages();
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 200; j++) {
+                        try {
+                            capacityCounters.change(storeId, 1);
+                        } catch (InvalidInputException e) {
+                            rejected.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            assertEquals(600, rejected.get());
+
+            client.post()
+                    .uri("/store/" + storeId + "/release?units=10")
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody()
+                    .jsonPath("$.usedCapacity").isEqualTo(990);
+            client.post()
+                    .uri("/store/" + storeId + "/reserve?units=11")
+                    .exchange()
+                    .expectStatus().isEqualTo(UNPROCESSABLE_ENTITY)
+                    .expectBody()
+                    .jsonPath("$.message").isEqualTo("Not enough capacity, Store Id: " + storeId);
+
+            // закэшированный склад еще без резервов, запись в базу его сбрасывает и рассылает revise
+            getAndVerifyStore(storeId, OK);
+            capacityCounters.flush();
+            assertEquals(990, repository.findByStoreId(storeId).get().getUsedCapacity());
+            getAndVerifyStore(storeId, OK)
+                    .jsonPath("$.usedCapacity").isEqualTo(990);
+            List<String> revised = readerStoreRevise.getMessages();
+            assertFalse(revised.isEmpty());
+            assertTrue(revised.get(revised.size() - 1).contains("\"usedCapacity\":990"));
+        } finally {
+            executor.shutdownNow();
+            capacityCounters.evict(storeId);
+        }
+    }
+
+    @Test
+    void rejectedFlushReloadsCounter() {
+        // строка изменена в обход счетчика, запись резервов отклоняется и счетчик читается заново
+        int storeId = 8;
+        sendCreateStoreEvent(storeId);
+        try {
+            capacityCounters.change(storeId, 900);
+            jdbcTemplate.update("update stores set capacity = 500 where store_id = ?", storeId);
+            capacityCounters.flush();
+            assertEquals(0, repository.findByStoreId(storeId).get().getUsedCapacity());
+
+            StoreCapacity capacity = capacityCounters.change(storeId, 1);
+            assertEquals(500, capacity.getCapacity());
+            assertEquals(1, capacity.getUsedCapacity());
+        } finally {
+            capacityCounters.evict(storeId);
+        }
+    }
+
+    @Test
+    void conditionalUsedCapacityUpdate() {
+        // правила обновления проверяются в where, без чтения склада и без повторов
+        UsedCapacityStatement statement = new UsedCapacityStatement(
+                namedParameterJdbcTemplate, transactionTemplate, producerRevise, rulesUpdate);
+        int storeId = 1;
+        sendCreateStoreEvent(storeId);
+        readerStoreRevise.purgeMessages();
+        int version = repository.findByStoreId(storeId).get().getVersion();
+
+        assertEquals(990, statement.change(storeId, 990).getUsedCapacity());
+        assertEquals(1000, statement.change(storeId, 10).getUsedCapacity());
+        InvalidInputException full = assertThrows(InvalidInputException.class, () -> statement.change(storeId, 1));
+        assertEquals("Not enough capacity, Store Id: " + storeId, full.getMessage());
+        assertEquals(0, statement.change(storeId, -1000).getUsedCapacity());
+        assertThrows(InvalidInputException.class, () -> statement.change(storeId, -1));
+        assertThrows(NotFoundException.class, () -> statement.change(13, 1));
+
+        StoreEntity entity = repository.findByStoreId(storeId).get();
+        assertEquals(0, entity.getUsedCapacity());
+        assertEquals(version + 3, entity.getVersion());
+        // каждое изменение пишет revise в той же транзакции
+        assertEquals(3, readerStoreRevise.getMessages().size());
+    }
+
     private WebTestClient.BodyContentSpec getAndVerifyStore(int storeId, HttpStatus expectedStatus) {
         return getAndVerifyStore("/" + storeId, expectedStatus);
     }
@@ -218,22 +506,29 @@ class StoreServiceTest extends ContainersTestBase {
     private void sendCreateStoreEvent(int storeId) {
         Store store = new Store(storeId, "dom 33 ul Centralnaya, gorod Minsk, Minsk region", 1000, 0, "SA");
         Event<Integer, Store> event = new Event<>(CREATE, storeId, store);
-        consumerCrud.accept(event);
+        consumerCrud.apply(Flux.just(MessageBuilder.withPayload(event).build())).block();
     }
 
     private void sendCreateStoreEventForBad(int storeId) {
         Store store = new Store(storeId, "dom 33 ul Centralnaya, gorod Minsk, Minsk region", 1000, 10, "SA");
         Event<Integer, Store> event = new Event<>(CREATE, storeId, store);
-        consumerCrud.accept(event);
+        consumerCrud.apply(Flux.just(MessageBuilder.withPayload(event).build())).block();
     }
 
     private void sendUpdateStoreEvent(Store store) {
         Event<Integer, Store> event = new Event<>(UPDATE, store.getStoreId(), store);
-        consumerCrud.accept(event);
+        consumerCrud.apply(Flux.just(MessageBuilder.withPayload(event).build())).block();
     }
 
     private void sendDeleteStoreEvent(int storeId) {
         Event<Integer, Store> event = new Event<>(DELETE, storeId, null);
-        consumerCrud.accept(event);
+        consumerCrud.apply(Flux.just(MessageBuilder.withPayload(event).build())).block();
+    }
+
+    // ошибочное событие не роняет поток событий, а уходит в DLQ с текстом ошибки в заголовке
+    private void assertDeadLetter(String expectedMessage) {
+        Message<byte[]> message = target.receive(0, "error.store-crud.storeCrudGroup");
+        assertNotNull(message, "Expected a dead letter here!");
+        assertEquals(expectedMessage, message.getHeaders().get("x-exception-message"));
     }
 }
@@ -0,0 +1,34 @@
+package com.example.mutual.api.core;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class BulkItemResult {
+    public enum Status {
+        CREATED,
+        UPDATED,
+        REJECTED
+    }
+
+    private int key;
+    private Status status;
+    private String message;
+
+    public static BulkItemResult created(int key) {
+        return new BulkItemResult(key, Status.CREATED, null);
+    }
+
+    public static BulkItemResult updated(int key) {
+        return new BulkItemResult(key, Status.UPDATED, null);
+    }
+
+    public static BulkItemResult rejected(int key, String message) {
+        return new BulkItemResult(key, Status.REJECTED, message);
+    }
+}
@@ -12,6 +12,18 @@ public class Cargo {
     private int weight = 0;
     private Status status = Status.STOCK;
     private String serviceAddress = null;
+    // the @Version of the entity, the ETag of its GET with the entityId
+    private int version = 0;
+    // the surrogate id of the row, a recreated entity starts its version anew under another one
+    private int entityId = 0;
+
+    public Cargo(int cargoId, String name, int weight, Status status, String serviceAddress) {
+        this(cargoId, name, weight, status, serviceAddress, 0);
+    }
+
+    public Cargo(int cargoId, String name, int weight, Status status, String serviceAddress, int version) {
+        this(cargoId, name, weight, status, serviceAddress, version, 0);
+    }
 
     public enum Status {
         STOCK,
@@ -1,22 +1,66 @@
 package com.example.mutual.api.core.cargo;
 
+import com.example.mutual.api.core.BulkItemResult;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 public interface CargoService {
 
     /**
      * Sample usage: "curl $HOST:$PORT/cargo/1".
+     * The ETag is the version of the cargo, an If-None-Match with it is answered with 304 and no body.
      *
      * @param cargoId Id of the cargo
      * @return the cargo, if found, else null
      */
     @GetMapping(value = "/cargo/{cargoId}", produces = "application/json")
     Mono<Cargo> getCargo(@PathVariable int cargoId);
+
+    /**
+     * Multi-id fetch, sample usage: "curl '$HOST:$PORT/cargoes?ids=1,2,3'".
+     * The cargoes are read with one query per chunk of ids and streamed as they are read,
+     * as a JSON array or, with "Accept: application/x-ndjson", one cargo per line.
+     *
+     * @param ids Ids of the cargoes
+     * @return the cargoes found, in no particular order, the missing ids are skipped
+     */
+    @GetMapping(value = "/cargoes", produces = {"application/json", "application/x-ndjson"})
+    Flux<Cargo> getCargoes(@RequestParam List<Integer> ids);
+
+    /**
+     * Streaming scan, sample usage: "curl -H 'Accept: application/x-ndjson' '$HOST:$PORT/cargoes/scan?status=TRANSIT'".
+     * The cargoes are read in pages ordered by cargoId, a page starts after the last cargoId of the previous one
+     * (keyset pagination on the unique cargoId index), so the result set is never held in memory as a whole.
+     *
+     * @param status  only the cargoes of this status, all cargoes when not given
+     * @param afterId the scan starts after this cargoId, a broken export is resumed from the last cargoId it got
+     * @return the cargoes in the cargoId order
+     */
+    @GetMapping(value = "/cargoes/scan", produces = {"application/x-ndjson", "text/event-stream", "application/json"})
+    Flux<Cargo> scanCargoes(
+            @RequestParam(required = false) Cargo.Status status,
+            @RequestParam(defaultValue = "0") int afterId
+    );
+
     Mono<Cargo> createCargo(@RequestBody Cargo body);
     Mono<Cargo> updateCargo(@RequestBody Cargo body);
     Mono<Void> deleteCargo(@PathVariable int cargoId);
 
+    /**
+     * Bulk load, sample usage: "curl -X POST $HOST:$PORT/cargo/bulk -H 'Content-Type: application/json' -d '[...]'".
+     * A cargo is created, or updated when its cargoId already exists.
+     *
+     * @param body cargoes to load
+     * @return one result per cargo, in the request order
+     */
+    @PostMapping(value = "/cargo/bulk", consumes = "application/json", produces = "application/json")
+    Flux<BulkItemResult> bulkCargoes(@RequestBody List<Cargo> body);
+
 }
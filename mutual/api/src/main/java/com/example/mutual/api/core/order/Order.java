@@ -16,6 +16,18 @@ public class Order {
     private int toStoreId;
     private Order.Status status = Status.NEW;
     private String serviceAddress = null;
+    // the @Version of the entity, the ETag of its GET with the entityId
+    private int version = 0;
+    // the surrogate id of the row, a recreated entity starts its version anew under another one
+    private int entityId = 0;
+
+    public Order(int orderId, int cargoId, int fromStoreId, int toStoreId, Order.Status status, String serviceAddress) {
+        this(orderId, cargoId, fromStoreId, toStoreId, status, serviceAddress, 0);
+    }
+
+    public Order(int orderId, int cargoId, int fromStoreId, int toStoreId, Order.Status status, String serviceAddress, int version) {
+        this(orderId, cargoId, fromStoreId, toStoreId, status, serviceAddress, version, 0);
+    }
 
     public enum Status {
         NEW,
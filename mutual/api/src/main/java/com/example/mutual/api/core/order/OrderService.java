@@ -3,18 +3,50 @@ package com.example.mutual.api.core.order;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 public interface OrderService {
 
     /**
      * Sample usage: "curl $HOST:$PORT/order/1".
+     * The ETag is the version of the order, an If-None-Match with it is answered with 304 and no body.
      *
      * @param orderId Id of the order
      * @return the order, if found, else null
      */
     @GetMapping(value = "/order/{orderId}", produces = "application/json")
     Mono<Order> getOrder(@PathVariable int orderId);
+
+    /**
+     * Multi-id fetch, sample usage: "curl '$HOST:$PORT/orders?ids=1,2,3'".
+     * The orders are read with one query per chunk of ids and streamed as they are read,
+     * as a JSON array or, with "Accept: application/x-ndjson", one order per line.
+     *
+     * @param ids Ids of the orders
+     * @return the orders found, in no particular order, the missing ids are skipped
+     */
+    @GetMapping(value = "/orders", produces = {"application/json", "application/x-ndjson"})
+    Flux<Order> getOrders(@RequestParam List<Integer> ids);
+
+    /**
+     * Streaming scan, sample usage: "curl -H 'Accept: application/x-ndjson' '$HOST:$PORT/orders/scan?status=TRANSIT'".
+     * The orders are read in pages ordered by orderId, a page starts after the last orderId of the previous one
+     * (keyset pagination on the unique orderId index), so the result set is never held in memory as a whole.
+     *
+     * @param status  only the orders of this status, all orders when not given
+     * @param afterId the scan starts after this orderId, a broken export is resumed from the last orderId it got
+     * @return the orders in the orderId order
+     */
+    @GetMapping(value = "/orders/scan", produces = {"application/x-ndjson", "text/event-stream", "application/json"})
+    Flux<Order> scanOrders(
+            @RequestParam(required = false) Order.Status status,
+            @RequestParam(defaultValue = "0") int afterId
+    );
+
     Mono<Order> createOrder(@RequestBody Order body);
     Mono<Order> updateOrder(@RequestBody Order body);
     Mono<Void> deleteOrder(@PathVariable int orderId);
@@ -5,6 +5,8 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+import java.util.List;
+
 @NoArgsConstructor
 @AllArgsConstructor
 @Getter
@@ -16,8 +18,21 @@ public class Route {
     private String pathFromTo = null;
     private int distanceFromTo = 0;
     private int minutesFromTo = 0;
+    private List<Integer> hops = null;
 
     private String serviceAddress = null;
+    // the @Version of the entity, the ETag of its GET with the entityId
+    private int version = 0;
+    // the surrogate id of the row, a recreated entity starts its version anew under another one
+    private int entityId = 0;
+
+    public Route(int routeId, int fromStoreId, int toStoreId, String pathFromTo, int distanceFromTo, int minutesFromTo, List<Integer> hops, String serviceAddress) {
+        this(routeId, fromStoreId, toStoreId, pathFromTo, distanceFromTo, minutesFromTo, hops, serviceAddress, 0);
+    }
+
+    public Route(int routeId, int fromStoreId, int toStoreId, String pathFromTo, int distanceFromTo, int minutesFromTo, List<Integer> hops, String serviceAddress, int version) {
+        this(routeId, fromStoreId, toStoreId, pathFromTo, distanceFromTo, minutesFromTo, hops, serviceAddress, version, 0);
+    }
 
     public Route(int routeId, int fromStoreId, int toStoreId, String pathFromTo, int distanceFromTo, int minutesFromTo) {
         this.routeId = routeId;
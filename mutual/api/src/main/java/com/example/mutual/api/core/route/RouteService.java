@@ -1,20 +1,76 @@
 package com.example.mutual.api.core.route;
 
+import com.example.mutual.api.core.BulkItemResult;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 public interface RouteService {
         /**
      * Sample usage: "curl $HOST:$PORT/route/1".
+     * The ETag is the version of the route, an If-None-Match with it is answered with 304 and no body.
      *
      * @param routeId Id of the route
      * @return the route, if found, else null
      */
     @GetMapping(value = "/route/{routeId}", produces = "application/json")
     Mono<Route> getRoute(@PathVariable int routeId);
+
+    /**
+     * Multi-id fetch, sample usage: "curl '$HOST:$PORT/routes?ids=1,2,3'".
+     * The routes are read with one query per chunk of ids and streamed as they are read,
+     * as a JSON array or, with "Accept: application/x-ndjson", one route per line.
+     *
+     * @param ids Ids of the routes
+     * @return the routes found, in no particular order, the missing ids are skipped
+     */
+    @GetMapping(value = "/routes", produces = {"application/json", "application/x-ndjson"})
+    Flux<Route> getRoutes(@RequestParam List<Integer> ids);
+
+    /**
+     * Route between two stores, sample usage: "curl '$HOST:$PORT/route/between?fromStoreId=1&toStoreId=2'".
+     * The route is only resolved on the route network, no route task event is published.
+     *
+     * @param fromStoreId Id of the store the route starts at
+     * @param toStoreId   Id of the store the route ends at
+     * @param ruleType    the route selection rule
+     * @return the route, if found, else 404
+     */
+    @GetMapping(value = "/route/between", produces = "application/json")
+    Mono<Route> getRouteBetween(
+            @RequestParam int fromStoreId,
+            @RequestParam int toStoreId,
+            @RequestParam(defaultValue = "MINIMAL_DISTANCE") RouteRuleType ruleType
+    );
+
+    /**
+     * Streaming scan, sample usage: "curl -H 'Accept: application/x-ndjson' '$HOST:$PORT/routes/scan'".
+     * The routes are read in pages ordered by routeId, a page starts after the last routeId of the previous one
+     * (keyset pagination on the unique routeId index), so the result set is never held in memory as a whole.
+     *
+     * @param afterId the scan starts after this routeId, a broken export is resumed from the last routeId it got
+     * @return the routes in the routeId order
+     */
+    @GetMapping(value = "/routes/scan", produces = {"application/x-ndjson", "text/event-stream", "application/json"})
+    Flux<Route> scanRoutes(@RequestParam(defaultValue = "0") int afterId);
+
     Mono<Route> createRoute(@RequestBody Route body);
     Mono<Route> updateRoute(@RequestBody Route body);
     Mono<Void> deleteRoute(@PathVariable int routeId);
+
+    /**
+     * Bulk load, sample usage: "curl -X POST $HOST:$PORT/route/bulk -H 'Content-Type: application/json' -d '[...]'".
+     * A route is created, or updated when its routeId already exists.
+     *
+     * @param body routes to load
+     * @return one result per route, in the request order
+     */
+    @PostMapping(value = "/route/bulk", consumes = "application/json", produces = "application/json")
+    Flux<BulkItemResult> bulkRoutes(@RequestBody List<Route> body);
 }
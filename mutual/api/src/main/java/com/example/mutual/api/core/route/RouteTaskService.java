@@ -1,8 +1,20 @@
 package com.example.mutual.api.core.route;
 
 import org.springframework.web.bind.annotation.PathVariable;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 public interface RouteTaskService {
     Mono<Route> findRoute(@PathVariable RouteTaskPayload routeTaskPayload);
+
+    /**
+     * Resolves each distinct from/to/rule once for the whole batch. A task without a route is answered
+     * with a ROUTE_NOT_FOUND event.
+     *
+     * @param routeTaskPayloads tasks of the batch
+     * @return the tasks a route was found for, with the route set
+     */
+    Flux<RouteTaskPayload> findRoutes(List<RouteTaskPayload> routeTaskPayloads);
 }
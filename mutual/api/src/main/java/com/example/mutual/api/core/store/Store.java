@@ -15,4 +15,16 @@ public class Store {
     private int capacity = 0;
     private int usedCapacity = 0;
     private String serviceAddress = null;
+    // the @Version of the entity, the ETag of its GET with the entityId
+    private int version = 0;
+    // the surrogate id of the row, a recreated entity starts its version anew under another one
+    private int entityId = 0;
+
+    public Store(int storeId, String location, int capacity, int usedCapacity, String serviceAddress) {
+        this(storeId, location, capacity, usedCapacity, serviceAddress, 0);
+    }
+
+    public Store(int storeId, String location, int capacity, int usedCapacity, String serviceAddress, int version) {
+        this(storeId, location, capacity, usedCapacity, serviceAddress, version, 0);
+    }
 }
@@ -0,0 +1,16 @@
+package com.example.mutual.api.core.store;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class StoreCapacity {
+    private int storeId;
+    private int capacity;
+    private int usedCapacity;
+}
@@ -1,20 +1,80 @@
 package com.example.mutual.api.core.store;
 
+import com.example.mutual.api.core.BulkItemResult;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 public interface StoreService {
         /**
      * Sample usage: "curl $HOST:$PORT/store/1".
+     * The ETag is the version of the store, an If-None-Match with it is answered with 304 and no body.
      *
      * @param storeId Id of the store
      * @return the store, if found, else null
      */
     @GetMapping(value = "/store/{storeId}", produces = "application/json")
     Mono<Store> getStore(@PathVariable int storeId);
+
+    /**
+     * Multi-id fetch, sample usage: "curl '$HOST:$PORT/stores?ids=1,2,3'".
+     * The stores are read with one query per chunk of ids and streamed as they are read,
+     * as a JSON array or, with "Accept: application/x-ndjson", one store per line.
+     *
+     * @param ids Ids of the stores
+     * @return the stores found, in no particular order, the missing ids are skipped
+     */
+    @GetMapping(value = "/stores", produces = {"application/json", "application/x-ndjson"})
+    Flux<Store> getStores(@RequestParam List<Integer> ids);
+
+    /**
+     * Streaming scan, sample usage: "curl -H 'Accept: application/x-ndjson' '$HOST:$PORT/stores/scan'".
+     * The stores are read in pages ordered by storeId, a page starts after the last storeId of the previous one
+     * (keyset pagination on the unique storeId index), so the result set is never held in memory as a whole.
+     *
+     * @param afterId the scan starts after this storeId, a broken export is resumed from the last storeId it got
+     * @return the stores in the storeId order
+     */
+    @GetMapping(value = "/stores/scan", produces = {"application/x-ndjson", "text/event-stream", "application/json"})
+    Flux<Store> scanStores(@RequestParam(defaultValue = "0") int afterId);
+
     Mono<Store> createStore(@RequestBody Store body);
     Mono<Store> updateStore(@RequestBody Store body);
     Mono<Void> deleteStore(@PathVariable int storeId);
+
+    /**
+     * Bulk load, sample usage: "curl -X POST $HOST:$PORT/store/bulk -H 'Content-Type: application/json' -d '[...]'".
+     * A store is created, or updated when its storeId already exists.
+     *
+     * @param body stores to load
+     * @return one result per store, in the request order
+     */
+    @PostMapping(value = "/store/bulk", consumes = "application/json", produces = "application/json")
+    Flux<BulkItemResult> bulkStores(@RequestBody List<Store> body);
+
+    /**
+     * Capacity reservation, sample usage: "curl -X POST $HOST:$PORT/store/1/reserve?units=5".
+     *
+     * @param storeId Id of the store
+     * @param units   units to reserve, fails with 422 when the store has no room for them
+     * @return the capacity of the store after the reservation
+     */
+    @PostMapping(value = "/store/{storeId}/reserve", produces = "application/json")
+    Mono<StoreCapacity> reserveCapacity(@PathVariable int storeId, @RequestParam int units);
+
+    /**
+     * Releases the reserved units, sample usage: "curl -X POST $HOST:$PORT/store/1/release?units=5".
+     *
+     * @param storeId Id of the store
+     * @param units   units to release, fails with 422 when more than the used capacity
+     * @return the capacity of the store after the release
+     */
+    @PostMapping(value = "/store/{storeId}/release", produces = "application/json")
+    Mono<StoreCapacity> releaseCapacity(@PathVariable int storeId, @RequestParam int units);
 }
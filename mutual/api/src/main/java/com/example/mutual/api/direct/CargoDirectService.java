@@ -1,5 +1,6 @@
 package com.example.mutual.api.direct;
 
+import com.example.mutual.api.core.BulkItemResult;
 import com.example.mutual.api.core.cargo.Cargo;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -8,8 +9,11 @@ import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 @SecurityRequirement(name = "security_auth")
 @Tag(name = "Cargo", description = "REST API for cargo information.")
 @RequestMapping("/api/v1/cargoes")
@@ -20,6 +24,7 @@ public interface CargoDirectService {
             description = "${api.cargo.get-cargo.notes}")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+            @ApiResponse(responseCode = "304", description = "${api.responseCodes.notModified.description}"),
             @ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}"),
             @ApiResponse(responseCode = "404", description = "${api.responseCodes.notFound.description}"),
             @ApiResponse(responseCode = "422", description = "${api.responseCodes.unprocessableEntity.description}")
@@ -29,6 +34,35 @@ public interface CargoDirectService {
             produces = "application/json")
     Mono<Cargo> getCargo(@PathVariable int cargoId);
 
+    @Operation(
+            summary = "${api.cargo.get-cargoes.description}",
+            description = "${api.cargo.get-cargoes.notes}")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+            @ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}"),
+            @ApiResponse(responseCode = "422", description = "${api.responseCodes.unprocessableEntity.description}")
+    })
+    @GetMapping(
+            value = "/cargo",
+            produces = {"application/json", "application/x-ndjson"})
+    Flux<Cargo> getCargoes(@RequestParam List<Integer> ids);
+
+    @Operation(
+            summary = "${api.cargo.scan-cargoes.description}",
+            description = "${api.cargo.scan-cargoes.notes}")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+            @ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}"),
+            @ApiResponse(responseCode = "422", description = "${api.responseCodes.unprocessableEntity.description}")
+    })
+    @GetMapping(
+            value = "/scan",
+            produces = {"application/x-ndjson", "text/event-stream", "application/json"})
+    Flux<Cargo> scanCargoes(
+            @RequestParam(required = false) Cargo.Status status,
+            @RequestParam(defaultValue = "0") int afterId
+    );
+
     @Operation(
             summary = "${api.cargo.create-cargo.description}",
             description = "${api.cargo.create-cargo.notes}")
@@ -65,4 +99,17 @@ public interface CargoDirectService {
     @ResponseStatus(HttpStatus.ACCEPTED)
     @DeleteMapping(value = "/cargo/{cargoId}")
     Mono<Void> deleteCargo(@PathVariable int cargoId);
+
+    @Operation(
+            summary = "${api.cargo.bulk-cargoes.description}",
+            description = "${api.cargo.bulk-cargoes.notes}")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+            @ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}")
+    })
+    @PostMapping(
+            value = "/cargo/bulk",
+            consumes = "application/json",
+            produces = "application/json")
+    Flux<BulkItemResult> bulkCargoes(@RequestBody List<Cargo> body);
 }
@@ -1,6 +1,7 @@
 package com.example.mutual.api.direct;
 
 import com.example.mutual.api.core.order.Order;
+import com.example.mutual.api.core.route.RouteRuleType;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
@@ -8,8 +9,11 @@ import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 @SecurityRequirement(name = "security_auth")
 @Tag(name = "Order", description = "REST API for order information.")
 @RequestMapping("/api/v1/orders")
@@ -20,6 +24,7 @@ public interface OrderDirectService {
             description = "${api.order.get-order.notes}")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+            @ApiResponse(responseCode = "304", description = "${api.responseCodes.notModified.description}"),
             @ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}"),
             @ApiResponse(responseCode = "404", description = "${api.responseCodes.notFound.description}"),
             @ApiResponse(responseCode = "422", description = "${api.responseCodes.unprocessableEntity.description}")
@@ -29,6 +34,52 @@ public interface OrderDirectService {
             produces = "application/json")
     Mono<Order> getOrder(@PathVariable int orderId);
 
+    @Operation(
+            summary = "${api.order.get-order-view.description}",
+            description = "${api.order.get-order-view.notes}")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+            @ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}"),
+            @ApiResponse(responseCode = "404", description = "${api.responseCodes.notFound.description}"),
+            @ApiResponse(responseCode = "422", description = "${api.responseCodes.unprocessableEntity.description}")
+    })
+    @GetMapping(
+            value = "/order/{orderId}/full",
+            produces = "application/json")
+    Mono<OrderView> getOrderView(
+            @PathVariable int orderId,
+            @RequestParam(defaultValue = "MINIMAL_DISTANCE") RouteRuleType ruleType
+    );
+
+    @Operation(
+            summary = "${api.order.get-orders.description}",
+            description = "${api.order.get-orders.notes}")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+            @ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}"),
+            @ApiResponse(responseCode = "422", description = "${api.responseCodes.unprocessableEntity.description}")
+    })
+    @GetMapping(
+            value = "/order",
+            produces = {"application/json", "application/x-ndjson"})
+    Flux<Order> getOrders(@RequestParam List<Integer> ids);
+
+    @Operation(
+            summary = "${api.order.scan-orders.description}",
+            description = "${api.order.scan-orders.notes}")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+            @ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}"),
+            @ApiResponse(responseCode = "422", description = "${api.responseCodes.unprocessableEntity.description}")
+    })
+    @GetMapping(
+            value = "/scan",
+            produces = {"application/x-ndjson", "text/event-stream", "application/json"})
+    Flux<Order> scanOrders(
+            @RequestParam(required = false) Order.Status status,
+            @RequestParam(defaultValue = "0") int afterId
+    );
+
     @Operation(
             summary = "${api.order.create-order.description}",
             description = "${api.order.create-order.notes}")
@@ -0,0 +1,29 @@
+package com.example.mutual.api.direct;
+
+import com.example.mutual.api.core.cargo.Cargo;
+import com.example.mutual.api.core.order.Order;
+import com.example.mutual.api.core.route.Route;
+import com.example.mutual.api.core.store.Store;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Map;
+
+/**
+ * An order with its cargo, stores and route. A part that could not be read is null,
+ * {@code failures} tells why, by the name of the part: cargo, fromStore, toStore, route.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class OrderView {
+    private Order order;
+    private Cargo cargo;
+    private Store fromStore;
+    private Store toStore;
+    private Route route;
+    private Map<String, String> failures;
+}
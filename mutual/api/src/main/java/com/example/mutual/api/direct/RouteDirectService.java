@@ -1,5 +1,6 @@
 package com.example.mutual.api.direct;
 
+import com.example.mutual.api.core.BulkItemResult;
 import com.example.mutual.api.core.route.Route;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -8,8 +9,11 @@ import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 @SecurityRequirement(name = "security_auth")
 @Tag(name = "Route", description = "REST API for route information.")
 @RequestMapping("/api/v1/routes")
@@ -20,6 +24,7 @@ public interface RouteDirectService {
             description = "${api.route.get-route.notes}")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+            @ApiResponse(responseCode = "304", description = "${api.responseCodes.notModified.description}"),
             @ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}"),
             @ApiResponse(responseCode = "404", description = "${api.responseCodes.notFound.description}"),
             @ApiResponse(responseCode = "422", description = "${api.responseCodes.unprocessableEntity.description}")
@@ -29,6 +34,32 @@ public interface RouteDirectService {
             produces = "application/json")
     Mono<Route> getRoute(@PathVariable int routeId);
 
+    @Operation(
+            summary = "${api.route.get-routes.description}",
+            description = "${api.route.get-routes.notes}")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+            @ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}"),
+            @ApiResponse(responseCode = "422", description = "${api.responseCodes.unprocessableEntity.description}")
+    })
+    @GetMapping(
+            value = "/route",
+            produces = {"application/json", "application/x-ndjson"})
+    Flux<Route> getRoutes(@RequestParam List<Integer> ids);
+
+    @Operation(
+            summary = "${api.route.scan-routes.description}",
+            description = "${api.route.scan-routes.notes}")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+            @ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}"),
+            @ApiResponse(responseCode = "422", description = "${api.responseCodes.unprocessableEntity.description}")
+    })
+    @GetMapping(
+            value = "/scan",
+            produces = {"application/x-ndjson", "text/event-stream", "application/json"})
+    Flux<Route> scanRoutes(@RequestParam(defaultValue = "0") int afterId);
+
     @Operation(
             summary = "${api.route.create-route.description}",
             description = "${api.route.create-route.notes}")
@@ -65,4 +96,17 @@ public interface RouteDirectService {
     @ResponseStatus(HttpStatus.ACCEPTED)
     @DeleteMapping(value = "/route/{routeId}")
     Mono<Void> deleteRoute(@PathVariable int routeId);
+
+    @Operation(
+            summary = "${api.route.bulk-routes.description}",
+            description = "${api.route.bulk-routes.notes}")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+            @ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}")
+    })
+    @PostMapping(
+            value = "/route/bulk",
+            consumes = "application/json",
+            produces = "application/json")
+    Flux<BulkItemResult> bulkRoutes(@RequestBody List<Route> body);
 }
@@ -1,6 +1,8 @@
 package com.example.mutual.api.direct;
 
+import com.example.mutual.api.core.BulkItemResult;
 import com.example.mutual.api.core.store.Store;
+import com.example.mutual.api.core.store.StoreCapacity;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
@@ -8,8 +10,11 @@ import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 @SecurityRequirement(name = "security_auth")
 @Tag(name = "Store", description = "REST API for store information.")
 @RequestMapping("/api/v1/stores")
@@ -20,6 +25,7 @@ public interface StoreDirectService {
             description = "${api.store.get-store.notes}")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+            @ApiResponse(responseCode = "304", description = "${api.responseCodes.notModified.description}"),
             @ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}"),
             @ApiResponse(responseCode = "404", description = "${api.responseCodes.notFound.description}"),
             @ApiResponse(responseCode = "422", description = "${api.responseCodes.unprocessableEntity.description}")
@@ -29,6 +35,32 @@ public interface StoreDirectService {
             produces = "application/json")
     Mono<Store> getStore(@PathVariable int storeId);
 
+    @Operation(
+            summary = "${api.store.get-stores.description}",
+            description = "${api.store.get-stores.notes}")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+            @ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}"),
+            @ApiResponse(responseCode = "422", description = "${api.responseCodes.unprocessableEntity.description}")
+    })
+    @GetMapping(
+            value = "/store",
+            produces = {"application/json", "application/x-ndjson"})
+    Flux<Store> getStores(@RequestParam List<Integer> ids);
+
+    @Operation(
+            summary = "${api.store.scan-stores.description}",
+            description = "${api.store.scan-stores.notes}")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+            @ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}"),
+            @ApiResponse(responseCode = "422", description = "${api.responseCodes.unprocessableEntity.description}")
+    })
+    @GetMapping(
+            value = "/scan",
+            produces = {"application/x-ndjson", "text/event-stream", "application/json"})
+    Flux<Store> scanStores(@RequestParam(defaultValue = "0") int afterId);
+
     @Operation(
             summary = "${api.store.create-store.description}",
             description = "${api.store.create-store.notes}")
@@ -65,4 +97,43 @@ public interface StoreDirectService {
     @ResponseStatus(HttpStatus.ACCEPTED)
     @DeleteMapping(value = "/store/{storeId}")
     Mono<Void> deleteStore(@PathVariable int storeId);
+
+    @Operation(
+            summary = "${api.store.bulk-stores.description}",
+            description = "${api.store.bulk-stores.notes}")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+            @ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}")
+    })
+    @PostMapping(
+            value = "/store/bulk",
+            consumes = "application/json",
+            produces = "application/json")
+    Flux<BulkItemResult> bulkStores(@RequestBody List<Store> body);
+
+    @Operation(
+            summary = "${api.store.reserve-capacity.description}",
+            description = "${api.store.reserve-capacity.notes}")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+            @ApiResponse(responseCode = "404", description = "${api.responseCodes.notFound.description}"),
+            @ApiResponse(responseCode = "422", description = "${api.responseCodes.unprocessableEntity.description}")
+    })
+    @PostMapping(
+            value = "/store/{storeId}/reserve",
+            produces = "application/json")
+    Mono<StoreCapacity> reserveCapacity(@PathVariable int storeId, @RequestParam int units);
+
+    @Operation(
+            summary = "${api.store.release-capacity.description}",
+            description = "${api.store.release-capacity.notes}")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+            @ApiResponse(responseCode = "404", description = "${api.responseCodes.notFound.description}"),
+            @ApiResponse(responseCode = "422", description = "${api.responseCodes.unprocessableEntity.description}")
+    })
+    @PostMapping(
+            value = "/store/{storeId}/release",
+            produces = "application/json")
+    Mono<StoreCapacity> releaseCapacity(@PathVariable int storeId, @RequestParam int units);
 }
@@ -0,0 +1,40 @@
+package com.example.mutual.api.event;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Reads the epoch millis of an event, and the ISO date time or the decimal epoch seconds
+ * of the events written before, so both formats can be consumed during a rolling upgrade.
+ */
+public class EpochMillisDeserializer extends StdDeserializer<Long> {
+
+    public EpochMillisDeserializer() {
+        super(Long.class);
+    }
+
+    @Override
+    public Long deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getLongValue();
+        }
+        if (token == JsonToken.VALUE_NUMBER_FLOAT) {
+            return parser.getDecimalValue().movePointRight(3).longValue();
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            try {
+                return ZonedDateTime.parse(parser.getText()).toInstant().toEpochMilli();
+            } catch (DateTimeParseException e) {
+                return (Long) context.handleWeirdStringValue(Long.class, parser.getText(), e.getMessage());
+            }
+        }
+        return (Long) context.handleUnexpectedToken(Long.class, parser);
+    }
+}
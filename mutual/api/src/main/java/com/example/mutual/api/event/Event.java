@@ -1,38 +1,43 @@
 package com.example.mutual.api.event;
 
-import com.fasterxml.jackson.databind.annotation.JsonSerialize;
-import com.fasterxml.jackson.datatype.jsr310.ser.ZonedDateTimeSerializer;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 
-import java.time.ZonedDateTime;
-
-import static java.time.ZonedDateTime.now;
+import java.util.concurrent.ThreadLocalRandom;
 
+/**
+ * Envelope of the crud and revise events. The event id is random, the creation time is epoch millis,
+ * both are cheap to make on every request. Schema version 0 marks an event of the first format,
+ * with an ISO date time and no id.
+ */
 @Getter
 @NoArgsConstructor(force = true)
+@AllArgsConstructor
 public class Event<K, T> {
+    public static final int SCHEMA_VERSION = 2;
+
     public enum Type {
         CREATE,
         UPDATE,
         DELETE
     }
 
+    private final long eventId;
+    private final int schemaVersion;
     private final Type eventType;
     private final K key;
     private final T data;
-    private final ZonedDateTime eventCreatedAt;
+    @JsonDeserialize(using = EpochMillisDeserializer.class)
+    private final long eventCreatedAt;
 
     public Event(Type eventType, K key, T data) {
+        this.eventId = ThreadLocalRandom.current().nextLong();
+        this.schemaVersion = SCHEMA_VERSION;
         this.eventType = eventType;
         this.key = key;
         this.data = data;
-        this.eventCreatedAt = now();
-    }
-
-    @JsonSerialize(using = ZonedDateTimeSerializer.class)
-    public ZonedDateTime getEventCreatedAt() {
-        return eventCreatedAt;
+        this.eventCreatedAt = System.currentTimeMillis();
     }
 }
-
@@ -1,38 +1,43 @@
 package com.example.mutual.api.event;
 
-import com.fasterxml.jackson.databind.annotation.JsonSerialize;
-import com.fasterxml.jackson.datatype.jsr310.ser.ZonedDateTimeSerializer;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 
-import java.time.ZonedDateTime;
-
-import static java.time.ZonedDateTime.now;
+import java.util.concurrent.ThreadLocalRandom;
 
+/**
+ * Envelope of the route task events, the same as {@link Event}.
+ */
 @Getter
 @NoArgsConstructor(force = true)
+@AllArgsConstructor
 public class EventTask<K, T> {
+    public static final int SCHEMA_VERSION = 2;
+
     public enum Type {
         FIND_ROUTE,
         ROUTE_FOUND,
+        // the task comes back with no route, appended: the binary codec writes the ordinal
+        ROUTE_NOT_FOUND,
 
     }
 
+    private final long eventId;
+    private final int schemaVersion;
     private final Type eventType;
     private final K key;
     private final T data;
-    private final ZonedDateTime eventCreatedAt;
+    @JsonDeserialize(using = EpochMillisDeserializer.class)
+    private final long eventCreatedAt;
 
     public EventTask(Type eventType, K key, T data) {
+        this.eventId = ThreadLocalRandom.current().nextLong();
+        this.schemaVersion = SCHEMA_VERSION;
         this.eventType = eventType;
         this.key = key;
         this.data = data;
-        this.eventCreatedAt = now();
-    }
-
-    @JsonSerialize(using = ZonedDateTimeSerializer.class)
-    public ZonedDateTime getEventCreatedAt() {
-        return eventCreatedAt;
+        this.eventCreatedAt = System.currentTimeMillis();
     }
 }
-
@@ -0,0 +1,130 @@
+package com.example.mutual.util.event;
+
+import com.example.mutual.api.core.store.Store;
+import com.example.mutual.api.event.Event;
+import com.example.mutual.util.event.binary.BinaryEventCodec;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.datatype.jsr310.ser.ZonedDateTimeSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of making a crud event, encoding it for Kafka and writing it to the debug log, per event.
+ * The gc profiler reports the allocation per event ({@code gc.alloc.rate.norm}):
+ * <ul>
+ * <li>{@code legacy} - the previous envelope, a ZonedDateTime.now() per event, serialized by the
+ * ObjectMapper for the send and once more for the log</li>
+ * <li>{@code envelope} - the epoch millis envelope, encoded once by the pre-built writer of EventEncoder,
+ * the log reuses the bytes</li>
+ * <li>{@code binary} - the same envelope in the {@code application/x-event-binary} layout</li>
+ * </ul>
+ * and the consumer side, {@code readJson} against {@code readBinary}.
+ * Run: ./gradlew :mutual:util:jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EventEncodingBenchmark {
+    private static final String BINDING = "store-crud";
+    private static final TypeReference<Event<Integer, Store>> EVENT_TYPE = new TypeReference<>() {
+    };
+
+    private ObjectMapper objectMapper;
+    private EventEncoder encoder;
+    private EventEncoder binaryEncoder;
+    private Store store;
+    private byte[] jsonPayload;
+    private byte[] binaryPayload;
+
+    @Setup
+    public void setup() {
+        // the Spring Boot defaults of the services
+        objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        encoder = new EventEncoder(objectMapper);
+        binaryEncoder = new EventEncoder(objectMapper, bindingName -> BinaryEventCodec.CONTENT_TYPE);
+        store = new Store(1, "dom 33 ul Centralnaya, gorod Minsk, Minsk region", 1000, 0, null);
+        Event<Integer, Store> event = new Event<>(Event.Type.CREATE, store.getStoreId(), store);
+        jsonPayload = encoder.encode(BINDING, event).payload();
+        binaryPayload = binaryEncoder.encode(BINDING, event).payload();
+    }
+
+    @Benchmark
+    public void legacy(Blackhole blackhole) throws JsonProcessingException {
+        LegacyEvent<Integer, Store> event = new LegacyEvent<>(Event.Type.CREATE, store.getStoreId(), store);
+        blackhole.consume(objectMapper.writeValueAsBytes(event));
+        blackhole.consume(objectMapper.writeValueAsString(event));
+    }
+
+    @Benchmark
+    public void envelope(Blackhole blackhole) {
+        EncodedEvent event = encoder.encode(BINDING, new Event<>(Event.Type.CREATE, store.getStoreId(), store));
+        blackhole.consume(event.payload());
+        blackhole.consume(event.toString());
+    }
+
+    @Benchmark
+    public void binary(Blackhole blackhole) {
+        EncodedEvent event = binaryEncoder.encode(BINDING, new Event<>(Event.Type.CREATE, store.getStoreId(), store));
+        blackhole.consume(event.payload());
+        blackhole.consume(event.toString());
+    }
+
+    @Benchmark
+    public Event<Integer, Store> readJson() throws IOException {
+        return objectMapper.readValue(jsonPayload, EVENT_TYPE);
+    }
+
+    @Benchmark
+    public Object readBinary() {
+        return BinaryEventCodec.decode(binaryPayload);
+    }
+
+    // the envelope before the epoch millis timestamp
+    public static class LegacyEvent<K, T> {
+        private final Event.Type eventType;
+        private final K key;
+        private final T data;
+        private final ZonedDateTime eventCreatedAt;
+
+        LegacyEvent(Event.Type eventType, K key, T data) {
+            this.eventType = eventType;
+            this.key = key;
+            this.data = data;
+            this.eventCreatedAt = ZonedDateTime.now();
+        }
+
+        public Event.Type getEventType() {
+            return eventType;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        public T getData() {
+            return data;
+        }
+
+        @JsonSerialize(using = ZonedDateTimeSerializer.class)
+        public ZonedDateTime getEventCreatedAt() {
+            return eventCreatedAt;
+        }
+    }
+}
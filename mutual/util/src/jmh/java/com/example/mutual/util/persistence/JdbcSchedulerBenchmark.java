@@ -0,0 +1,92 @@
+package com.example.mutual.util.persistence;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 1000 clients doing GETs at the same time, a GET is a blocking JDBC call on the jdbcScheduler:
+ * it takes one of the 10 connections of the pool (a Semaphore for the Hikari pool) for a 2 ms query.
+ * Throughput is the GETs per second, SampleTime gives the p0.99 of a GET, {@code rejected} counts
+ * the GETs the scheduler did not take:
+ * <ul>
+ * <li>{@code bounded-elastic} - 10 threads, 100 waiting calls, the rest of a burst is rejected</li>
+ * <li>{@code connection-bound} - a thread per connection, the calls wait in the queue</li>
+ * <li>{@code virtual} - a virtual thread per call, only on a Java 21 JVM, on Java 17 it is connection-bound</li>
+ * </ul>
+ * Run: ./gradlew :mutual:util:jmh, the virtual mode with the jmh jar on Java 21:
+ * java -jar mutual/util/build/libs/util-0.0.1-SNAPSHOT-jmh.jar JdbcSchedulerBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(1000)
+public class JdbcSchedulerBenchmark {
+    private static final int POOL_SIZE = 10;
+    private static final long QUERY_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    @Param({"bounded-elastic", "connection-bound", "virtual"})
+    public String mode;
+
+    private Scheduler scheduler;
+    private Semaphore connections;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("benchmark", Map.<String, Object>of(
+                "app.jdbc.scheduler-mode", mode,
+                "spring.datasource.hikari.maximum-pool-size", POOL_SIZE)));
+        scheduler = new JdbcSchedulers(environment).create();
+        connections = new Semaphore(POOL_SIZE, true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        scheduler.dispose();
+    }
+
+    @Benchmark
+    public Integer get(Outcomes outcomes) {
+        try {
+            return Mono.fromCallable(this::query).subscribeOn(scheduler).block();
+        } catch (RejectedExecutionException e) {
+            outcomes.rejected++;
+            return null;
+        }
+    }
+
+    private Integer query() throws InterruptedException {
+        connections.acquire();
+        try {
+            TimeUnit.NANOSECONDS.sleep(QUERY_NANOS);
+            return 1;
+        } finally {
+            connections.release();
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Outcomes {
+        public long rejected;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.mutual.util.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.function.Function;
+
+/**
+ * Bounded in-process read-through cache of the entities by id. A hit is answered on the calling thread,
+ * a miss is loaded on the given scheduler, one load per key at a time. A missing entity (null) is not cached.
+ * <p>
+ * The writing instance invalidates a key after the commit, the other instances when they receive the revise
+ * event of the entity; the write TTL bounds the staleness if an event is lost. An invalidation waits for a load
+ * of the same key in progress, so a value read before the commit is not left behind.
+ * The cached instance itself is handed out, callers must not modify it.
+ */
+public class ReadThroughCache<K, V> {
+    private final Cache<K, V> cache;
+
+    public ReadThroughCache(String name, long maximumSize, Duration timeToLive, MeterRegistry registry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, name);
+    }
+
+    public Mono<V> get(K key, Function<K, V> loader, Scheduler scheduler) {
+        return Mono.defer(() -> {
+            V cached = cache.getIfPresent(key);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            return Mono.fromCallable(() -> cache.get(key, loader)).subscribeOn(scheduler);
+        });
+    }
+
+    public void invalidate(K key) {
+        cache.invalidate(key);
+    }
+
+    public void invalidateAll(Collection<K> keys) {
+        cache.invalidateAll(keys);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+}
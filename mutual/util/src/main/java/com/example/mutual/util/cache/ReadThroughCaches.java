@@ -0,0 +1,40 @@
+package com.example.mutual.util.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Makes the read-through caches of the services. The settings of a cache are
+ * {@code app.read-cache.<name>.maximum-size} and {@code app.read-cache.<name>.time-to-live},
+ * with {@code app.read-cache.maximum-size} and {@code app.read-cache.time-to-live} as the defaults.
+ */
+@Component
+@ConditionalOnClass(name = "com.github.benmanes.caffeine.cache.Caffeine")
+public class ReadThroughCaches {
+    private static final Logger LOG = LoggerFactory.getLogger(ReadThroughCaches.class);
+    private static final String PREFIX = "app.read-cache.";
+
+    private final Environment environment;
+    private final MeterRegistry registry;
+
+    public ReadThroughCaches(Environment environment, MeterRegistry registry) {
+        this.environment = environment;
+        this.registry = registry;
+    }
+
+    public <K, V> ReadThroughCache<K, V> create(String name) {
+        long maximumSize = environment.getProperty(PREFIX + name + ".maximum-size", Long.class,
+                environment.getProperty(PREFIX + "maximum-size", Long.class, 10000L));
+        Duration timeToLive = environment.getProperty(PREFIX + name + ".time-to-live", Duration.class,
+                environment.getProperty(PREFIX + "time-to-live", Duration.class, Duration.ofSeconds(30)));
+        LOG.info("Creates a read-through cache {}, maximum size = {}, time to live = {}",
+                name, maximumSize, timeToLive);
+        return new ReadThroughCache<>(name, maximumSize, timeToLive, registry);
+    }
+}
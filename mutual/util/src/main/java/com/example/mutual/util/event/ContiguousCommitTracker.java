@@ -0,0 +1,62 @@
+package com.example.mutual.util.event;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Commits a partition only up to the last record such that it and every record before it are done,
+ * so a record finished early on a fast lane never moves the committed offset past a slower one.
+ */
+final class ContiguousCommitTracker {
+    private final Map<Integer, Partition> partitions = new ConcurrentHashMap<>();
+
+    void dispatched(RecordPosition position) {
+        partitions.computeIfAbsent(position.partition(), partition -> new Partition()).dispatched(position);
+    }
+
+    void completed(RecordPosition position) {
+        Partition partition = partitions.get(position.partition());
+        if (partition != null) {
+            partition.completed(position);
+        }
+    }
+
+    int pending() {
+        return partitions.values().stream().mapToInt(Partition::pending).sum();
+    }
+
+    private static final class Partition {
+        private final ArrayDeque<RecordPosition> inFlight = new ArrayDeque<>();
+        private final Set<Long> done = new HashSet<>();
+        private long lastDispatched = -1;
+
+        synchronized void dispatched(RecordPosition position) {
+            // an offset going back means a rebalance or a seek, the old records will be delivered again
+            if (position.offset() <= lastDispatched) {
+                inFlight.clear();
+                done.clear();
+            }
+            lastDispatched = position.offset();
+            inFlight.addLast(position);
+        }
+
+        // commits under the lock, so the committed offset only ever moves forward
+        synchronized void completed(RecordPosition position) {
+            done.add(position.offset());
+            RecordPosition frontier = null;
+            while (!inFlight.isEmpty() && done.remove(inFlight.peekFirst().offset())) {
+                frontier = inFlight.pollFirst();
+            }
+            if (frontier != null) {
+                frontier.commit().run();
+            }
+        }
+
+        synchronized int pending() {
+            return inFlight.size();
+        }
+    }
+}
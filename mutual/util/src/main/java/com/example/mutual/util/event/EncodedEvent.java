@@ -0,0 +1,35 @@
+package com.example.mutual.util.event;
+
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Payload of an encoded event and its content type.
+ */
+public record EncodedEvent(byte[] payload, String contentType) {
+
+    public static EncodedEvent json(byte[] payload) {
+        return new EncodedEvent(payload, MimeTypeUtils.APPLICATION_JSON_VALUE);
+    }
+
+    public boolean isJson() {
+        return MimeTypeUtils.APPLICATION_JSON_VALUE.equals(contentType);
+    }
+
+    public MessageBuilder<byte[]> message(Object partitionKey) {
+        return MessageBuilder.withPayload(payload)
+                .setHeader("partitionKey", partitionKey)
+                .setHeader(MessageHeaders.CONTENT_TYPE, contentType);
+    }
+
+    // for the log: JSON as it is, binary by size
+    @Override
+    public String toString() {
+        return isJson()
+                ? new String(payload, StandardCharsets.UTF_8)
+                : contentType + " (" + payload.length + " bytes)";
+    }
+}
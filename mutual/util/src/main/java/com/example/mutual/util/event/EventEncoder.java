@@ -0,0 +1,74 @@
+package com.example.mutual.util.event;
+
+import com.example.mutual.api.event.Event;
+import com.example.mutual.api.event.EventTask;
+import com.example.mutual.util.event.binary.BinaryEventCodec;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.stream.config.BindingServiceProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Encodes an event once, with writers built up front for the envelope classes, and the same bytes go to
+ * the broker and to the log. A byte[] payload with a content type is passed through by the message
+ * converters of the binder, so the event is not serialized a second time on the send.
+ * <p>
+ * The format follows the content type of the binding: {@code application/x-event-binary} selects
+ * {@link BinaryEventCodec}, the events without a binary schema and the other bindings are JSON.
+ */
+@Component
+public class EventEncoder {
+    private final ObjectWriter eventWriter;
+    private final ObjectWriter eventTaskWriter;
+    private final Function<String, String> bindingContentType;
+    private final Map<String, Boolean> binaryBindings = new ConcurrentHashMap<>();
+
+    // JSON for every binding
+    public EventEncoder(ObjectMapper objectMapper) {
+        this(objectMapper, bindingName -> null);
+    }
+
+    @Autowired
+    public EventEncoder(ObjectMapper objectMapper, BindingServiceProperties bindingServiceProperties) {
+        this(objectMapper, bindingName -> bindingServiceProperties.getBindingProperties(bindingName).getContentType());
+    }
+
+    public EventEncoder(ObjectMapper objectMapper, Function<String, String> bindingContentType) {
+        this.eventWriter = objectMapper.writerFor(Event.class);
+        this.eventTaskWriter = objectMapper.writerFor(EventTask.class);
+        this.bindingContentType = bindingContentType;
+    }
+
+    public EncodedEvent encode(String bindingName, Event<?, ?> event) {
+        if (isBinary(bindingName) && BinaryEventCodec.supports(event.getKey(), event.getData())) {
+            return new EncodedEvent(BinaryEventCodec.encode(event), BinaryEventCodec.CONTENT_TYPE);
+        }
+        try {
+            return EncodedEvent.json(eventWriter.writeValueAsBytes(event));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Event is not serializable: " + event.getEventType(), e);
+        }
+    }
+
+    public EncodedEvent encode(String bindingName, EventTask<?, ?> event) {
+        if (isBinary(bindingName) && BinaryEventCodec.supports(event.getKey(), event.getData())) {
+            return new EncodedEvent(BinaryEventCodec.encode(event), BinaryEventCodec.CONTENT_TYPE);
+        }
+        try {
+            return EncodedEvent.json(eventTaskWriter.writeValueAsBytes(event));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Event task is not serializable: " + event.getEventType(), e);
+        }
+    }
+
+    private boolean isBinary(String bindingName) {
+        return binaryBindings.computeIfAbsent(bindingName,
+                binding -> BinaryEventCodec.CONTENT_TYPE.equals(bindingContentType.apply(binding)));
+    }
+}
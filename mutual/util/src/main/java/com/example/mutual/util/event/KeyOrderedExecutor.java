@@ -0,0 +1,82 @@
+package com.example.mutual.util.event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Runs consumed records on a bounded set of lanes chosen by the record key: records of one key are
+ * handled strictly one after another, different keys run in parallel. At most {@code maxInFlight}
+ * records are requested from upstream ahead of completion, and a partition is committed only up to
+ * its last contiguously completed record.
+ * <p>
+ * The handler is expected to deal with its own failures (e.g. dead letter the record); a failure that
+ * still reaches the executor is logged and the record counts as done, so one record cannot stall the
+ * commits of its partition.
+ */
+public class KeyOrderedExecutor {
+    private static final Logger LOG = LoggerFactory.getLogger(KeyOrderedExecutor.class);
+
+    private final int lanes;
+    private final int maxInFlight;
+    private final ContiguousCommitTracker tracker = new ContiguousCommitTracker();
+
+    public KeyOrderedExecutor(int lanes, int maxInFlight) {
+        if (lanes < 1 || maxInFlight < lanes) {
+            throw new IllegalArgumentException(
+                    "Invalid executor size, lanes: " + lanes + ", maxInFlight: " + maxInFlight);
+        }
+        this.lanes = lanes;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * @param keyOf      key of the record, equal keys share a lane
+     * @param positionOf position to commit after the record is done, null when there is nothing to commit
+     * @param handler    processing of one record
+     */
+    public <E> Mono<Void> execute(
+            Flux<E> records,
+            Function<E, Object> keyOf,
+            Function<E, RecordPosition> positionOf,
+            Function<E, Mono<?>> handler
+    ) {
+        return records
+                .map(record -> {
+                    RecordPosition position = positionOf.apply(record);
+                    if (position != null) {
+                        tracker.dispatched(position);
+                    }
+                    return new Dispatched<>(record, position);
+                })
+                .groupBy(dispatched -> Math.floorMod(Objects.hashCode(keyOf.apply(dispatched.record())), lanes),
+                        maxInFlight)
+                .flatMap(lane -> lane.concatMap(dispatched -> handle(dispatched, handler), 1), lanes)
+                .then();
+    }
+
+    public int pendingCommits() {
+        return tracker.pending();
+    }
+
+    private <E> Mono<Void> handle(Dispatched<E> dispatched, Function<E, Mono<?>> handler) {
+        return Mono.defer(() -> handler.apply(dispatched.record()))
+                .then()
+                .onErrorResume(error -> {
+                    LOG.error("Record {} failed and is skipped: {}", dispatched.position(), error.toString());
+                    return Mono.empty();
+                })
+                .then(Mono.fromRunnable(() -> {
+                    if (dispatched.position() != null) {
+                        tracker.completed(dispatched.position());
+                    }
+                }));
+    }
+
+    private record Dispatched<E>(E record, RecordPosition position) {
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.mutual.util.event;
+
+/**
+ * Position of a consumed record and the action that commits the partition up to and including it.
+ */
+public record RecordPosition(int partition, long offset, Runnable commit) {
+}
@@ -0,0 +1,109 @@
+package com.example.mutual.util.event.binary;
+
+import com.example.mutual.api.event.Event;
+import com.example.mutual.api.event.EventTask;
+import org.springframework.util.MimeType;
+
+/**
+ * Compact binary form of the event envelopes for the internal topics:
+ * <pre>
+ * format   1 byte
+ * envelope 1 byte, Event or EventTask
+ * schema   varint, payload schema id of {@link EventSchemaRegistry}, 0 without a payload
+ * eventId  8 bytes
+ * version  varint, schema version of the envelope
+ * type     varint, event type ordinal
+ * key      presence byte + varint
+ * created  varint, epoch millis
+ * payload  fields of the payload schema
+ * </pre>
+ * Integers are zigzag varints, so there are no field names and no number text to parse.
+ */
+public final class BinaryEventCodec {
+    public static final String CONTENT_TYPE = "application/x-event-binary";
+    public static final MimeType MIME_TYPE = MimeType.valueOf(CONTENT_TYPE);
+
+    private static final int FORMAT = 1;
+    private static final int EVENT = 1;
+    private static final int EVENT_TASK = 2;
+    // the fixed part of the envelope and a small payload
+    private static final int INITIAL_SIZE = 64;
+
+    private BinaryEventCodec() {
+    }
+
+    /**
+     * @return true when the key and the payload of the event have a binary layout
+     */
+    public static boolean supports(Object key, Object data) {
+        return (key == null || key instanceof Integer)
+                && (data == null || EventSchemaRegistry.byType(data.getClass()) != null);
+    }
+
+    public static byte[] encode(Event<?, ?> event) {
+        BinaryOutput output = header(EVENT, event.getData(), event.getEventId(), event.getSchemaVersion());
+        output.writeInt(event.getEventType().ordinal());
+        return body(output, event.getKey(), event.getEventCreatedAt(), event.getData());
+    }
+
+    public static byte[] encode(EventTask<?, ?> event) {
+        BinaryOutput output = header(EVENT_TASK, event.getData(), event.getEventId(), event.getSchemaVersion());
+        output.writeInt(event.getEventType().ordinal());
+        return body(output, event.getKey(), event.getEventCreatedAt(), event.getData());
+    }
+
+    /**
+     * @return decoded {@link Event} or {@link EventTask}
+     */
+    public static Object decode(byte[] payload) {
+        BinaryInput input = new BinaryInput(payload);
+        int format = input.readByte();
+        if (format != FORMAT) {
+            throw new IllegalArgumentException("Unknown binary event format: " + format);
+        }
+        int envelope = input.readByte();
+        int schemaId = input.readInt();
+        long eventId = input.readFixedLong();
+        int schemaVersion = input.readInt();
+        int type = input.readInt();
+        Integer key = input.readNullableInt();
+        long createdAt = input.readLong();
+        Object data = schemaId == EventSchemaRegistry.NO_PAYLOAD ? null : EventSchemaRegistry.byId(schemaId).read(input);
+        return switch (envelope) {
+            case EVENT -> new Event<>(eventId, schemaVersion, Event.Type.values()[type], key, data, createdAt);
+            case EVENT_TASK ->
+                    new EventTask<>(eventId, schemaVersion, EventTask.Type.values()[type], key, data, createdAt);
+            default -> throw new IllegalArgumentException("Unknown binary event envelope: " + envelope);
+        };
+    }
+
+    private static BinaryOutput header(int envelope, Object data, long eventId, int schemaVersion) {
+        BinaryOutput output = new BinaryOutput(INITIAL_SIZE);
+        output.writeByte(FORMAT);
+        output.writeByte(envelope);
+        output.writeInt(data == null ? EventSchemaRegistry.NO_PAYLOAD : schema(data).id());
+        output.writeFixedLong(eventId);
+        output.writeInt(schemaVersion);
+        return output;
+    }
+
+    private static byte[] body(BinaryOutput output, Object key, long createdAt, Object data) {
+        if (key != null && !(key instanceof Integer)) {
+            throw new IllegalArgumentException("Binary events have integer keys: " + key.getClass().getName());
+        }
+        output.writeNullableInt((Integer) key);
+        output.writeLong(createdAt);
+        if (data != null) {
+            schema(data).write(output, data);
+        }
+        return output.toByteArray();
+    }
+
+    private static PayloadSchema<?> schema(Object data) {
+        PayloadSchema<?> schema = EventSchemaRegistry.byType(data.getClass());
+        if (schema == null) {
+            throw new IllegalArgumentException("No binary schema for " + data.getClass().getName());
+        }
+        return schema;
+    }
+}
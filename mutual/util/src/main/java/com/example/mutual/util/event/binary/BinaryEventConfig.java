@@ -0,0 +1,15 @@
+package com.example.mutual.util.event.binary;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.converter.MessageConverter;
+
+@Configuration
+public class BinaryEventConfig {
+
+    // picked up by the binder next to its default converters
+    @Bean
+    public MessageConverter binaryEventMessageConverter() {
+        return new BinaryEventMessageConverter();
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.mutual.util.event.binary;
+
+import com.example.mutual.api.event.Event;
+import com.example.mutual.api.event.EventTask;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+
+/**
+ * Reads and writes the events of the bindings with the {@code application/x-event-binary} content type.
+ * Only the messages with this content type are converted, the JSON messages of the same topic go to the
+ * default converters, so the producers of a topic can be switched one by one.
+ */
+public class BinaryEventMessageConverter extends AbstractMessageConverter {
+
+    public BinaryEventMessageConverter() {
+        super(BinaryEventCodec.MIME_TYPE);
+        setStrictContentTypeMatch(true);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return Event.class.isAssignableFrom(clazz) || EventTask.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected Object convertFromInternal(Message<?> message, Class<?> targetClass, Object conversionHint) {
+        if (!(message.getPayload() instanceof byte[] payload)) {
+            return null;
+        }
+        Object event = BinaryEventCodec.decode(payload);
+        return targetClass.isInstance(event) ? event : null;
+    }
+
+    @Override
+    protected Object convertToInternal(Object payload, MessageHeaders headers, Object conversionHint) {
+        if (payload instanceof Event<?, ?> event && BinaryEventCodec.supports(event.getKey(), event.getData())) {
+            return BinaryEventCodec.encode(event);
+        }
+        if (payload instanceof EventTask<?, ?> event && BinaryEventCodec.supports(event.getKey(), event.getData())) {
+            return BinaryEventCodec.encode(event);
+        }
+        return null;
+    }
+}
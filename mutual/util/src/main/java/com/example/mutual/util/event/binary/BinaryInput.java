@@ -0,0 +1,84 @@
+package com.example.mutual.util.event.binary;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the fields written by {@link BinaryOutput}, in the same order.
+ */
+public final class BinaryInput {
+    private final byte[] bytes;
+    private int position;
+
+    BinaryInput(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    public int readByte() {
+        return bytes[position++] & 0xFF;
+    }
+
+    public boolean readBoolean() {
+        return readByte() != 0;
+    }
+
+    public int readInt() {
+        return (int) readLong();
+    }
+
+    public long readLong() {
+        long zigzag = 0;
+        int shift = 0;
+        byte next;
+        do {
+            next = bytes[position++];
+            zigzag |= (long) (next & 0x7F) << shift;
+            shift += 7;
+        } while (next < 0);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    public long readFixedLong() {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[position++] & 0xFF);
+        }
+        return value;
+    }
+
+    public Integer readNullableInt() {
+        return readBoolean() ? readInt() : null;
+    }
+
+    public String readString() {
+        int length = readInt() - 1;
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    public <E extends Enum<E>> E readEnum(E[] values) {
+        int ordinal = readInt() - 1;
+        return ordinal < 0 ? null : values[ordinal];
+    }
+
+    public List<Integer> readIntList() {
+        int size = readInt() - 1;
+        if (size < 0) {
+            return null;
+        }
+        List<Integer> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(readInt());
+        }
+        return values;
+    }
+
+    boolean hasRemaining() {
+        return position < bytes.length;
+    }
+}
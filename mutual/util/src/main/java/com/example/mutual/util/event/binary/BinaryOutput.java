@@ -0,0 +1,79 @@
+package com.example.mutual.util.event.binary;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Writes the fields of a binary event: zigzag varints, fixed 64-bit values and length prefixed UTF-8.
+ * A nullable value is written with a presence flag or as length + 1, where zero is null.
+ */
+public final class BinaryOutput {
+    private final ByteArrayOutputStream bytes;
+
+    BinaryOutput(int size) {
+        bytes = new ByteArrayOutputStream(size);
+    }
+
+    public void writeByte(int value) {
+        bytes.write(value);
+    }
+
+    public void writeBoolean(boolean value) {
+        bytes.write(value ? 1 : 0);
+    }
+
+    public void writeInt(int value) {
+        writeLong(value);
+    }
+
+    public void writeLong(long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            bytes.write((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        bytes.write((int) zigzag);
+    }
+
+    public void writeFixedLong(long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            bytes.write((int) (value >>> shift));
+        }
+    }
+
+    public void writeNullableInt(Integer value) {
+        writeBoolean(value != null);
+        if (value != null) {
+            writeInt(value);
+        }
+    }
+
+    public void writeString(String value) {
+        if (value == null) {
+            writeInt(0);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeInt(utf8.length + 1);
+        bytes.write(utf8, 0, utf8.length);
+    }
+
+    // ordinal + 1, zero is null
+    public void writeEnum(Enum<?> value) {
+        writeInt(value == null ? 0 : value.ordinal() + 1);
+    }
+
+    public void writeIntList(List<Integer> values) {
+        if (values == null) {
+            writeInt(0);
+            return;
+        }
+        writeInt(values.size() + 1);
+        values.forEach(this::writeInt);
+    }
+
+    byte[] toByteArray() {
+        return bytes.toByteArray();
+    }
+}
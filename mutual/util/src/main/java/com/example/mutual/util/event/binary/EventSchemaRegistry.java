@@ -0,0 +1,241 @@
+package com.example.mutual.util.event.binary;
+
+import com.example.mutual.api.core.cargo.Cargo;
+import com.example.mutual.api.core.order.Order;
+import com.example.mutual.api.core.route.Route;
+import com.example.mutual.api.core.route.RouteRuleType;
+import com.example.mutual.api.core.route.RouteTaskPayload;
+import com.example.mutual.api.core.store.Store;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Local stand-in of a schema registry: the payload schemas of the internal topics under fixed ids, known
+ * to every service at build time. A message carries the id of its payload schema, so a changed layout
+ * must be registered under a new id while the old one is still read. Enums are written by ordinal,
+ * new constants go to the end.
+ */
+public final class EventSchemaRegistry {
+    public static final int NO_PAYLOAD = 0;
+
+    public static final PayloadSchema<Store> STORE = new PayloadSchema<>(1, Store.class,
+            EventSchemaRegistry::writeStore, EventSchemaRegistry::readStore);
+    public static final PayloadSchema<Route> ROUTE = new PayloadSchema<>(2, Route.class,
+            EventSchemaRegistry::writeRoute, EventSchemaRegistry::readRoute);
+    public static final PayloadSchema<Cargo> CARGO = new PayloadSchema<>(3, Cargo.class,
+            EventSchemaRegistry::writeCargo, EventSchemaRegistry::readCargo);
+    public static final PayloadSchema<Order> ORDER = new PayloadSchema<>(4, Order.class,
+            EventSchemaRegistry::writeOrder, EventSchemaRegistry::readOrder);
+    public static final PayloadSchema<RouteTaskPayload> ROUTE_TASK = new PayloadSchema<>(5, RouteTaskPayload.class,
+            EventSchemaRegistry::writeRouteTask, EventSchemaRegistry::readRouteTask);
+    // the entities with their version, the layouts 1-4 without it are still read
+    public static final PayloadSchema<Store> STORE_VERSIONED = new PayloadSchema<>(6, Store.class,
+            EventSchemaRegistry::writeStoreVersioned, EventSchemaRegistry::readStoreVersioned);
+    public static final PayloadSchema<Route> ROUTE_VERSIONED = new PayloadSchema<>(7, Route.class,
+            EventSchemaRegistry::writeRouteVersioned, EventSchemaRegistry::readRouteVersioned);
+    public static final PayloadSchema<Cargo> CARGO_VERSIONED = new PayloadSchema<>(8, Cargo.class,
+            EventSchemaRegistry::writeCargoVersioned, EventSchemaRegistry::readCargoVersioned);
+    public static final PayloadSchema<Order> ORDER_VERSIONED = new PayloadSchema<>(9, Order.class,
+            EventSchemaRegistry::writeOrderVersioned, EventSchemaRegistry::readOrderVersioned);
+    // the entities with the id of their row, the ETag of a cached entity, the layouts 6-9 without it are still read
+    public static final PayloadSchema<Store> STORE_IDENTIFIED = new PayloadSchema<>(10, Store.class,
+            EventSchemaRegistry::writeStoreIdentified, EventSchemaRegistry::readStoreIdentified);
+    public static final PayloadSchema<Route> ROUTE_IDENTIFIED = new PayloadSchema<>(11, Route.class,
+            EventSchemaRegistry::writeRouteIdentified, EventSchemaRegistry::readRouteIdentified);
+    public static final PayloadSchema<Cargo> CARGO_IDENTIFIED = new PayloadSchema<>(12, Cargo.class,
+            EventSchemaRegistry::writeCargoIdentified, EventSchemaRegistry::readCargoIdentified);
+    public static final PayloadSchema<Order> ORDER_IDENTIFIED = new PayloadSchema<>(13, Order.class,
+            EventSchemaRegistry::writeOrderIdentified, EventSchemaRegistry::readOrderIdentified);
+
+    private static final Map<Integer, PayloadSchema<?>> BY_ID = new HashMap<>();
+    private static final Map<Class<?>, PayloadSchema<?>> BY_TYPE = new HashMap<>();
+
+    static {
+        List.of(STORE, ROUTE, CARGO, ORDER, STORE_VERSIONED, ROUTE_VERSIONED, CARGO_VERSIONED, ORDER_VERSIONED)
+                .forEach(schema -> BY_ID.put(schema.id(), schema));
+        List.of(ROUTE_TASK, STORE_IDENTIFIED, ROUTE_IDENTIFIED, CARGO_IDENTIFIED, ORDER_IDENTIFIED).forEach(schema -> {
+            BY_ID.put(schema.id(), schema);
+            BY_TYPE.put(schema.type(), schema);
+        });
+    }
+
+    private EventSchemaRegistry() {
+    }
+
+    public static PayloadSchema<?> byId(int id) {
+        PayloadSchema<?> schema = BY_ID.get(id);
+        if (schema == null) {
+            throw new IllegalArgumentException("Unknown payload schema: " + id);
+        }
+        return schema;
+    }
+
+    /**
+     * @return schema of the payload class or null, when the class has no binary layout
+     */
+    public static PayloadSchema<?> byType(Class<?> type) {
+        return BY_TYPE.get(type);
+    }
+
+    private static void writeStore(BinaryOutput output, Store store) {
+        output.writeInt(store.getStoreId());
+        output.writeString(store.getLocation());
+        output.writeInt(store.getCapacity());
+        output.writeInt(store.getUsedCapacity());
+        output.writeString(store.getServiceAddress());
+    }
+
+    private static Store readStore(BinaryInput input) {
+        return new Store(input.readInt(), input.readString(), input.readInt(), input.readInt(), input.readString());
+    }
+
+    private static void writeRoute(BinaryOutput output, Route route) {
+        output.writeInt(route.getRouteId());
+        output.writeInt(route.getFromStoreId());
+        output.writeInt(route.getToStoreId());
+        output.writeString(route.getPathFromTo());
+        output.writeInt(route.getDistanceFromTo());
+        output.writeInt(route.getMinutesFromTo());
+        output.writeIntList(route.getHops());
+        output.writeString(route.getServiceAddress());
+    }
+
+    private static Route readRoute(BinaryInput input) {
+        return new Route(input.readInt(), input.readInt(), input.readInt(), input.readString(),
+                input.readInt(), input.readInt(), input.readIntList(), input.readString());
+    }
+
+    private static void writeCargo(BinaryOutput output, Cargo cargo) {
+        output.writeInt(cargo.getCargoId());
+        output.writeString(cargo.getName());
+        output.writeInt(cargo.getWeight());
+        output.writeEnum(cargo.getStatus());
+        output.writeString(cargo.getServiceAddress());
+    }
+
+    private static Cargo readCargo(BinaryInput input) {
+        return new Cargo(input.readInt(), input.readString(), input.readInt(),
+                input.readEnum(Cargo.Status.values()), input.readString());
+    }
+
+    private static void writeOrder(BinaryOutput output, Order order) {
+        output.writeInt(order.getOrderId());
+        output.writeInt(order.getCargoId());
+        output.writeInt(order.getFromStoreId());
+        output.writeInt(order.getToStoreId());
+        output.writeEnum(order.getStatus());
+        output.writeString(order.getServiceAddress());
+    }
+
+    private static Order readOrder(BinaryInput input) {
+        return new Order(input.readInt(), input.readInt(), input.readInt(), input.readInt(),
+                input.readEnum(Order.Status.values()), input.readString());
+    }
+
+    private static void writeStoreVersioned(BinaryOutput output, Store store) {
+        writeStore(output, store);
+        output.writeInt(store.getVersion());
+    }
+
+    private static Store readStoreVersioned(BinaryInput input) {
+        Store store = readStore(input);
+        store.setVersion(input.readInt());
+        return store;
+    }
+
+    private static void writeRouteVersioned(BinaryOutput output, Route route) {
+        writeRoute(output, route);
+        output.writeInt(route.getVersion());
+    }
+
+    private static Route readRouteVersioned(BinaryInput input) {
+        Route route = readRoute(input);
+        route.setVersion(input.readInt());
+        return route;
+    }
+
+    private static void writeCargoVersioned(BinaryOutput output, Cargo cargo) {
+        writeCargo(output, cargo);
+        output.writeInt(cargo.getVersion());
+    }
+
+    private static Cargo readCargoVersioned(BinaryInput input) {
+        Cargo cargo = readCargo(input);
+        cargo.setVersion(input.readInt());
+        return cargo;
+    }
+
+    private static void writeOrderVersioned(BinaryOutput output, Order order) {
+        writeOrder(output, order);
+        output.writeInt(order.getVersion());
+    }
+
+    private static Order readOrderVersioned(BinaryInput input) {
+        Order order = readOrder(input);
+        order.setVersion(input.readInt());
+        return order;
+    }
+
+    private static void writeStoreIdentified(BinaryOutput output, Store store) {
+        writeStoreVersioned(output, store);
+        output.writeInt(store.getEntityId());
+    }
+
+    private static Store readStoreIdentified(BinaryInput input) {
+        Store store = readStoreVersioned(input);
+        store.setEntityId(input.readInt());
+        return store;
+    }
+
+    private static void writeRouteIdentified(BinaryOutput output, Route route) {
+        writeRouteVersioned(output, route);
+        output.writeInt(route.getEntityId());
+    }
+
+    private static Route readRouteIdentified(BinaryInput input) {
+        Route route = readRouteVersioned(input);
+        route.setEntityId(input.readInt());
+        return route;
+    }
+
+    private static void writeCargoIdentified(BinaryOutput output, Cargo cargo) {
+        writeCargoVersioned(output, cargo);
+        output.writeInt(cargo.getEntityId());
+    }
+
+    private static Cargo readCargoIdentified(BinaryInput input) {
+        Cargo cargo = readCargoVersioned(input);
+        cargo.setEntityId(input.readInt());
+        return cargo;
+    }
+
+    private static void writeOrderIdentified(BinaryOutput output, Order order) {
+        writeOrderVersioned(output, order);
+        output.writeInt(order.getEntityId());
+    }
+
+    private static Order readOrderIdentified(BinaryInput input) {
+        Order order = readOrderVersioned(input);
+        order.setEntityId(input.readInt());
+        return order;
+    }
+
+    // the route of a task is a found path, not an entity, it is kept in the layout without the version
+    private static void writeRouteTask(BinaryOutput output, RouteTaskPayload task) {
+        output.writeInt(task.getOrderId());
+        output.writeInt(task.getFromStoreId());
+        output.writeInt(task.getToStoreId());
+        output.writeBoolean(task.getRoute() != null);
+        if (task.getRoute() != null) {
+            writeRoute(output, task.getRoute());
+        }
+        output.writeEnum(task.getRuleType());
+    }
+
+    private static RouteTaskPayload readRouteTask(BinaryInput input) {
+        return new RouteTaskPayload(input.readInt(), input.readInt(), input.readInt(),
+                input.readBoolean() ? readRoute(input) : null, input.readEnum(RouteRuleType.values()));
+    }
+}
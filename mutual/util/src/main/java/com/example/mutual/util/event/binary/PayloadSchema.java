@@ -0,0 +1,20 @@
+package com.example.mutual.util.event.binary;
+
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Field layout of an event payload class under a fixed schema id.
+ */
+public record PayloadSchema<T>(
+        int id, Class<T> type, BiConsumer<BinaryOutput, T> writer, Function<BinaryInput, T> reader
+) {
+
+    void write(BinaryOutput output, Object data) {
+        writer.accept(output, type.cast(data));
+    }
+
+    T read(BinaryInput input) {
+        return reader.apply(input);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.mutual.util.outbox;
+
+import com.example.mutual.util.event.EncodedEvent;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.UUID;
+
+/**
+ * Transactional outbox: an event is stored by the transaction that makes the change and published later
+ * by {@link OutboxRelay}, so it is published if and only if the change is committed, and the write path
+ * does not wait for the broker. A row keeps the instance that stored it, the relay sends it in the
+ * {@value #ORIGIN_HEADER} header, so a consumer of every event can tell its own events from the others.
+ */
+public class Outbox {
+    public static final String ORIGIN_HEADER = "x-origin";
+    static final String CREATE_TABLE = "create table if not exists outbox ("
+            + " id bigserial primary key,"
+            + " binding_name varchar(255) not null,"
+            + " message_key varchar(255),"
+            + " content_type varchar(64) not null,"
+            + " payload bytea not null,"
+            + " origin varchar(64),"
+            + " created_on timestamp not null default now())";
+    static final String ADD_ORIGIN = "alter table outbox add column if not exists origin varchar(64)";
+    private static final String INSERT = "insert into outbox (binding_name, message_key, content_type, payload, origin)"
+            + " values (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String origin = UUID.randomUUID().toString();
+
+    public Outbox(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @param bindingName output binding the relay sends the payload to
+     * @param key         partition key of the message
+     * @param event       encoded message payload, see EventEncoder
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void add(String bindingName, Object key, EncodedEvent event) {
+        jdbcTemplate.update(INSERT, bindingName, key == null ? null : key.toString(),
+                event.contentType(), event.payload(), origin);
+    }
+
+    /**
+     * @return id of this instance, the {@value #ORIGIN_HEADER} header of the events it stored
+     */
+    public String origin() {
+        return origin;
+    }
+}
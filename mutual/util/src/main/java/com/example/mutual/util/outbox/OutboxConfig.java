@@ -0,0 +1,54 @@
+package com.example.mutual.util.outbox;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Outbox of the services with a database, the others do not have JDBC on the classpath.
+ */
+@Configuration
+@ConditionalOnClass(name = "org.springframework.jdbc.core.JdbcTemplate")
+@EnableScheduling
+public class OutboxConfig {
+
+    @Bean
+    public Outbox outbox(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.execute(Outbox.CREATE_TABLE);
+        jdbcTemplate.execute(Outbox.ADD_ORIGIN);
+        return new Outbox(jdbcTemplate);
+    }
+
+    // the record metadata channel of the revise bindings
+    @Bean
+    public DirectChannel outboxAcks() {
+        return new DirectChannel();
+    }
+
+    // the acks are awaited in production only, the test binder sends no record metadata
+    @Bean
+    public OutboxRelay outboxRelay(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            StreamBridge streamBridge,
+            DirectChannel outboxAcks,
+            @Qualifier("errorChannel") SubscribableChannel errorChannel,
+            @Value("${app.outbox.batch-size:500}") int batchSize,
+            @Value("${app.outbox.await-acks:false}") boolean awaitAcks,
+            @Value("${app.outbox.ack-timeout-ms:10000}") long ackTimeoutMs
+    ) {
+        OutboxRelay relay = new OutboxRelay(
+                jdbcTemplate, transactionTemplate, streamBridge, batchSize, awaitAcks, ackTimeoutMs);
+        outboxAcks.subscribe(relay::acknowledge);
+        errorChannel.subscribe(relay::fail);
+        return relay;
+    }
+}
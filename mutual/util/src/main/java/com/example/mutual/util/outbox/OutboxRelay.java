@@ -0,0 +1,179 @@
+package com.example.mutual.util.outbox;
+
+import com.example.mutual.util.event.EncodedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessagingException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Publishes the outbox in id order, a batch per transaction: the batch is sent and deleted, a failed send
+ * rolls the delete back and the batch is sent again on the next run (at least once).
+ * The whole batch is sent asynchronously, so the producer packs it, and with {@code app.outbox.await-acks}
+ * the delete waits until the broker has acknowledged every event of the batch. The acks come back by the
+ * {@code x-outbox-id} header: the record metadata of the binding ({@code recordMetadataChannel: outboxAcks})
+ * to {@link #acknowledge(Message)}, the failed sends ({@code producer.errorChannelEnabled: true})
+ * from the errorChannel to {@link #fail(Message)}.
+ */
+public class OutboxRelay {
+    private static final Logger LOG = LoggerFactory.getLogger(OutboxRelay.class);
+    private static final long RELAY_LOCK = 0x6f7574626f78L;
+    private static final String SELECT = "select id, binding_name, message_key, content_type, payload, origin"
+            + " from outbox order by id limit ?";
+    private static final String DELETE = "delete from outbox where id = ?";
+    static final String ID_HEADER = "x-outbox-id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final StreamBridge streamBridge;
+    private final int batchSize;
+    private final boolean awaitAcks;
+    private final long ackTimeoutMs;
+    private final Map<Long, CompletableFuture<Void>> acks = new ConcurrentHashMap<>();
+
+    public OutboxRelay(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            StreamBridge streamBridge,
+            int batchSize,
+            boolean awaitAcks,
+            long ackTimeoutMs
+    ) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Invalid outbox batch size: " + batchSize);
+        }
+        if (ackTimeoutMs < 1) {
+            throw new IllegalArgumentException("Invalid outbox ack timeout: " + ackTimeoutMs);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.streamBridge = streamBridge;
+        this.batchSize = batchSize;
+        this.awaitAcks = awaitAcks;
+        this.ackTimeoutMs = ackTimeoutMs;
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.relay-interval-ms:200}")
+    public void scheduledRelay() {
+        try {
+            int relayed = relay();
+            if (relayed > 0) {
+                LOG.debug("Outbox relayed {} events", relayed);
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("Outbox relay failed, will retry on the next run: {}", e.toString());
+        }
+    }
+
+    /**
+     * Drains the outbox batch by batch.
+     *
+     * @return number of published events
+     */
+    public int relay() {
+        int total = 0;
+        int relayed;
+        do {
+            relayed = transactionTemplate.execute(status -> relayBatch());
+            total += relayed;
+        } while (relayed == batchSize);
+        return total;
+    }
+
+    private int relayBatch() {
+        // one relay at a time over all the instances keeps the events of a key in order
+        jdbcTemplate.query("select pg_advisory_xact_lock(?)", (RowCallbackHandler) resultSet -> {
+        }, RELAY_LOCK);
+        List<OutboxRecord> records = jdbcTemplate.query(SELECT, (resultSet, rowNum) -> new OutboxRecord(
+                resultSet.getLong(1), resultSet.getString(2), resultSet.getString(3),
+                new EncodedEvent(resultSet.getBytes(5), resultSet.getString(4)), resultSet.getString(6)
+        ), batchSize);
+        List<CompletableFuture<Void>> sent = new ArrayList<>(records.size());
+        try {
+            for (OutboxRecord record : records) {
+                if (awaitAcks) {
+                    CompletableFuture<Void> ack = new CompletableFuture<>();
+                    acks.put(record.id(), ack);
+                    sent.add(ack);
+                }
+                Message<byte[]> message = record.event().message(record.key())
+                        .setHeader(Outbox.ORIGIN_HEADER, record.origin())
+                        .setHeader(ID_HEADER, record.id())
+                        .build();
+                if (!streamBridge.send(record.bindingName(), message)) {
+                    throw new IllegalStateException(
+                            "Outbox event " + record.id() + " is not accepted by " + record.bindingName());
+                }
+            }
+            awaitAcks(sent);
+        } finally {
+            if (awaitAcks) {
+                records.forEach(record -> acks.remove(record.id()));
+            }
+        }
+        jdbcTemplate.batchUpdate(DELETE, records, records.size(),
+                (statement, record) -> statement.setLong(1, record.id()));
+        return records.size();
+    }
+
+    /**
+     * Completes the send of an outbox event, the message comes from the record metadata channel.
+     */
+    public void acknowledge(Message<?> message) {
+        CompletableFuture<Void> ack = ack(message);
+        if (ack != null) {
+            ack.complete(null);
+        }
+    }
+
+    /**
+     * Fails the send of an outbox event, the error message comes from the errorChannel, the others
+     * are ignored.
+     */
+    public void fail(Message<?> errorMessage) {
+        if (errorMessage.getPayload() instanceof MessagingException e && e.getFailedMessage() != null) {
+            CompletableFuture<Void> ack = ack(e.getFailedMessage());
+            if (ack != null) {
+                ack.completeExceptionally(e);
+            }
+        }
+    }
+
+    private CompletableFuture<Void> ack(Message<?> message) {
+        Object id = message.getHeaders().get(ID_HEADER);
+        return id instanceof Number number ? acks.get(number.longValue()) : null;
+    }
+
+    private void awaitAcks(List<CompletableFuture<Void>> sent) {
+        if (sent.isEmpty()) {
+            return;
+        }
+        try {
+            CompletableFuture.allOf(sent.toArray(CompletableFuture[]::new)).get(ackTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Outbox batch is not acknowledged", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Outbox batch is not acknowledged in " + ackTimeoutMs + " ms", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while the outbox batch is acknowledged", e);
+        }
+    }
+
+    private record OutboxRecord(long id, String bindingName, String key, EncodedEvent event, String origin) {
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.mutual.util.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Makes the scheduler of the blocking JDBC calls of a service, by {@code app.jdbc.scheduler-mode}:
+ * <ul>
+ * <li>{@code bounded-elastic} - {@code app.threadPoolSize} threads and {@code app.taskQueueSize} waiting
+ * calls, a burst past them is rejected</li>
+ * <li>{@code connection-bound} - a thread per connection of the Hikari pool
+ * ({@code spring.datasource.hikari.maximum-pool-size}), the calls over them wait in the queue</li>
+ * <li>{@code virtual} - a virtual thread per call, the Hikari pool is the only limit and a call waits
+ * for a connection up to the Hikari connection timeout. Needs a Java 21 runtime, on an older one
+ * it is {@code connection-bound}</li>
+ * </ul>
+ */
+@Component
+public class JdbcSchedulers {
+    private static final Logger LOG = LoggerFactory.getLogger(JdbcSchedulers.class);
+
+    private final Environment environment;
+
+    public JdbcSchedulers(Environment environment) {
+        this.environment = environment;
+    }
+
+    public Scheduler create() {
+        String mode = environment.getProperty("app.jdbc.scheduler-mode", "bounded-elastic");
+        int maximumPoolSize = environment.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10);
+        switch (mode) {
+            case "bounded-elastic":
+                int threadPoolSize = environment.getProperty("app.threadPoolSize", Integer.class, 10);
+                int taskQueueSize = environment.getProperty("app.taskQueueSize", Integer.class, 100);
+                LOG.info("Creates a jdbcScheduler with thread pool size = {}, task queue size = {}",
+                        threadPoolSize, taskQueueSize);
+                return Schedulers.newBoundedElastic(threadPoolSize, taskQueueSize, "jdbc-pool");
+            case "virtual":
+                Optional<ExecutorService> virtualThreads = virtualThreads();
+                if (virtualThreads.isPresent()) {
+                    LOG.info("Creates a jdbcScheduler on virtual threads, connection pool size = {}", maximumPoolSize);
+                    return Schedulers.fromExecutorService(virtualThreads.get(), "jdbc-virtual");
+                }
+                LOG.warn("No virtual threads in Java {}, the jdbcScheduler is connection-bound",
+                        Runtime.version().feature());
+                return connectionBound(maximumPoolSize);
+            case "connection-bound":
+                return connectionBound(maximumPoolSize);
+            default:
+                throw new IllegalArgumentException("Unknown app.jdbc.scheduler-mode: " + mode);
+        }
+    }
+
+    static Scheduler connectionBound(int maximumPoolSize) {
+        LOG.info("Creates a jdbcScheduler with a thread per connection, connection pool size = {}", maximumPoolSize);
+        return Schedulers.newBoundedElastic(maximumPoolSize, Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE, "jdbc-pool");
+    }
+
+    // the sources are Java 17, the executor of Java 21 is looked up when the service runs
+    static Optional<ExecutorService> virtualThreads() {
+        try {
+            return Optional.of((ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null));
+        } catch (ReflectiveOperationException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.mutual.util.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadThroughCacheTests {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ReadThroughCache<Integer, String> cache =
+            new ReadThroughCache<>("test", 100, Duration.ofMinutes(1), registry);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void loadsOnceUntilInvalidated() {
+        assertEquals("value 1", cache.get(1, this::load, Schedulers.immediate()).block());
+        assertEquals("value 1", cache.get(1, this::load, Schedulers.immediate()).block());
+        assertEquals(1, loads.get());
+
+        cache.invalidate(1);
+        assertEquals("value 1", cache.get(1, this::load, Schedulers.immediate()).block());
+        assertEquals(2, loads.get());
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "test").tag("result", "hit")
+                .functionCounter().count());
+    }
+
+    @Test
+    void missingValueIsNotCached() {
+        // отсутствующая сущность читается из базы каждый раз, пока не появится
+        assertNull(cache.get(13, key -> null, Schedulers.immediate()).block());
+        assertEquals("value 13", cache.get(13, this::load, Schedulers.immediate()).block());
+        assertEquals(1, loads.get());
+    }
+
+    private String load(Integer key) {
+        loads.incrementAndGet();
+        return "value " + key;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.mutual.util.event;
+
+import com.example.mutual.api.core.store.Store;
+import com.example.mutual.api.event.Event;
+import com.example.mutual.util.event.binary.BinaryEventCodec;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static com.example.mutual.api.event.Event.Type.CREATE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventEncoderTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final EventEncoder encoder = new EventEncoder(objectMapper);
+
+    @Test
+    void encodedEventIsReadBack() throws IOException {
+        Event<Integer, Store> event = new Event<>(CREATE, 1, new Store(1, "location", 10, 1, null));
+
+        byte[] payload = encoder.encode("store-crud", event).payload();
+
+        Event<Integer, Store> read = objectMapper.readValue(payload, new TypeReference<>() {
+        });
+
+        assertEquals(event.getEventId(), read.getEventId());
+        assertEquals(Event.SCHEMA_VERSION, read.getSchemaVersion());
+        assertEquals(event.getEventCreatedAt(), read.getEventCreatedAt());
+        assertEquals("location", read.getData().getLocation());
+    }
+
+    @Test
+    void formatFollowsContentTypeOfBinding() {
+        EventEncoder bindingEncoder = new EventEncoder(objectMapper,
+                bindingName -> bindingName.equals("store-crud") ? BinaryEventCodec.CONTENT_TYPE : null);
+        Event<Integer, Store> event = new Event<>(CREATE, 1, new Store(1, "location", 10, 1, null));
+
+        assertEquals(BinaryEventCodec.CONTENT_TYPE, bindingEncoder.encode("store-crud", event).contentType());
+        assertTrue(bindingEncoder.encode("store-revise", event).isJson());
+        // у строки нет бинарной схемы, событие уходит в JSON
+        assertTrue(bindingEncoder.encode("store-crud", new Event<>(CREATE, 1, "text")).isJson());
+    }
+
+    @Test
+    void eventOfFirstFormatIsRead() throws IOException {
+        // событие старого формата: время ISO строкой, нет id и версии схемы
+        String json = "{\"eventType\":\"CREATE\",\"key\":1,\"data\":{\"storeId\":1},"
+                + "\"eventCreatedAt\":\"2024-03-01T10:15:30.123+03:00\"}";
+
+        Event<Integer, Store> read = objectMapper.readValue(json, new TypeReference<>() {
+        });
+
+        assertEquals(0, read.getSchemaVersion());
+        assertEquals(1709277330123L, read.getEventCreatedAt());
+    }
+}
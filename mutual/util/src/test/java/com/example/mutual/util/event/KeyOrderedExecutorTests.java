@@ -0,0 +1,81 @@
+package com.example.mutual.util.event;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class KeyOrderedExecutorTests {
+
+    private final KeyOrderedExecutor executor = new KeyOrderedExecutor(4, 64);
+
+    @Test
+    void keepsOrderPerKey() {
+        // 10 ключей по 20 событий, задержки случайные, порядок внутри ключа должен сохраниться
+        List<int[]> records = new ArrayList<>();
+        for (int seq = 0; seq < 20; seq++) {
+            for (int key = 0; key < 10; key++) {
+                records.add(new int[]{key, seq});
+            }
+        }
+        Map<Integer, List<Integer>> handled = new ConcurrentHashMap<>();
+
+        executor.execute(
+                Flux.fromIterable(records),
+                record -> record[0],
+                record -> null,
+                record -> Mono.delay(Duration.ofMillis(ThreadLocalRandom.current().nextInt(3)))
+                        .doOnNext(tick -> handled
+                                .computeIfAbsent(record[0], key -> Collections.synchronizedList(new ArrayList<>()))
+                                .add(record[1]))
+        ).block(Duration.ofSeconds(10));
+
+        assertEquals(10, handled.size());
+        handled.values().forEach(seqs -> {
+            assertEquals(20, seqs.size());
+            for (int seq = 0; seq < 20; seq++) {
+                assertEquals(seq, seqs.get(seq));
+            }
+        });
+    }
+
+    @Test
+    void commitsOnlyContiguousOffsets() {
+        // смещение 0 обрабатывается долго, 1-3 уже готовы, но фиксировать их раньше 0 нельзя
+        List<Long> commits = Collections.synchronizedList(new ArrayList<>());
+        List<Object> keys = List.of("slow", "fast", "fast", "other");
+
+        executor.execute(
+                Flux.range(0, keys.size()),
+                offset -> keys.get(offset),
+                offset -> new RecordPosition(0, offset, () -> commits.add((long) offset)),
+                offset -> offset == 0 ? Mono.delay(Duration.ofMillis(200)) : Mono.empty()
+        ).block(Duration.ofSeconds(10));
+
+        assertEquals(List.of(3L), commits);
+        assertEquals(0, executor.pendingCommits());
+    }
+
+    @Test
+    void failedRecordDoesNotStallCommits() {
+        List<Long> commits = Collections.synchronizedList(new ArrayList<>());
+
+        executor.execute(
+                Flux.range(0, 3),
+                offset -> offset,
+                offset -> new RecordPosition(1, offset, () -> commits.add((long) offset)),
+                offset -> offset == 1 ? Mono.error(new IllegalStateException("broken")) : Mono.empty()
+        ).block(Duration.ofSeconds(10));
+
+        assertEquals(2L, commits.get(commits.size() - 1));
+    }
+}
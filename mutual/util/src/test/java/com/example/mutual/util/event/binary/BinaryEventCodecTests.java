@@ -0,0 +1,134 @@
+package com.example.mutual.util.event.binary;
+
+import com.example.mutual.api.core.cargo.Cargo;
+import com.example.mutual.api.core.route.Route;
+import com.example.mutual.api.core.route.RouteRuleType;
+import com.example.mutual.api.core.route.RouteTaskPayload;
+import com.example.mutual.api.core.store.Store;
+import com.example.mutual.api.event.Event;
+import com.example.mutual.api.event.EventTask;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.List;
+
+import static com.example.mutual.api.event.Event.Type.CREATE;
+import static com.example.mutual.api.event.Event.Type.DELETE;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryEventCodecTests {
+
+    @Test
+    void eventIsReadBack() {
+        Event<Integer, Store> event = new Event<>(CREATE, -7, new Store(1, "Минск", 1000, 12, null));
+
+        Event<?, ?> read = (Event<?, ?>) BinaryEventCodec.decode(BinaryEventCodec.encode(event));
+
+        assertEquals(event.getEventId(), read.getEventId());
+        assertEquals(Event.SCHEMA_VERSION, read.getSchemaVersion());
+        assertEquals(CREATE, read.getEventType());
+        assertEquals(-7, read.getKey());
+        assertEquals(event.getEventCreatedAt(), read.getEventCreatedAt());
+        Store store = (Store) read.getData();
+        assertEquals(1, store.getStoreId());
+        assertEquals("Минск", store.getLocation());
+        assertEquals(1000, store.getCapacity());
+        assertEquals(12, store.getUsedCapacity());
+        assertNull(store.getServiceAddress());
+    }
+
+    @Test
+    void versionOfEntityIsReadBack() {
+        Cargo cargo = new Cargo(5, "cookies", 10, Cargo.Status.TRANSIT, null, 4, 17);
+
+        Event<?, ?> read = (Event<?, ?>) BinaryEventCodec.decode(BinaryEventCodec.encode(new Event<>(CREATE, 5, cargo)));
+
+        assertEquals(4, ((Cargo) read.getData()).getVersion());
+        assertEquals(17, ((Cargo) read.getData()).getEntityId());
+    }
+
+    @Test
+    void layoutWithoutEntityIdIsStillRead() {
+        // события, записанные до id строки в схеме, читаются с id 0 и своей версией
+        BinaryOutput output = new BinaryOutput(64);
+        EventSchemaRegistry.STORE_VERSIONED.write(output, new Store(1, "Минск", 1000, 12, null, 3, 17));
+
+        Store store = (Store) EventSchemaRegistry.byId(EventSchemaRegistry.STORE_VERSIONED.id())
+                .read(new BinaryInput(output.toByteArray()));
+
+        assertEquals(3, store.getVersion());
+        assertEquals(0, store.getEntityId());
+    }
+
+    @Test
+    void layoutWithoutVersionIsStillRead() {
+        // события, записанные до версии в схеме, читаются с версией 0
+        BinaryOutput output = new BinaryOutput(64);
+        EventSchemaRegistry.STORE.write(output, new Store(1, "Минск", 1000, 12, null, 3));
+
+        Store store = (Store) EventSchemaRegistry.byId(EventSchemaRegistry.STORE.id())
+                .read(new BinaryInput(output.toByteArray()));
+
+        assertEquals(1000, store.getCapacity());
+        assertEquals(0, store.getVersion());
+    }
+
+    @Test
+    void eventWithoutPayloadIsReadBack() {
+        // у события удаления может не быть данных
+        Event<Integer, Cargo> event = new Event<>(DELETE, 3, null);
+
+        Event<?, ?> read = (Event<?, ?>) BinaryEventCodec.decode(BinaryEventCodec.encode(event));
+
+        assertEquals(DELETE, read.getEventType());
+        assertEquals(3, read.getKey());
+        assertNull(read.getData());
+    }
+
+    @Test
+    void routeTaskIsReadBack() {
+        Route route = new Route(5, 1, 2, "1-3-2", 120, 90, List.of(1, 3, 2), "route:7002");
+        EventTask<Integer, RouteTaskPayload> event = new EventTask<>(EventTask.Type.ROUTE_FOUND, 11,
+                new RouteTaskPayload(11, 1, 2, route, RouteRuleType.MINIMAL_MINUTES));
+
+        EventTask<?, ?> read = (EventTask<?, ?>) BinaryEventCodec.decode(BinaryEventCodec.encode(event));
+
+        RouteTaskPayload payload = (RouteTaskPayload) read.getData();
+        assertEquals(EventTask.Type.ROUTE_FOUND, read.getEventType());
+        assertEquals(RouteRuleType.MINIMAL_MINUTES, payload.getRuleType());
+        assertEquals(List.of(1, 3, 2), payload.getRoute().getHops());
+        assertEquals("route:7002", payload.getRoute().getServiceAddress());
+        assertEquals(120, payload.getRoute().getDistanceFromTo());
+    }
+
+    @Test
+    void converterReadsBinaryContentTypeOnly() {
+        BinaryEventMessageConverter converter = new BinaryEventMessageConverter();
+        byte[] payload = BinaryEventCodec.encode(
+                new Event<>(CREATE, 1, new Cargo(1, "cargo", 5, Cargo.Status.WAIT, null)));
+
+        Message<byte[]> binary = MessageBuilder.withPayload(payload)
+                .setHeader(MessageHeaders.CONTENT_TYPE, BinaryEventCodec.CONTENT_TYPE)
+                .build();
+        Message<byte[]> json = MessageBuilder.withPayload("{}".getBytes())
+                .setHeader(MessageHeaders.CONTENT_TYPE, "application/json")
+                .build();
+
+        Event<?, ?> read = (Event<?, ?>) converter.fromMessage(binary, Event.class);
+        assertEquals(Cargo.Status.WAIT, ((Cargo) read.getData()).getStatus());
+        assertNull(converter.fromMessage(json, Event.class));
+        assertNull(converter.fromMessage(binary, EventTask.class));
+    }
+
+    @Test
+    void binaryIsSmallerThanJson() throws Exception {
+        Event<Integer, Store> event = new Event<>(CREATE, 1, new Store(1, "location", 1000, 0, null));
+
+        byte[] json = new ObjectMapper().writeValueAsBytes(event);
+
+        assertTrue(BinaryEventCodec.encode(event).length * 3 < json.length);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.mutual.util.http;
+
+import com.example.mutual.api.core.cargo.Cargo;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class ConditionalGetTests {
+
+    private final Cargo cargo = new Cargo(1, "cookies", 10, Cargo.Status.STOCK, null, 3, 41);
+
+    @Test
+    void bodyIsSentWithEtag() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/cargo/1"));
+
+        StepVerifier.create(get(exchange))
+                .expectNext(cargo)
+                .verifyComplete();
+        assertEquals("W/\"41-3\"", exchange.getResponse().getHeaders().getETag());
+        assertNotEquals(HttpStatus.NOT_MODIFIED, exchange.getResponse().getStatusCode());
+    }
+
+    @Test
+    void sameVersionIsNotModified() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/cargo/1")
+                .ifNoneMatch("W/\"41-3\""));
+
+        StepVerifier.create(get(exchange))
+                .verifyComplete();
+        assertEquals(HttpStatus.NOT_MODIFIED, exchange.getResponse().getStatusCode());
+    }
+
+    @Test
+    void otherVersionIsSent() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/cargo/1")
+                .ifNoneMatch("W/\"41-2\""));
+
+        StepVerifier.create(get(exchange))
+                .expectNext(cargo)
+                .verifyComplete();
+        assertEquals("W/\"41-3\"", exchange.getResponse().getHeaders().getETag());
+    }
+
+    @Test
+    void recreatedEntityIsSent() {
+        // удаленная и созданная заново сущность начинает версии заново под другим id строки
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/cargo/1")
+                .ifNoneMatch("W/\"40-3\""));
+
+        StepVerifier.create(get(exchange))
+                .expectNext(cargo)
+                .verifyComplete();
+        assertEquals("W/\"41-3\"", exchange.getResponse().getHeaders().getETag());
+    }
+
+    @Test
+    void callOutsideRequestIsNotChanged() {
+        // без обмена в контексте, например вызов из другого сервиса в том же процессе
+        StepVerifier.create(Mono.just(cargo)
+                        .transform(ConditionalGet.byVersion(Cargo::getEntityId, Cargo::getVersion)))
+                .expectNext(cargo)
+                .verifyComplete();
+    }
+
+    private Mono<Cargo> get(MockServerWebExchange exchange) {
+        return Mono.just(cargo)
+                .transform(ConditionalGet.byVersion(Cargo::getEntityId, Cargo::getVersion))
+                .contextWrite(context -> context.put(ServerWebExchange.class, exchange));
+    }
+}
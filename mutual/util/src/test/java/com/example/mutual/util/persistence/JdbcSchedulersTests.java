@@ -0,0 +1,75 @@
+package com.example.mutual.util.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcSchedulersTests {
+
+    @Test
+    void boundedElasticRejectsBurst() {
+        Scheduler scheduler = scheduler(new MockEnvironment()
+                .withProperty("app.jdbc.scheduler-mode", "bounded-elastic")
+                .withProperty("app.threadPoolSize", "1")
+                .withProperty("app.taskQueueSize", "1"));
+        try {
+            CountDownLatch release = new CountDownLatch(1);
+            // один вызов занимает поток, второй ждёт в очереди, третий отклонён
+            for (int i = 0; i < 2; i++) {
+                Mono.fromCallable(() -> release.await(5, TimeUnit.SECONDS)).subscribeOn(scheduler).subscribe();
+            }
+            assertThrows(RejectedExecutionException.class,
+                    () -> Mono.fromCallable(() -> 1).subscribeOn(scheduler).block(Duration.ofSeconds(5)));
+            release.countDown();
+        } finally {
+            scheduler.dispose();
+        }
+    }
+
+    @Test
+    void connectionBoundQueuesBurst() {
+        Scheduler scheduler = scheduler(new MockEnvironment()
+                .withProperty("app.jdbc.scheduler-mode", "connection-bound")
+                .withProperty("spring.datasource.hikari.maximum-pool-size", "2"));
+        try {
+            Long done = Flux.range(0, 500)
+                    .flatMap(i -> Mono.fromCallable(() -> i).subscribeOn(scheduler), 500)
+                    .count()
+                    .block(Duration.ofSeconds(10));
+            assertEquals(500, done);
+        } finally {
+            scheduler.dispose();
+        }
+    }
+
+    @Test
+    void virtualRunsOnAnyJava() {
+        // на Java 17 режим virtual работает как connection-bound
+        Scheduler scheduler = scheduler(new MockEnvironment().withProperty("app.jdbc.scheduler-mode", "virtual"));
+        try {
+            assertEquals(1, Mono.fromCallable(() -> 1).subscribeOn(scheduler).block(Duration.ofSeconds(5)));
+        } finally {
+            scheduler.dispose();
+        }
+    }
+
+    @Test
+    void unknownModeFails() {
+        MockEnvironment environment = new MockEnvironment().withProperty("app.jdbc.scheduler-mode", "fork-join");
+
+        assertThrows(IllegalArgumentException.class, () -> scheduler(environment));
+    }
+
+    private static Scheduler scheduler(MockEnvironment environment) {
+        return new JdbcSchedulers(environment).create();
+    }
+}